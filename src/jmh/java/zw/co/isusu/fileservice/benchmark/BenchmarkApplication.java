@@ -0,0 +1,100 @@
+package zw.co.isusu.fileservice.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+import zw.co.isusu.fileservice.FileUploadAndDownloadServiceApplication;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Boots the service for benchmarking, without a web server unless a load test needs one.
+ * <p>
+ * Metadata lives in a private in-memory H2 database and blobs in a temporary directory, so
+ * benchmarks need no network. The {@code postgres} storage backend keeps its contents as
+ * large objects, which H2 cannot provide; it needs a real database passed as the
+ * {@code benchmark.datasource.url}, {@code .username} and {@code .password} system properties.
+ * Background work (renditions, scheduled purges) is switched off so it does not skew results;
+ * benchmarks purge explicitly between iterations instead.
+ */
+final class BenchmarkApplication implements AutoCloseable {
+
+    private final ConfigurableApplicationContext context;
+    private final Path storageRoot;
+
+    private BenchmarkApplication(ConfigurableApplicationContext context, Path storageRoot) {
+        this.context = context;
+        this.storageRoot = storageRoot;
+    }
+
+    static BenchmarkApplication start(String storage, Map<String, Object> overrides) throws IOException {
+        return start(WebApplicationType.NONE, storage, overrides);
+    }
+
+    static BenchmarkApplication start(WebApplicationType webType, String storage, Map<String, Object> overrides) throws IOException {
+        Path storageRoot = Files.createTempDirectory("file-service-benchmark");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("logging.level.root", "WARN");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("file-service.storage.type", storage);
+        properties.put("file-service.storage.root", storageRoot.resolve("blobs").toString());
+        properties.put("file-service.upload-sessions.staging-dir", storageRoot.resolve("staging").toString());
+        properties.put("file-service.renditions.enabled", "false");
+        properties.put("file-service.purge.retention", "PT0S");
+        properties.put("file-service.purge.batch-pause", "PT0S");
+        properties.put("file-service.purge.max-batches-per-run", "100000");
+        properties.put("file-service.purge.initial-delay", "P1D");
+        properties.putAll(datasource(storage));
+        properties.putAll(overrides);
+
+        // Passed as arguments; default properties would lose to the profile's own settings
+        String[] args = properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(FileUploadAndDownloadServiceApplication.class)
+                .web(webType)
+                .profiles("dev")
+                .run(args);
+        return new BenchmarkApplication(context, storageRoot);
+    }
+
+    private static Map<String, Object> datasource(String storage) {
+        String url = System.getProperty("benchmark.datasource.url");
+        if (url != null) {
+            return Map.of(
+                    "spring.datasource.url", url,
+                    "spring.datasource.username", System.getProperty("benchmark.datasource.username", "postgres"),
+                    "spring.datasource.password", System.getProperty("benchmark.datasource.password", ""));
+        }
+        if (storage.equals("postgres")) {
+            throw new IllegalStateException("The postgres storage backend needs -Dbenchmark.datasource.url pointing at PostgreSQL");
+        }
+        return Map.of(
+                "spring.datasource.url", "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+                "spring.datasource.driver-class-name", "org.h2.Driver",
+                "spring.datasource.username", "sa",
+                "spring.datasource.password", "",
+                "spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+    }
+
+    int port() {
+        return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(storageRoot);
+    }
+}
@@ -0,0 +1,76 @@
+package zw.co.isusu.fileservice.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import zw.co.isusu.fileservice.storage.ContentCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The stages of storing and reading a blob in isolation, without the database or the blob
+ * store: SHA-256 digesting and gzip encoding on the way in, gzip decoding on the way out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BlobPipelineBenchmark {
+
+    @Param({"1KB", "64KB", "1MB", "16MB", "100MB"})
+    public String payloadSize;
+
+    @Param({"text", "random"})
+    public String content;
+
+    private byte[] payload;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void prepare() throws Exception {
+        payload = Payloads.generate(payloadSize, content);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream encoder = ContentCodec.GZIP.encode(out)) {
+            encoder.write(payload);
+        }
+        encoded = out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] digest() throws Exception {
+        return MessageDigest.getInstance("SHA-256").digest(payload);
+    }
+
+    @Benchmark
+    public byte[] digestAndEncode() throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (OutputStream encoder = ContentCodec.GZIP.encode(OutputStream.nullOutputStream())) {
+            new ByteArrayInputStream(payload).transferTo(new DigestOutputStream(encoder, digest));
+        }
+        return digest.digest();
+    }
+
+    @Benchmark
+    public long decode() throws Exception {
+        try (InputStream in = ContentCodec.GZIP.decode(position -> new ByteArrayInputStream(encoded)).openStream(0)) {
+            return in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package zw.co.isusu.fileservice.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import zw.co.isusu.fileservice.cache.BlobCache;
+import zw.co.isusu.fileservice.service.FileService;
+import zw.co.isusu.fileservice.service.request.FileUploadRequest;
+import zw.co.isusu.fileservice.service.response.FileDownloadResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads through {@code FileService}: the metadata lookup followed by a full read of the
+ * decoded contents. With {@code cache=miss} the blob cache entry is dropped before every
+ * invocation. Files over the cache's entry size limit always stream from the blob store,
+ * so both cache settings measure the same path for them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DownloadBenchmark {
+
+    @Param({"1KB", "64KB", "1MB", "16MB", "100MB"})
+    public String payloadSize;
+
+    @Param({"text", "random"})
+    public String content;
+
+    @Param({"filesystem"})
+    public String storage;
+
+    @Param({"hit", "miss"})
+    public String cache;
+
+    private BenchmarkApplication application;
+    private FileService fileService;
+    private BlobCache blobCache;
+    private UUID fileId;
+    private final WritableByteChannel sink = Channels.newChannel(OutputStream.nullOutputStream());
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        application = BenchmarkApplication.start(storage, Map.of());
+        fileService = application.bean(FileService.class);
+        blobCache = application.bean(BlobCache.class);
+        byte[] payload = Payloads.generate(payloadSize, content);
+        fileId = (UUID) fileService.uploadFile(new FileUploadRequest(
+                "benchmark.bin", Payloads.fileType(content), new ByteArrayInputStream(payload))).fileId();
+    }
+
+    @Setup(Level.Invocation)
+    public void evict() {
+        if (cache.equals("miss")) {
+            blobCache.invalidate(fileId);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        application.close();
+    }
+
+    @Benchmark
+    public long download() throws Exception {
+        FileDownloadResponse file = fileService.downloadFile(fileId);
+        file.content().transferTo(0, file.size(), sink);
+        return file.size();
+    }
+}
@@ -0,0 +1,79 @@
+package zw.co.isusu.fileservice.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import zw.co.isusu.fileservice.service.FileService;
+import zw.co.isusu.fileservice.service.request.FileUploadRequest;
+import zw.co.isusu.fileservice.service.response.FileListResponse;
+
+import java.io.ByteArrayInputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listing through {@code FileService}: the first page and a page deep into the listing,
+ * which keyset paging should serve as fast as the first.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ListBenchmark {
+
+    private static final int FILES = 10_000;
+
+    @Param({"20", "100"})
+    public int pageSize;
+
+    @Param({"filesystem"})
+    public String storage;
+
+    private BenchmarkApplication application;
+    private FileService fileService;
+    private String deepCursor;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        application = BenchmarkApplication.start(storage, Map.of());
+        fileService = application.bean(FileService.class);
+        byte[] payload = Payloads.generate("1KB", "random");
+        for (int i = 0; i < FILES; i++) {
+            Payloads.stamp(payload, i);
+            fileService.uploadFile(new FileUploadRequest("file-" + i + ".bin", "application/octet-stream",
+                    new ByteArrayInputStream(payload)));
+        }
+        String cursor = null;
+        for (int page = 0; page < FILES / pageSize / 2; page++) {
+            cursor = fileService.listFiles(cursor, pageSize).nextCursor();
+        }
+        deepCursor = cursor;
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        application.close();
+    }
+
+    @Benchmark
+    public FileListResponse firstPage() {
+        return fileService.listFiles(null, pageSize);
+    }
+
+    @Benchmark
+    public FileListResponse deepPage() {
+        return fileService.listFiles(deepCursor, pageSize);
+    }
+}
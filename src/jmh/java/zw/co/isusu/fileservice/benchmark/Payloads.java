@@ -0,0 +1,51 @@
+package zw.co.isusu.fileservice.benchmark;
+
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+/**
+ * Benchmark payloads of a given size.
+ */
+final class Payloads {
+
+    private Payloads() {
+    }
+
+    /**
+     * @param content {@code text} for compressible contents, {@code random} for incompressible ones
+     */
+    static byte[] generate(String size, String content) {
+        int length = Math.toIntExact(DataSize.parse(size).toBytes());
+        byte[] payload = new byte[length];
+        SplittableRandom random = new SplittableRandom(length);
+        switch (content) {
+            case "random" -> random.nextBytes(payload);
+            case "text" -> {
+                byte[] line = new byte[0];
+                for (int offset = 0, number = 0; offset < length; offset += line.length, number++) {
+                    line = ("%08d,%s,%d,lorem ipsum dolor sit amet%n"
+                            .formatted(number, random.nextBoolean() ? "active" : "closed", random.nextInt(10_000)))
+                            .getBytes(StandardCharsets.US_ASCII);
+                    System.arraycopy(line, 0, payload, offset, Math.min(line.length, length - offset));
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown content: " + content);
+        }
+        return payload;
+    }
+
+    static String fileType(String content) {
+        return content.equals("text") ? "text/csv" : "application/octet-stream";
+    }
+
+    /**
+     * Stamps a counter over the first bytes, so every upload has distinct contents and is not deduplicated.
+     */
+    static void stamp(byte[] payload, long counter) {
+        for (int i = 0; i < Math.min(Long.BYTES, payload.length); i++) {
+            payload[i] = (byte) (counter >>> (8 * i));
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package zw.co.isusu.fileservice.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test for the number of slow clients the service can hold at once.
+ * <p>
+ * Opens many connections that trickle a multipart upload, as a slow mobile client would,
+ * and meanwhile probes the health endpoint. Each trickling upload ties up a request thread
+ * while its body is read; once they outnumber Tomcat's thread pool, probes queue behind
+ * them. The test runs once on platform threads and, on a Java 21 runtime, once more with
+ * {@code spring.threads.virtual.enabled}, and prints both results side by side.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=zw.co.isusu.fileservice.benchmark.SlowClientLoadTest \
+ *     -Dexec.args="[connections] [upload size] [bytes per second per client]"
+ * </pre>
+ */
+public final class SlowClientLoadTest {
+
+    private static final String BOUNDARY = "slow-client-load-test";
+    private static final Duration SLICE_INTERVAL = Duration.ofMillis(100);
+    private static final Duration PROBE_INTERVAL = Duration.ofMillis(100);
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(2);
+
+    private SlowClientLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        String uploadSize = args.length > 1 ? args[1] : "256KB";
+        int bytesPerSecond = args.length > 2 ? Integer.parseInt(args[2]) : 32 * 1024;
+
+        List<Result> results = new ArrayList<>();
+        results.add(run("platform", false, connections, uploadSize, bytesPerSecond));
+        if (Runtime.version().feature() >= 21) {
+            results.add(run("virtual", true, connections, uploadSize, bytesPerSecond));
+        } else {
+            System.out.println("Virtual threads need a Java 21 runtime; skipping the virtual thread run");
+        }
+
+        System.out.printf("%n%d clients each uploading %s at %d bytes/s%n", connections, uploadSize, bytesPerSecond);
+        System.out.printf("%-10s %10s %10s %10s %10s %12s %12s %10s%n",
+                "threads", "uploads", "failed", "probes", "timed out", "probe p50", "probe p99", "elapsed");
+        for (Result result : results) {
+            System.out.printf("%-10s %10d %10d %10d %10d %10dms %10dms %9ds%n",
+                    result.mode(), result.uploaded(), result.failed(), result.probes(), result.timedOut(),
+                    result.percentile(50), result.percentile(99), result.elapsed().toSeconds());
+        }
+    }
+
+    private static Result run(String mode, boolean virtualThreads, int connections,
+                              String uploadSize, int bytesPerSecond) throws Exception {
+        try (BenchmarkApplication application = BenchmarkApplication.start(WebApplicationType.SERVLET, "filesystem", Map.of(
+                "server.port", "0",
+                "spring.threads.virtual.enabled", String.valueOf(virtualThreads)))) {
+            int port = application.port();
+            byte[] payload = Payloads.generate(uploadSize, "random");
+            int sliceSize = Math.max(1, (int) (bytesPerSecond * SLICE_INTERVAL.toMillis() / 1000));
+            System.out.printf("Running %d slow uploads against %s threads%n", connections, mode);
+
+            long started = System.nanoTime();
+            ExecutorService clients = Executors.newFixedThreadPool(connections);
+            List<Future<Boolean>> uploads = new ArrayList<>(connections);
+            for (int i = 0; i < connections; i++) {
+                byte[] request = uploadRequest(port, "slow-" + i + ".bin", payload);
+                uploads.add(clients.submit(() -> trickle(port, request, sliceSize)));
+            }
+
+            AtomicBoolean probing = new AtomicBoolean(true);
+            List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+            AtomicInteger timedOut = new AtomicInteger();
+            Thread prober = new Thread(() -> probe(port, probing, latencies, timedOut), "load-test-probe");
+            prober.start();
+
+            int uploaded = 0;
+            int failed = 0;
+            for (Future<Boolean> upload : uploads) {
+                if (upload.get()) {
+                    uploaded++;
+                } else {
+                    failed++;
+                }
+            }
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - started);
+            probing.set(false);
+            prober.join();
+            clients.shutdown();
+            return new Result(mode, uploaded, failed, latencies, timedOut.get(), elapsed);
+        }
+    }
+
+    private static byte[] uploadRequest(int port, String fileName, byte[] payload) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(payload.length + 512);
+        body.writeBytes(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        body.writeBytes(payload);
+        body.writeBytes(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+
+        ByteArrayOutputStream request = new ByteArrayOutputStream(body.size() + 256);
+        request.writeBytes(("POST /api/files/upload HTTP/1.1\r\n"
+                + "Host: localhost:" + port + "\r\n"
+                + "Content-Type: multipart/form-data; boundary=" + BOUNDARY + "\r\n"
+                + "Content-Length: " + body.size() + "\r\n"
+                + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        request.writeBytes(body.toByteArray());
+        return request.toByteArray();
+    }
+
+    /**
+     * Sends the request a slice at a time and reports whether the upload was accepted.
+     */
+    private static boolean trickle(int port, byte[] request, int sliceSize) {
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setSoTimeout((int) Duration.ofMinutes(5).toMillis());
+            OutputStream out = socket.getOutputStream();
+            for (int offset = 0; offset < request.length; offset += sliceSize) {
+                out.write(request, offset, Math.min(sliceSize, request.length - offset));
+                out.flush();
+                Thread.sleep(SLICE_INTERVAL.toMillis());
+            }
+            String status = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII)).readLine();
+            return status != null && status.startsWith("HTTP/1.1 201");
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static void probe(int port, AtomicBoolean probing, List<Long> latencies, AtomicInteger timedOut) {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/health"))
+                .timeout(PROBE_TIMEOUT)
+                .build();
+        while (probing.get()) {
+            long started = System.nanoTime();
+            try {
+                client.send(request, HttpResponse.BodyHandlers.discarding());
+                latencies.add(Duration.ofNanos(System.nanoTime() - started).toMillis());
+            } catch (Exception e) {
+                timedOut.incrementAndGet();
+            }
+            try {
+                Thread.sleep(PROBE_INTERVAL.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private record Result(String mode, int uploaded, int failed, List<Long> latencies, int timedOut, Duration elapsed) {
+
+        int probes() {
+            return latencies.size() + timedOut;
+        }
+
+        long percentile(int percentile) {
+            if (latencies.isEmpty()) {
+                return -1;
+            }
+            List<Long> sorted = latencies.stream().sorted().toList();
+            return sorted.get(Math.min(sorted.size() - 1, sorted.size() * percentile / 100));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package zw.co.isusu.fileservice.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+import zw.co.isusu.fileservice.service.FileService;
+import zw.co.isusu.fileservice.service.PurgeService;
+import zw.co.isusu.fileservice.service.request.FileUploadRequest;
+import zw.co.isusu.fileservice.service.response.FileUploadResponse;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads and replacements through {@code FileService}: hashing, compression, the blob
+ * store write and the metadata insert. Every invocation uploads distinct contents, so
+ * deduplication never short-circuits the write. Uploaded files are deleted and purged
+ * after each iteration to keep the store from growing across the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UploadBenchmark {
+
+    @Param({"1KB", "64KB", "1MB", "16MB", "100MB"})
+    public String payloadSize;
+
+    @Param({"text", "random"})
+    public String content;
+
+    @Param({"filesystem"})
+    public String storage;
+
+    private BenchmarkApplication application;
+    private FileService fileService;
+    private PurgeService purgeService;
+    private byte[] payload;
+    private String fileType;
+    private UUID replacedFileId;
+    private final List<UUID> uploaded = new ArrayList<>();
+    private long counter;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        application = BenchmarkApplication.start(storage, Map.of());
+        fileService = application.bean(FileService.class);
+        purgeService = application.bean(PurgeService.class);
+        payload = Payloads.generate(payloadSize, content);
+        fileType = Payloads.fileType(content);
+        replacedFileId = (UUID) fileService.uploadFile(
+                new FileUploadRequest("replaced.bin", fileType, new ByteArrayInputStream(payload))).fileId();
+    }
+
+    @TearDown(Level.Iteration)
+    public void purge() throws Exception {
+        for (int from = 0; from < uploaded.size(); from += 1000) {
+            fileService.deleteFiles(uploaded.subList(from, Math.min(from + 1000, uploaded.size())));
+        }
+        uploaded.clear();
+        purgeService.purge();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        application.close();
+    }
+
+    @Benchmark
+    public FileUploadResponse upload() throws Exception {
+        Payloads.stamp(payload, ++counter);
+        FileUploadResponse response = fileService.uploadFile(
+                new FileUploadRequest("benchmark.bin", fileType, new ByteArrayInputStream(payload)));
+        uploaded.add((UUID) response.fileId());
+        return response;
+    }
+
+    @Benchmark
+    public FileUploadResponse replace() throws Exception {
+        Payloads.stamp(payload, ++counter);
+        return fileService.replaceFile(replacedFileId, new MockMultipartFile("file", "benchmark.bin", fileType, payload));
+    }
+}
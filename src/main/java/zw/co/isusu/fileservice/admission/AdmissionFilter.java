@@ -0,0 +1,283 @@
+package zw.co.isusu.fileservice.admission;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import zw.co.isusu.fileservice.config.AdmissionProperties;
+
+import java.io.IOException;
+import java.util.Enumeration;
+
+/**
+ * Admits file transfers through the {@link AdmissionGate} before they reach the controllers.
+ * <p>
+ * Rejected requests are answered with {@code 429} or {@code 503} and a {@code Retry-After}
+ * before their body is read. Admitted ones hold their admission until the response is
+ * complete, including streamed responses that finish asynchronously. When a rate is set, the
+ * request body stream and the response body are shaped by the client's token bucket; shaped
+ * downloads are not handed to sendfile, which would bypass the shaping. Multipart uploads are
+ * parsed by the container and so are admitted but not shaped.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "file-service.admission.enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    private final AdmissionGate gate;
+    private final AdmissionProperties properties;
+
+    public AdmissionFilter(AdmissionGate gate, AdmissionProperties properties) {
+        this.gate = gate;
+        this.properties = properties;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        TrafficClass trafficClass = TrafficClass.of(request.getMethod(), path);
+        if (trafficClass == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String client = clientOf(request);
+        AdmissionGate.Ticket ticket;
+        try {
+            ticket = gate.admit(trafficClass, client, request.getContentLengthLong());
+        } catch (AdmissionRejectedException e) {
+            log.debug("Rejected {} from {}: {}", trafficClass.tag(), client, e.getMessage());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, properties.retryAfter().toSeconds())));
+            response.sendError(e.getStatus().value(), e.getMessage());
+            return;
+        }
+
+        boolean async = false;
+        try {
+            TokenBucket bucket = gate.bucket(trafficClass, client);
+            if (bucket == null) {
+                chain.doFilter(request, response);
+            } else if (trafficClass == TrafficClass.UPLOAD) {
+                chain.doFilter(new ShapedRequest(request, bucket), response);
+            } else {
+                chain.doFilter(new NoSendfileRequest(request), new ShapedResponse(response, bucket));
+            }
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleasingListener(ticket));
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                ticket.close();
+            }
+        }
+    }
+
+    /**
+     * The client as seen by the proxy in front of this service: the last entry of the client
+     * header, which that proxy appended. Earlier entries come from the client and can be forged.
+     */
+    private String clientOf(HttpServletRequest request) {
+        String header = properties.clientHeader();
+        if (StringUtils.hasText(header)) {
+            String last = null;
+            for (Enumeration<String> values = request.getHeaders(header); values.hasMoreElements(); ) {
+                String value = values.nextElement();
+                if (StringUtils.hasText(value)) {
+                    last = value;
+                }
+            }
+            if (last != null) {
+                String client = last.substring(last.lastIndexOf(',') + 1).trim();
+                if (!client.isEmpty()) {
+                    return client;
+                }
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private static final class ShapedRequest extends HttpServletRequestWrapper {
+
+        private final TokenBucket bucket;
+        private ServletInputStream in;
+
+        private ShapedRequest(HttpServletRequest request, TokenBucket bucket) {
+            super(request);
+            this.bucket = bucket;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (in == null) {
+                in = new ShapedInputStream(super.getInputStream(), bucket);
+            }
+            return in;
+        }
+    }
+
+    /**
+     * Hides the container's sendfile support, so that response bodies pass through the shaped stream.
+     */
+    private static final class NoSendfileRequest extends HttpServletRequestWrapper {
+
+        private NoSendfileRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return SENDFILE_SUPPORT.equals(name) ? null : super.getAttribute(name);
+        }
+    }
+
+    private static final class ShapedResponse extends HttpServletResponseWrapper {
+
+        private final TokenBucket bucket;
+        private ServletOutputStream out;
+
+        private ShapedResponse(HttpServletResponse response, TokenBucket bucket) {
+            super(response);
+            this.bucket = bucket;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (out == null) {
+                out = new ShapedOutputStream(super.getOutputStream(), bucket);
+            }
+            return out;
+        }
+    }
+
+    private static final class ShapedInputStream extends ServletInputStream {
+
+        private final ServletInputStream delegate;
+        private final TokenBucket bucket;
+
+        private ShapedInputStream(ServletInputStream delegate, TokenBucket bucket) {
+            this.delegate = delegate;
+            this.bucket = bucket;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate.read();
+            if (b >= 0) {
+                bucket.consume(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = delegate.read(buffer, offset, length);
+            if (read > 0) {
+                bucket.consume(read);
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            delegate.setReadListener(readListener);
+        }
+    }
+
+    private static final class ShapedOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+        private final TokenBucket bucket;
+
+        private ShapedOutputStream(ServletOutputStream delegate, TokenBucket bucket) {
+            this.delegate = delegate;
+            this.bucket = bucket;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            bucket.consume(1);
+            delegate.write(b);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            bucket.consume(length);
+            delegate.write(buffer, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+    }
+
+    /**
+     * Holds the admission of an asynchronously completed response until it is done.
+     */
+    private record ReleasingListener(AdmissionGate.Ticket ticket) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            ticket.close();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            ticket.close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            ticket.close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
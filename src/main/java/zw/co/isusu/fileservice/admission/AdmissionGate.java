@@ -0,0 +1,192 @@
+package zw.co.isusu.fileservice.admission;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import zw.co.isusu.fileservice.config.AdmissionProperties;
+import zw.co.isusu.fileservice.metrics.FileMetrics;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Decides whether a transfer may start, without ever waiting.
+ * <p>
+ * A transfer needs a slot of its client within its traffic class, a slot of the traffic class
+ * and, for uploads, room for its request body in a global budget counted in kilobytes. Whatever
+ * is missing fails the admission at once, so an overloaded service answers quickly instead of
+ * queueing work it cannot finish. Exports have their own small class, so bulk archives never
+ * take the slots of interactive downloads.
+ * <p>
+ * Bandwidth is shaped per client for uploads and downloads and for all exports together.
+ */
+@Component
+public class AdmissionGate {
+
+    private static final long PERMIT_SIZE = 1024;
+    private static final Duration IDLE_CLIENT_EXPIRY = Duration.ofMinutes(10);
+
+    private final AdmissionProperties properties;
+    private final FileMetrics fileMetrics;
+    private final long unknownLengthCharge;
+    private final Map<TrafficClass, Semaphore> classSlots = new EnumMap<>(TrafficClass.class);
+    private final Map<ClientKey, Integer> clientSlots = new ConcurrentHashMap<>();
+    private final Semaphore budget;
+    private final int totalPermits;
+    private final Cache<ClientKey, TokenBucket> clientBuckets;
+    @Nullable
+    private final TokenBucket exportBucket;
+
+    public AdmissionGate(AdmissionProperties properties, MultipartProperties multipartProperties, FileMetrics fileMetrics) {
+        this.properties = properties;
+        this.fileMetrics = fileMetrics;
+        // A body of unknown length may be as large as the container accepts
+        this.unknownLengthCharge = multipartProperties.getMaxRequestSize().toBytes();
+        for (TrafficClass trafficClass : TrafficClass.values()) {
+            int concurrency = concurrency(trafficClass);
+            if (concurrency > 0) {
+                classSlots.put(trafficClass, new Semaphore(concurrency));
+            }
+        }
+        this.totalPermits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, properties.maxInFlight().toBytes() / PERMIT_SIZE));
+        this.budget = new Semaphore(totalPermits);
+        this.clientBuckets = Caffeine.newBuilder()
+                .expireAfterAccess(IDLE_CLIENT_EXPIRY)
+                .build();
+        long exportRate = properties.exportRate().toBytes();
+        this.exportBucket = exportRate > 0 ? new TokenBucket(exportRate) : null;
+    }
+
+    /**
+     * Admits a transfer or rejects it immediately.
+     *
+     * @param bodyLength length of the request body, or -1 when unknown
+     * @return the admission, to be closed when the transfer has finished
+     */
+    public Ticket admit(TrafficClass trafficClass, String client, long bodyLength) throws AdmissionRejectedException {
+        ClientKey key = new ClientKey(trafficClass, client);
+        int perClient = perClient(trafficClass);
+        if (perClient > 0 && !acquireClientSlot(key, perClient)) {
+            throw reject(trafficClass, HttpStatus.TOO_MANY_REQUESTS, "client",
+                    "Too many concurrent " + trafficClass.tag() + "s from this client");
+        }
+        Semaphore slots = classSlots.get(trafficClass);
+        if (slots != null && !slots.tryAcquire()) {
+            releaseClientSlot(key, perClient);
+            throw reject(trafficClass, HttpStatus.SERVICE_UNAVAILABLE, "concurrency",
+                    "Too many concurrent " + trafficClass.tag() + "s");
+        }
+        int permits = 0;
+        if (trafficClass == TrafficClass.UPLOAD) {
+            long charge = bodyLength < 0 ? unknownLengthCharge : bodyLength;
+            permits = (int) Math.min(totalPermits, Math.max(1, charge / PERMIT_SIZE));
+            if (!budget.tryAcquire(permits)) {
+                if (slots != null) {
+                    slots.release();
+                }
+                releaseClientSlot(key, perClient);
+                throw reject(trafficClass, HttpStatus.SERVICE_UNAVAILABLE, "bytes",
+                        "Too many bytes in flight");
+            }
+        }
+        return new Ticket(key, perClient, slots, permits);
+    }
+
+    /**
+     * The bucket shaping transfers of this client and class, or {@code null} when they are not shaped.
+     */
+    @Nullable
+    TokenBucket bucket(TrafficClass trafficClass, String client) {
+        if (trafficClass == TrafficClass.EXPORT) {
+            return exportBucket;
+        }
+        long rate = (trafficClass == TrafficClass.UPLOAD ? properties.uploadRate() : properties.downloadRate()).toBytes();
+        if (rate <= 0) {
+            return null;
+        }
+        return clientBuckets.get(new ClientKey(trafficClass, client), key -> new TokenBucket(rate));
+    }
+
+    private boolean acquireClientSlot(ClientKey key, int limit) {
+        AtomicBoolean acquired = new AtomicBoolean();
+        clientSlots.compute(key, (k, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= limit) {
+                return count;
+            }
+            acquired.set(true);
+            return current + 1;
+        });
+        return acquired.get();
+    }
+
+    private void releaseClientSlot(ClientKey key, int limit) {
+        if (limit > 0) {
+            clientSlots.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private AdmissionRejectedException reject(TrafficClass trafficClass, HttpStatus status, String reason, String message) {
+        fileMetrics.recordRejection(trafficClass.tag(), reason);
+        return new AdmissionRejectedException(status, reason, message);
+    }
+
+    private int concurrency(TrafficClass trafficClass) {
+        return switch (trafficClass) {
+            case UPLOAD -> properties.uploadConcurrency();
+            case DOWNLOAD -> properties.downloadConcurrency();
+            case EXPORT -> properties.exportConcurrency();
+        };
+    }
+
+    private int perClient(TrafficClass trafficClass) {
+        return switch (trafficClass) {
+            case UPLOAD -> properties.uploadPerClient();
+            case DOWNLOAD -> properties.downloadPerClient();
+            case EXPORT -> properties.exportPerClient();
+        };
+    }
+
+    /**
+     * An admitted transfer. Closing it, any number of times, gives its capacity back.
+     */
+    public final class Ticket implements AutoCloseable {
+
+        private final ClientKey key;
+        private final int perClient;
+        @Nullable
+        private final Semaphore slots;
+        private final int permits;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Ticket(ClientKey key, int perClient, @Nullable Semaphore slots, int permits) {
+            this.key = key;
+            this.perClient = perClient;
+            this.slots = slots;
+            this.permits = permits;
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            if (permits > 0) {
+                budget.release(permits);
+            }
+            if (slots != null) {
+                slots.release();
+            }
+            releaseClientSlot(key, perClient);
+        }
+    }
+
+    private record ClientKey(TrafficClass trafficClass, String client) { }
+}
@@ -0,0 +1,30 @@
+package zw.co.isusu.fileservice.admission;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown when a transfer cannot be admitted right now.
+ * {@code 429} means the client itself is over its limit, {@code 503} that the service is at capacity.
+ */
+public class AdmissionRejectedException extends Exception {
+
+    private final HttpStatus status;
+    private final String reason;
+
+    public AdmissionRejectedException(HttpStatus status, String reason, String message) {
+        super(message);
+        this.status = status;
+        this.reason = reason;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Short cause of the rejection, used in meter tags.
+     */
+    public String getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,52 @@
+package zw.co.isusu.fileservice.admission;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Token bucket limiting a byte stream to a steady rate, with bursts of up to one second's worth.
+ * <p>
+ * Callers take the tokens for what they send and, when that leaves the bucket in debt, sleep
+ * until the debt is paid off. The lock is only held for the bookkeeping, never while sleeping.
+ */
+final class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long bytesPerSecond;
+    private double tokens;
+    private long refilledAt;
+
+    TokenBucket(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.tokens = bytesPerSecond;
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * Takes tokens for {@code bytes}, waiting as long as the rate requires.
+     */
+    void consume(long bytes) throws InterruptedIOException {
+        long waitNanos;
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            tokens = Math.min(bytesPerSecond, tokens + (double) (now - refilledAt) * bytesPerSecond / NANOS_PER_SECOND);
+            refilledAt = now;
+            tokens -= bytes;
+            waitNanos = tokens >= 0 ? 0 : (long) (-tokens * NANOS_PER_SECOND / bytesPerSecond);
+        } finally {
+            lock.unlock();
+        }
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while shaping bandwidth");
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package zw.co.isusu.fileservice.admission;
+
+import org.jetbrains.annotations.Nullable;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Kinds of transfers admitted separately, so that one kind cannot use up the capacity of another.
+ */
+public enum TrafficClass {
+
+    UPLOAD(List.of(
+            route(HttpMethod.POST, "/api/files/upload"),
+            route(HttpMethod.POST, "/api/files/uploads"),
+            route(HttpMethod.PUT, "/api/files/{fileId}/replace"),
+            route(HttpMethod.PUT, "/api/files/upload-sessions/{sessionId}/chunks/{chunkIndex}"))),
+    DOWNLOAD(List.of(
+            route(HttpMethod.GET, "/api/files/download/{fileId}"),
+            route(HttpMethod.HEAD, "/api/files/download/{fileId}"),
+            route(HttpMethod.GET, "/api/files/signed/{token}"),
+            route(HttpMethod.HEAD, "/api/files/signed/{token}"),
+            route(HttpMethod.GET, "/api/files/{fileId}/versions/{version}/download"),
+            route(HttpMethod.HEAD, "/api/files/{fileId}/versions/{version}/download"),
+            route(HttpMethod.GET, "/api/files/preview/{fileId}"),
+            route(HttpMethod.HEAD, "/api/files/preview/{fileId}"))),
+    EXPORT(List.of(
+            route(HttpMethod.POST, "/api/files/archive"),
+            route(HttpMethod.GET, "/api/files/export")));
+
+    private final List<Route> routes;
+
+    TrafficClass(List<Route> routes) {
+        this.routes = routes;
+    }
+
+    /**
+     * The class of a request, or {@code null} for requests that transfer no file contents.
+     */
+    @Nullable
+    public static TrafficClass of(String method, String path) {
+        PathContainer container = PathContainer.parsePath(path);
+        for (TrafficClass trafficClass : values()) {
+            for (Route route : trafficClass.routes) {
+                if (route.method().matches(method) && route.pattern().matches(container)) {
+                    return trafficClass;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lower-case name used in meter tags.
+     */
+    public String tag() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    private static Route route(HttpMethod method, String pattern) {
+        return new Route(method, PathPatternParser.defaultInstance.parse(pattern));
+    }
+
+    private record Route(HttpMethod method, PathPattern pattern) { }
+}
@@ -1,9 +1,13 @@
 package zw.co.isusu.fileservice.api;
 
 import io.swagger.v3.oas.annotations.Operation;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -11,15 +15,35 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import zw.co.isusu.fileservice.api.support.BlobResponseWriter;
+import zw.co.isusu.fileservice.service.ArchiveService;
+import zw.co.isusu.fileservice.service.CatalogService;
 import zw.co.isusu.fileservice.service.FileService;
 import zw.co.isusu.fileservice.service.exception.FileNotFoundException;
+import zw.co.isusu.fileservice.service.request.ArchiveRequest;
+import zw.co.isusu.fileservice.service.request.BulkMetadataUpdate;
+import zw.co.isusu.fileservice.service.request.FileSearchRequest;
 import zw.co.isusu.fileservice.service.request.FileUploadRequest;
+import zw.co.isusu.fileservice.service.request.TagMatch;
 import zw.co.isusu.fileservice.service.request.UpdateFileMetadataRequest;
+import zw.co.isusu.fileservice.service.response.DownloadLinkResponse;
+import zw.co.isusu.fileservice.service.response.FileArchive;
 import zw.co.isusu.fileservice.service.response.FileDetailsResponse;
 import zw.co.isusu.fileservice.service.response.FileDownloadResponse;
+import zw.co.isusu.fileservice.service.response.FileListResponse;
 import zw.co.isusu.fileservice.service.response.FileUploadResponse;
+import zw.co.isusu.fileservice.service.response.FileUploadResult;
+import zw.co.isusu.fileservice.service.response.FileVersionResponse;
+import zw.co.isusu.fileservice.service.response.MetadataUpdateResult;
+import zw.co.isusu.fileservice.signing.InvalidDownloadLinkException;
+import zw.co.isusu.fileservice.signing.SignedDownloadLink;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
@@ -34,29 +58,38 @@ import java.util.UUID;
 @Validated
 public class FileController {
 
+    public static final String CONTENT_CHECKSUM_HEADER = "X-Content-Checksum";
+
     private final FileService fileService;
+    private final ArchiveService archiveService;
+    private final CatalogService catalogService;
+    private final BlobResponseWriter blobResponseWriter;
 
-    @Operation(summary = "Upload a file", description = "Uploads a single file to the server.")
+    @Operation(summary = "Upload a file", description = "Uploads a single file to the server. The optional "
+            + CONTENT_CHECKSUM_HEADER + " header declares checksums of the contents, e.g. sha256=<hex>,crc32c=<hex>; "
+            + "the upload is rejected if they do not match.")
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<FileUploadResponse> uploadFile(@RequestPart("file") MultipartFile file) throws IOException {
-        log.info("Uploading file: {}", file.getOriginalFilename());
-        FileUploadRequest uploadRequest = new FileUploadRequest(file.getOriginalFilename(), file.getContentType(), file.getBytes());
+    public ResponseEntity<FileUploadResponse> uploadFile(@RequestPart("file") MultipartFile file,
+                                                         @RequestHeader(value = CONTENT_CHECKSUM_HEADER, required = false) String checksum) throws IOException {
+        log.debug("Uploading file: {}", file.getOriginalFilename());
+        FileUploadRequest uploadRequest = new FileUploadRequest(file.getOriginalFilename(), file.getContentType(), file.getInputStream(), checksum);
         FileUploadResponse response = fileService.uploadFile(uploadRequest);
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
-    @Operation(summary = "Upload multiple files", description = "Uploads multiple files to the server.")
+    @Operation(summary = "Upload multiple files", description = "Uploads multiple files to the server. Responds with 201 when every file was stored, otherwise 207 with the outcome of each file.")
     @PostMapping(value = "/uploads", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<List<FileUploadResponse>> uploadMultipleFiles(@RequestPart("files") MultipartFile[] files) throws IOException {
-        log.info("Uploading {} files", files.length);
-        List<FileUploadResponse> responses = fileService.uploadFiles(Arrays.asList(files));
-        return ResponseEntity.status(HttpStatus.CREATED).body(responses);
+    public ResponseEntity<List<FileUploadResult>> uploadMultipleFiles(@RequestPart("files") MultipartFile[] files) {
+        log.debug("Uploading {} files", files.length);
+        List<FileUploadResult> results = fileService.uploadFiles(Arrays.asList(files));
+        boolean allUploaded = results.stream().allMatch(FileUploadResult::uploaded);
+        return ResponseEntity.status(allUploaded ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS).body(results);
     }
 
     @Operation(summary = "Delete files", description = "Marks multiple files as deleted by their unique identifiers.")
     @PostMapping("/delete")
     public ResponseEntity<String> deleteFiles(@RequestBody List<UUID> fileIds) throws FileNotFoundException {
-        log.info("Deleting files with IDs: {}", fileIds);
+        log.debug("Deleting {} files", fileIds.size());
         fileService.deleteFiles(fileIds);
         return ResponseEntity.ok("Files deleted successfully");
     }
@@ -64,60 +97,161 @@ public class FileController {
     @Operation(summary = "Update file metadata", description = "Updates the metadata of an existing file.")
     @PutMapping("/{fileId}")
     public ResponseEntity<FileDetailsResponse> updateMetadata(@PathVariable UUID fileId, @RequestBody UpdateFileMetadataRequest request) {
-        log.info("Updating metadata for file ID: {}", fileId);
+        log.debug("Updating metadata for file ID: {}", fileId);
         FileDetailsResponse response = fileService.updateMetadata(fileId, request);
         return ResponseEntity.ok(response);
     }
 
+    @Operation(summary = "Update metadata in bulk", description = "Renames and retags many files at once. Every item carries the version it was based on "
+            + "and only applies if the file was not modified since. Responds with 200 when every item was applied, otherwise 207 with the outcome of each item.")
+    @PatchMapping("/metadata")
+    public ResponseEntity<List<MetadataUpdateResult>> updateMetadataInBulk(@RequestBody List<BulkMetadataUpdate> updates) {
+        log.debug("Updating metadata of {} files", updates.size());
+        List<MetadataUpdateResult> results = catalogService.updateMetadata(updates);
+        boolean allUpdated = results.stream().allMatch(result -> result.status() == MetadataUpdateResult.Status.UPDATED);
+        return ResponseEntity.status(allUpdated ? HttpStatus.OK : HttpStatus.MULTI_STATUS).body(results);
+    }
+
     @Operation(summary = "Replace a file", description = "Replaces an existing file with a new file.")
     @PutMapping("/{fileId}/replace")
     public ResponseEntity<FileUploadResponse> replaceFile(@PathVariable UUID fileId, @RequestPart("file") MultipartFile file) throws IOException {
-        log.info("Replacing file with ID: {}", fileId);
+        log.debug("Replacing file with ID: {}", fileId);
         FileUploadResponse response = fileService.replaceFile(fileId, file);
         return ResponseEntity.ok(response);
     }
 
+    @Operation(summary = "List file versions", description = "Lists the earlier versions of a file kept by replacements, newest first.")
+    @GetMapping("/{fileId}/versions")
+    public ResponseEntity<List<FileVersionResponse>> listVersions(@PathVariable UUID fileId) throws FileNotFoundException {
+        log.debug("Listing versions of file ID: {}", fileId);
+        return ResponseEntity.ok(fileService.listVersions(fileId));
+    }
+
+    @Operation(summary = "Download a file version", description = "Downloads an earlier version of a file.")
+    @GetMapping("/{fileId}/versions/{version}/download")
+    public void downloadVersion(@PathVariable UUID fileId, @PathVariable int version,
+                                HttpServletRequest request, HttpServletResponse response) throws FileNotFoundException, IOException {
+        log.debug("Downloading version {} of file ID: {}", version, fileId);
+        FileDownloadResponse file = fileService.downloadVersion(fileId, version);
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename(file.fileName())
+                .build();
+        blobResponseWriter.write(file, MediaType.APPLICATION_OCTET_STREAM, disposition, request, response);
+    }
+
+    @Operation(summary = "Restore a file version", description = "Makes an earlier version the current contents of a file; the replaced contents are kept as a version.")
+    @PostMapping("/{fileId}/versions/{version}/restore")
+    public ResponseEntity<FileUploadResponse> restoreVersion(@PathVariable UUID fileId, @PathVariable int version) throws FileNotFoundException {
+        log.debug("Restoring version {} of file ID: {}", version, fileId);
+        return ResponseEntity.ok(fileService.restoreVersion(fileId, version));
+    }
+
     @Operation(summary = "Download a file", description = "Downloads a file by its unique identifier.")
     @GetMapping("/download/{fileId}")
-    public ResponseEntity<byte[]> downloadFile(@PathVariable UUID fileId) throws FileNotFoundException {
-        log.info("Downloading file with ID: {}", fileId);
-        FileDownloadResponse response = fileService.downloadFile(fileId);
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + response.fileName() + "\"")
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(response.data());
+    public void downloadFile(@PathVariable UUID fileId, HttpServletRequest request, HttpServletResponse response) throws FileNotFoundException, IOException {
+        log.debug("Downloading file with ID: {}", fileId);
+        FileDownloadResponse file = fileService.downloadFile(fileId);
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename(file.fileName())
+                .build();
+        blobResponseWriter.write(file, MediaType.APPLICATION_OCTET_STREAM, disposition, request, response);
+    }
+
+    @Operation(summary = "Create a download link", description = "Issues a short-lived signed URL downloading the current contents of a file. "
+            + "The URL streams the file without looking it up; it stops working once the file is deleted, replaced or expires.")
+    @PostMapping("/{fileId}/download-link")
+    public ResponseEntity<DownloadLinkResponse> createDownloadLink(@PathVariable UUID fileId,
+                                                                   @RequestParam(required = false) @Min(1) Long ttlSeconds) throws FileNotFoundException {
+        log.debug("Creating download link for file ID: {}", fileId);
+        SignedDownloadLink link = fileService.createDownloadLink(fileId, ttlSeconds == null ? null : Duration.ofSeconds(ttlSeconds));
+        String url = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/files/signed/{token}")
+                .buildAndExpand(link.token())
+                .toUriString();
+        return ResponseEntity.ok(new DownloadLinkResponse(fileId, url, LocalDateTime.ofInstant(link.expiresAt(), ZoneId.systemDefault())));
+    }
+
+    @Operation(summary = "Download through a signed link", description = "Downloads the file a signed link was issued for.")
+    @GetMapping("/signed/{token}")
+    public void downloadSigned(@PathVariable String token, HttpServletRequest request, HttpServletResponse response)
+            throws FileNotFoundException, InvalidDownloadLinkException, IOException {
+        FileDownloadResponse file = fileService.downloadSigned(token);
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename(file.fileName())
+                .build();
+        blobResponseWriter.write(file, MediaType.APPLICATION_OCTET_STREAM, disposition, request, response);
     }
 
     @Operation(summary = "Get file details", description = "Fetches the details of a file by its unique identifier.")
     @GetMapping("/{fileId}")
     public ResponseEntity<FileDetailsResponse> getFileDetails(@PathVariable UUID fileId) throws FileNotFoundException {
-        log.info("Fetching details for file ID: {}", fileId);
+        log.debug("Fetching details for file ID: {}", fileId);
         FileDetailsResponse response = fileService.getFileById(fileId);
-        return ResponseEntity.ok(response);
+        // Spring answers If-None-Match / If-Modified-Since with 304 based on these validators
+        return ResponseEntity.ok()
+                .eTag(response.fileId() + "-" + response.version())
+                .lastModified(response.updatedAt().atZone(ZoneId.systemDefault()))
+                .body(response);
     }
 
-    @Operation(summary = "List all files", description = "Lists all files with pagination support.")
+    @Operation(summary = "List all files", description = "Lists all files, oldest first, using cursor-based pagination. Pass the returned nextCursor to fetch the following page.")
     @GetMapping
-    public ResponseEntity<Page<FileDetailsResponse>> listFiles(@RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size) {
-        log.info("Listing files with pagination: page={}, size={}", page, size);
-        Page<FileDetailsResponse> files = fileService.listFiles(page, size);
+    public ResponseEntity<FileListResponse> listFiles(@RequestParam(required = false) String cursor,
+                                                      @RequestParam(defaultValue = "10") @Min(1) @Max(500) int size) {
+        log.debug("Listing files with cursor: cursor={}, size={}", cursor, size);
+        FileListResponse files = fileService.listFiles(cursor, size);
         return ResponseEntity.ok(files);
     }
 
-    @Operation(summary = "Preview a file", description = "Generates a preview of a file by its unique identifier.")
-    @GetMapping("/preview/{fileId}")
-    public ResponseEntity<byte[]> previewFile(@PathVariable UUID fileId) {
-        log.info("Generating preview for file ID: {}", fileId);
-        FileDownloadResponse response = fileService.previewFile(fileId);
+    @Operation(summary = "Download files as a ZIP archive", description = "Streams the files with the given IDs, or all files carrying a tag, as a single ZIP archive.")
+    @PostMapping("/archive")
+    public ResponseEntity<StreamingResponseBody> downloadArchive(@RequestBody ArchiveRequest request) throws FileNotFoundException {
+        log.debug("Downloading archive: fileIds={}, tag={}", request.fileIds() == null ? 0 : request.fileIds().size(), request.tag());
+        FileArchive archive = archiveService.prepareArchive(request);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(archive.fileName()).build().toString())
+                .body(out -> archiveService.writeArchive(archive, out));
+    }
+
+    @Operation(summary = "Export the catalog", description = "Streams the metadata of every file as newline-delimited JSON, one file per line, oldest first, "
+            + "from a single consistent snapshot.")
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCatalog() {
+        log.debug("Exporting the catalog");
         return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(response.fileType()))
-                .body(response.data());
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(catalogService::exportCatalog);
+    }
+
+    @Operation(summary = "Search files", description = "Finds files by tags (all or any of them), file name prefix and content type, using the same cursor-based pagination as the listing.")
+    @GetMapping("/search")
+    public ResponseEntity<FileListResponse> searchFiles(@RequestParam(required = false) List<String> tags,
+                                                        @RequestParam(defaultValue = "ALL") TagMatch match,
+                                                        @RequestParam(required = false) String namePrefix,
+                                                        @RequestParam(required = false) String fileType,
+                                                        @RequestParam(required = false) String cursor,
+                                                        @RequestParam(defaultValue = "10") @Min(1) @Max(500) int size) {
+        log.debug("Searching files: tags={}, match={}, namePrefix={}, fileType={}", tags, match, namePrefix, fileType);
+        FileSearchRequest request = new FileSearchRequest(tags, match, namePrefix, fileType);
+        return ResponseEntity.ok(fileService.searchFiles(request, cursor, size));
+    }
+
+    @Operation(summary = "Preview a file", description = "Generates a preview of a file by its unique identifier. Images are served as JPEG renditions no larger than the requested size in pixels.")
+    @GetMapping("/preview/{fileId}")
+    public void previewFile(@PathVariable UUID fileId,
+                            @RequestParam(required = false) @Min(1) Integer size,
+                            HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        log.debug("Generating preview for file ID: {}, size: {}", fileId, size);
+        FileDownloadResponse file = fileService.previewFile(fileId, size);
+        blobResponseWriter.write(file, MediaType.parseMediaType(file.fileType()), null, request, response);
     }
 
     @Operation(summary = "Delete a file", description = "Marks a file as deleted by its unique identifier.")
     @DeleteMapping("/{fileId}")
     public ResponseEntity<String> deleteFile(@PathVariable UUID fileId) throws FileNotFoundException {
-        log.info("Deleting file with ID: {}", fileId);
+        log.debug("Deleting file with ID: {}", fileId);
         fileService.deleteFile(fileId);
         return ResponseEntity.ok("File deleted successfully");
     }
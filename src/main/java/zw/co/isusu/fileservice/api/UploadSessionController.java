@@ -0,0 +1,76 @@
+package zw.co.isusu.fileservice.api;
+
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import zw.co.isusu.fileservice.service.UploadSessionService;
+import zw.co.isusu.fileservice.service.exception.FileNotFoundException;
+import zw.co.isusu.fileservice.service.request.CreateUploadSessionRequest;
+import zw.co.isusu.fileservice.service.response.FileUploadResponse;
+import zw.co.isusu.fileservice.service.response.UploadChunkResponse;
+import zw.co.isusu.fileservice.service.response.UploadSessionResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+
+/**
+ * Controller for resumable, chunked uploads.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/files/upload-sessions")
+@RequiredArgsConstructor
+@Validated
+public class UploadSessionController {
+
+    public static final String CHUNK_CHECKSUM_HEADER = "X-Chunk-Checksum";
+
+    private final UploadSessionService uploadSessionService;
+
+    @Operation(summary = "Create an upload session", description = "Opens a resumable upload for a file of known size.")
+    @PostMapping
+    public ResponseEntity<UploadSessionResponse> createSession(@RequestBody CreateUploadSessionRequest request) throws IOException {
+        log.debug("Creating upload session for file: {}", request.fileName());
+        UploadSessionResponse response = uploadSessionService.createSession(request);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @Operation(summary = "Get upload session status", description = "Returns the byte ranges received so far.")
+    @GetMapping("/{sessionId}")
+    public ResponseEntity<UploadSessionResponse> getSession(@PathVariable UUID sessionId) throws FileNotFoundException {
+        return ResponseEntity.ok(uploadSessionService.getSession(sessionId));
+    }
+
+    @Operation(summary = "Upload a chunk", description = "Stores one chunk of the file. Chunks may be sent in parallel and in any order; "
+            + "the " + CHUNK_CHECKSUM_HEADER + " header carries the hex SHA-256 of the chunk.")
+    @PutMapping(value = "/{sessionId}/chunks/{chunkIndex}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<UploadChunkResponse> uploadChunk(@PathVariable UUID sessionId,
+                                                           @PathVariable int chunkIndex,
+                                                           @RequestHeader(CHUNK_CHECKSUM_HEADER) String checksum,
+                                                           InputStream content) throws IOException, FileNotFoundException {
+        UploadChunkResponse response = uploadSessionService.uploadChunk(sessionId, chunkIndex, checksum, content);
+        return ResponseEntity.ok(response);
+    }
+
+    @Operation(summary = "Commit an upload session", description = "Turns a fully uploaded session into a file.")
+    @PostMapping("/{sessionId}/commit")
+    public ResponseEntity<FileUploadResponse> commitSession(@PathVariable UUID sessionId) throws IOException, FileNotFoundException {
+        log.debug("Committing upload session: {}", sessionId);
+        FileUploadResponse response = uploadSessionService.commitSession(sessionId);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @Operation(summary = "Abort an upload session", description = "Discards an open upload session and its chunks.")
+    @DeleteMapping("/{sessionId}")
+    public ResponseEntity<String> abortSession(@PathVariable UUID sessionId) throws FileNotFoundException {
+        log.debug("Aborting upload session: {}", sessionId);
+        uploadSessionService.abortSession(sessionId);
+        return ResponseEntity.ok("Upload session aborted successfully");
+    }
+}
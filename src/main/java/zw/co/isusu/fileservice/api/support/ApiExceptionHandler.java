@@ -0,0 +1,46 @@
+package zw.co.isusu.fileservice.api.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import zw.co.isusu.fileservice.inspection.UploadRejectedException;
+import zw.co.isusu.fileservice.service.exception.InvalidCursorException;
+import zw.co.isusu.fileservice.signing.InvalidDownloadLinkException;
+
+/**
+ * Maps client errors thrown by the services to problem details with the status they call for.
+ * Rejections carrying a short reason expose it as the {@code reason} property of the body.
+ */
+@Slf4j
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    @ExceptionHandler(UploadRejectedException.class)
+    public ResponseEntity<ProblemDetail> handleUploadRejection(UploadRejectedException e) {
+        log.debug("Upload rejected: {}", e.getMessage());
+        return problem(e.getStatus(), e.getMessage(), e.getReason());
+    }
+
+    @ExceptionHandler(InvalidDownloadLinkException.class)
+    public ResponseEntity<ProblemDetail> handleDownloadLinkRejection(InvalidDownloadLinkException e) {
+        log.debug("Download link rejected: {}", e.getMessage());
+        return problem(e.getStatus(), e.getMessage(), e.getReason());
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ProblemDetail> handleInvalidCursor(InvalidCursorException e) {
+        log.debug("Invalid cursor: {}", e.getMessage());
+        return problem(HttpStatus.BAD_REQUEST, e.getMessage(), null);
+    }
+
+    private static ResponseEntity<ProblemDetail> problem(HttpStatus status, String detail, String reason) {
+        ProblemDetail body = ProblemDetail.forStatusAndDetail(status, detail);
+        if (reason != null) {
+            body.setProperty("reason", reason);
+        }
+        return ResponseEntity.status(status).body(body);
+    }
+}
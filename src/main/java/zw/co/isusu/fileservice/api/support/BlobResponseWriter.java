@@ -0,0 +1,287 @@
+package zw.co.isusu.fileservice.api.support;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import zw.co.isusu.fileservice.config.HttpCacheProperties;
+import zw.co.isusu.fileservice.metrics.FileMetrics;
+import zw.co.isusu.fileservice.service.TieringService;
+import zw.co.isusu.fileservice.service.response.FileDownloadResponse;
+import zw.co.isusu.fileservice.service.response.FileDownloadResponse.EncodedContent;
+import zw.co.isusu.fileservice.storage.BlobSource;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Streams file contents to the client, honouring {@code Range} and {@code If-Range}.
+ * Conditional requests ({@code If-None-Match}, {@code If-Modified-Since}) are answered
+ * with {@code 304 Not Modified} from the metadata alone, before any content is read.
+ * Single ranges are answered with {@code 206 Partial Content}, several ranges with a
+ * {@code multipart/byteranges} body. Blobs stored compressed are sent as they are, with a
+ * {@code Content-Encoding}, to clients that accept it. Filesystem-backed blobs are handed to Tomcat's
+ * sendfile support when the connector offers it, otherwise they are copied with
+ * {@link java.nio.channels.FileChannel#transferTo}.
+ * <p>
+ * Bytes sent and the time spent sending them are recorded per representation
+ * ({@code full}, {@code gzip}, {@code partial} or {@code multipart}). Only responses that
+ * send a body count as reads of the blob for tiering; {@code 304}s, {@code 416}s and
+ * {@code HEAD} requests never touch the stored bytes.
+ */
+@Component
+@RequiredArgsConstructor
+public class BlobResponseWriter {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final HttpCacheProperties cacheProperties;
+    private final FileMetrics fileMetrics;
+    private final TieringService tieringService;
+
+    public void write(FileDownloadResponse file,
+                      MediaType contentType,
+                      @Nullable ContentDisposition disposition,
+                      HttpServletRequest request,
+                      HttpServletResponse response) throws IOException {
+        long size = file.size();
+        long lastModified = file.lastModified() == null
+                ? -1
+                : file.lastModified().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        EncodedContent encoded = passThroughEncoding(file, request);
+        String etag = file.contentHash() == null ? null
+                : encoded == null ? "\"" + file.contentHash() + "\""
+                : "\"" + file.contentHash() + "-" + encoded.contentCoding() + "\"";
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (file.encoded() != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControlFor(file.fileType()));
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+        if (disposition != null) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, disposition.toString());
+        }
+
+        if (encoded != null) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType.toString());
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoded.contentCoding());
+            response.setContentLengthLong(encoded.size());
+            writeBody(file, encoded.content(), new ByteRange(0, encoded.size() - 1), "gzip", request, response);
+            return;
+        }
+
+        List<HttpRange> ranges = requestedRanges(request, etag, lastModified);
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType.toString());
+            response.setContentLengthLong(size);
+            writeBody(file, file.content(), new ByteRange(0, size - 1), "full", request, response);
+            return;
+        }
+
+        List<ByteRange> byteRanges = new ArrayList<>(ranges.size());
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(size);
+            long end = range.getRangeEnd(size);
+            if (start < size && start <= end) {
+                byteRanges.add(new ByteRange(start, end));
+            }
+        }
+        if (byteRanges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (byteRanges.size() == 1) {
+            ByteRange range = byteRanges.get(0);
+            response.setContentType(contentType.toString());
+            response.setContentLengthLong(range.length());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, range.contentRange(size));
+            writeBody(file, file.content(), range, "partial", request, response);
+            return;
+        }
+
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        if (isHead(request)) {
+            return;
+        }
+        recordRead(file);
+        long started = System.nanoTime();
+        long sent = 0;
+        fileMetrics.downloadStarted();
+        try {
+            ServletOutputStream out = response.getOutputStream();
+            WritableByteChannel channel = Channels.newChannel(out);
+            for (ByteRange range : byteRanges) {
+                out.write(("\r\n--" + boundary + "\r\n"
+                        + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                        + HttpHeaders.CONTENT_RANGE + ": " + range.contentRange(size) + "\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+                file.content().transferTo(range.start(), range.length(), channel);
+                sent += range.length();
+            }
+            out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        } finally {
+            fileMetrics.downloadFinished();
+            fileMetrics.recordDownload("multipart", sent, System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Returns the stored encoding when it can be sent to the client as it is: the client accepts
+     * the coding and asked for the whole representation. Ranges always address the decoded bytes.
+     */
+    @Nullable
+    private static EncodedContent passThroughEncoding(FileDownloadResponse file, HttpServletRequest request) {
+        EncodedContent encoded = file.encoded();
+        if (encoded == null || request.getHeader(HttpHeaders.RANGE) != null) {
+            return null;
+        }
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return null;
+        }
+        for (String token : acceptEncoding.split(",")) {
+            String[] parts = token.trim().split(";");
+            String coding = parts[0].trim();
+            if (!coding.equalsIgnoreCase(encoded.contentCoding()) && !coding.equals("*")) {
+                continue;
+            }
+            boolean refused = parts.length > 1 && parts[1].trim().matches("q\\s*=\\s*0(\\.0{0,3})?");
+            return refused ? null : encoded;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the ranges to serve, or an empty list when the full representation should be sent
+     * because no range was asked for, the header is malformed or {@code If-Range} does not match.
+     */
+    private List<HttpRange> requestedRanges(HttpServletRequest request, @Nullable String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !ifRangeMatches(request, etag, lastModified)) {
+            return List.of();
+        }
+        try {
+            return HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+    }
+
+    private boolean ifRangeMatches(HttpServletRequest request, @Nullable String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // If-Range requires a strong comparison, so weak validators never match
+            return ifRange.equals(etag);
+        }
+        try {
+            long since = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return lastModified >= 0 && lastModified / 1000 == since / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private String cacheControlFor(@Nullable String fileType) {
+        if (fileType != null) {
+            try {
+                MediaType type = MediaType.parseMediaType(fileType);
+                for (Map.Entry<String, String> entry : cacheProperties.cacheControl().entrySet()) {
+                    if (MediaType.parseMediaType(entry.getKey()).includes(type)) {
+                        return entry.getValue();
+                    }
+                }
+            } catch (InvalidMediaTypeException e) {
+                // fall through to the default
+            }
+        }
+        return cacheProperties.defaultCacheControl();
+    }
+
+    private void writeBody(FileDownloadResponse file, BlobSource content, ByteRange range, String representation,
+                           HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (isHead(request) || range.length() <= 0) {
+            return;
+        }
+        recordRead(file);
+        long started = System.nanoTime();
+        long sent = 0;
+        fileMetrics.downloadStarted();
+        try {
+            Optional<Path> localFile = content.localFile();
+            if (localFile.isPresent() && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                // The container sends the file after we return; only the hand-off is timed
+                request.setAttribute(SENDFILE_FILENAME, localFile.get().toRealPath().toString());
+                request.setAttribute(SENDFILE_START, range.start());
+                request.setAttribute(SENDFILE_END, range.end() + 1);
+                sent = range.length();
+                return;
+            }
+            ServletOutputStream out = response.getOutputStream();
+            content.transferTo(range.start(), range.length(), Channels.newChannel(out));
+            out.flush();
+            sent = range.length();
+        } finally {
+            fileMetrics.downloadFinished();
+            fileMetrics.recordDownload(representation, sent, System.nanoTime() - started);
+        }
+    }
+
+    private void recordRead(FileDownloadResponse file) {
+        if (file.contentHash() != null) {
+            tieringService.recordAccess(file.contentHash());
+        }
+    }
+
+    private static boolean isHead(HttpServletRequest request) {
+        return HttpMethod.HEAD.matches(request.getMethod());
+    }
+
+    /**
+     * Inclusive byte range within a representation.
+     */
+    private record ByteRange(long start, long end) {
+
+        long length() {
+            return end - start + 1;
+        }
+
+        String contentRange(long size) {
+            return "bytes " + start + "-" + end + "/" + size;
+        }
+    }
+}
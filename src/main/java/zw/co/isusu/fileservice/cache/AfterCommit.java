@@ -0,0 +1,30 @@
+package zw.co.isusu.fileservice.cache;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Defers cache invalidations until the transaction making the change has committed.
+ * <p>
+ * Dropping an entry any earlier lets a concurrent reader load the old committed row again and
+ * cache it after the drop; once the change has committed, a reload sees the new row. Outside
+ * of a transaction the action runs at once, and it never runs if the transaction rolls back.
+ */
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    public static void run(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
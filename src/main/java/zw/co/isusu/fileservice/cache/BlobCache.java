@@ -0,0 +1,199 @@
+package zw.co.isusu.fileservice.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import zw.co.isusu.fileservice.config.BlobCacheProperties;
+import zw.co.isusu.fileservice.storage.BlobSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Byte-bounded cache of small, frequently downloaded blobs keyed by file and version.
+ * <p>
+ * Eviction is Caffeine's W-TinyLFU, weighed by blob size, so a handful of hot files
+ * stay resident while one-off downloads do not displace them. Cached bytes live in
+ * direct buffers by default; native memory of evicted entries is released when the
+ * buffer is garbage collected. Hit, miss and eviction counts are published as
+ * {@code cache.*} meters tagged {@code cache=blobCache}.
+ * <p>
+ * Entries are futures completed by the first reader, outside the cache's own locks, so a
+ * slow blob store never blocks readers of other entries or pins a virtual thread.
+ * Concurrent readers of a loading entry wait for the same load.
+ * <p>
+ * The cached versions of each file are indexed by file ID, so invalidating a file touches
+ * only its own entries. Versions are added to the index right after their entry and taken
+ * out only once it is gone.
+ */
+@Slf4j
+@Component
+public class BlobCache {
+
+    private final BlobCacheProperties properties;
+    private final AsyncCache<Key, ByteBuffer> cache;
+    private final ConcurrentHashMap<UUID, Set<Integer>> versionsByFile = new ConcurrentHashMap<>();
+
+    public BlobCache(BlobCacheProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.maxSize().toBytes())
+                .weigher((Key key, ByteBuffer buffer) -> buffer.capacity())
+                .removalListener((Key key, ByteBuffer buffer, RemovalCause cause) -> unindex(key))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "blobCache");
+    }
+
+    /**
+     * Returns a source that serves the blob from the cache, loading it from {@code origin}
+     * on first read. Blobs over the entry size limit bypass the cache entirely.
+     */
+    public BlobSource wrap(UUID fileId, int version, long size, BlobSource origin) {
+        if (!properties.enabled() || size > properties.maxEntrySize().toBytes()) {
+            return origin;
+        }
+        return new CachedBlobSource(new Key(fileId, version), size, origin);
+    }
+
+    /**
+     * Drops the cached contents of a file once the surrounding transaction has committed.
+     */
+    public void invalidate(UUID fileId) {
+        AfterCommit.run(() -> {
+            Set<Integer> versions = versionsByFile.remove(fileId);
+            if (versions != null) {
+                versions.forEach(version -> cache.asMap().remove(new Key(fileId, version)));
+            }
+        });
+    }
+
+    private void index(Key key) {
+        versionsByFile.compute(key.fileId(), (fileId, versions) -> {
+            Set<Integer> indexed = versions == null ? new HashSet<>() : versions;
+            indexed.add(key.version());
+            return indexed;
+        });
+    }
+
+    private void unindex(Key key) {
+        versionsByFile.computeIfPresent(key.fileId(), (fileId, versions) -> {
+            // The same version may have been cached again since it was removed
+            if (!cache.asMap().containsKey(key)) {
+                versions.remove(key.version());
+            }
+            return versions.isEmpty() ? null : versions;
+        });
+    }
+
+    private ByteBuffer load(long size, BlobSource origin) {
+        ByteBuffer buffer = properties.offHeap() ? ByteBuffer.allocateDirect((int) size) : ByteBuffer.allocate((int) size);
+        try {
+            origin.transferTo(0, size, new BufferChannel(buffer));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.flip().asReadOnlyBuffer();
+    }
+
+    private record Key(UUID fileId, int version) { }
+
+    private final class CachedBlobSource implements BlobSource {
+
+        private final Key key;
+        private final long size;
+        private final BlobSource origin;
+
+        private CachedBlobSource(Key key, long size, BlobSource origin) {
+            this.key = key;
+            this.size = size;
+            this.origin = origin;
+        }
+
+        @Override
+        public InputStream openStream(long position) throws IOException {
+            ByteBuffer slice = slice(position, size - position);
+            byte[] bytes = new byte[slice.remaining()];
+            slice.get(bytes);
+            return new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            ByteBuffer slice = slice(position, count);
+            while (slice.hasRemaining()) {
+                target.write(slice);
+            }
+        }
+
+        private ByteBuffer slice(long position, long count) throws IOException {
+            CompletableFuture<ByteBuffer> created = new CompletableFuture<>();
+            CompletableFuture<ByteBuffer> entry = cache.get(key, (k, executor) -> created);
+            if (entry == created) {
+                index(key);
+                try {
+                    created.complete(load(size, origin));
+                } catch (RuntimeException e) {
+                    // Failed futures are dropped from the cache, so the next read retries
+                    created.completeExceptionally(e);
+                }
+            }
+            ByteBuffer buffer;
+            try {
+                buffer = entry.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof UncheckedIOException io) {
+                    throw io.getCause();
+                }
+                throw e;
+            }
+            return buffer.duplicate().position((int) position).limit((int) (position + count));
+        }
+    }
+
+    /**
+     * Channel that fills a pre-sized buffer.
+     */
+    private static final class BufferChannel implements WritableByteChannel {
+
+        private final ByteBuffer buffer;
+
+        private BufferChannel(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (src.remaining() > buffer.remaining()) {
+                throw new IOException("Blob is larger than its recorded size");
+            }
+            int written = src.remaining();
+            buffer.put(src);
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            // nothing to release
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package zw.co.isusu.fileservice.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import zw.co.isusu.fileservice.config.MetadataCacheProperties;
+import zw.co.isusu.fileservice.persistence.FileRepository;
+import zw.co.isusu.fileservice.persistence.projection.FileMetadata;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Bounded cache of live file metadata keyed by file ID, including the absence of a file.
+ * <p>
+ * Missing and deleted files are remembered for a short time only, so polling for them
+ * does not reach the database on every request. Whoever changes a file calls
+ * {@link #evict}, which drops the entry here and, through the {@link MetadataInvalidationChannel},
+ * on every other instance once the change has committed; dropping it earlier would let a
+ * concurrent reader cache the old row again. Entries are loaded
+ * by the first reader, outside the cache's own locks; concurrent readers wait for that load.
+ * Hit, miss and eviction counts are published as {@code cache.*} meters tagged
+ * {@code cache=fileMetadataCache}.
+ */
+@Component
+public class FileMetadataCache implements MetadataInvalidationChannel.Subscriber {
+
+    private final FileRepository fileRepository;
+    private final MetadataInvalidationChannel channel;
+    private final MetadataCacheProperties properties;
+    private final AsyncCache<UUID, Optional<FileMetadata>> cache;
+
+    public FileMetadataCache(FileRepository fileRepository,
+                             MetadataInvalidationChannel channel,
+                             MetadataCacheProperties properties,
+                             MeterRegistry meterRegistry) {
+        this.fileRepository = fileRepository;
+        this.channel = channel;
+        this.properties = properties;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.maxEntries())
+                .expireAfter(new MetadataExpiry(properties))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "fileMetadataCache");
+        channel.subscribe(this);
+    }
+
+    /**
+     * Metadata of the live file with the given ID, or empty if there is none.
+     */
+    public Optional<FileMetadata> get(UUID fileId) {
+        if (!properties.enabled()) {
+            return fileRepository.findMetadataByFileId(fileId);
+        }
+        CompletableFuture<Optional<FileMetadata>> created = new CompletableFuture<>();
+        CompletableFuture<Optional<FileMetadata>> entry = cache.get(fileId, (key, executor) -> created);
+        if (entry == created) {
+            try {
+                created.complete(fileRepository.findMetadataByFileId(fileId));
+            } catch (RuntimeException e) {
+                // Failed futures are dropped from the cache, so the next lookup retries
+                created.completeExceptionally(e);
+            }
+        }
+        try {
+            return entry.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Drops the metadata of a file that is being changed, here and on every other instance,
+     * once the surrounding transaction has committed.
+     */
+    public void evict(UUID fileId) {
+        AfterCommit.run(() -> cache.synchronous().invalidate(fileId));
+        channel.publish(fileId);
+    }
+
+    @Override
+    public void invalidate(UUID fileId) {
+        cache.synchronous().invalidate(fileId);
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    /**
+     * Expires metadata of live files after the TTL and absent files after the negative TTL,
+     * counted from when the entry was written; reads do not extend it.
+     */
+    private record MetadataExpiry(MetadataCacheProperties properties) implements Expiry<UUID, Optional<FileMetadata>> {
+
+        @Override
+        public long expireAfterCreate(UUID fileId, Optional<FileMetadata> metadata, long currentTime) {
+            return (metadata.isPresent() ? properties.ttl() : properties.negativeTtl()).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(UUID fileId, Optional<FileMetadata> metadata, long currentTime, long currentDuration) {
+            return expireAfterCreate(fileId, metadata, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(UUID fileId, Optional<FileMetadata> metadata, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package zw.co.isusu.fileservice.cache;
+
+import java.util.UUID;
+
+/**
+ * Carries invalidations of cached file metadata to every instance of the service,
+ * including the one publishing them.
+ */
+public interface MetadataInvalidationChannel {
+
+    /**
+     * Announces that the metadata of a file changed. When called inside a transaction,
+     * subscribers are only told once it has committed.
+     */
+    void publish(UUID fileId);
+
+    void subscribe(Subscriber subscriber);
+
+    interface Subscriber {
+
+        void invalidate(UUID fileId);
+
+        /**
+         * Called when invalidations may have been missed, e.g. after a lost connection.
+         */
+        void invalidateAll();
+    }
+}
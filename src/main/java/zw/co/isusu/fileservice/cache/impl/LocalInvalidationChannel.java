@@ -0,0 +1,34 @@
+package zw.co.isusu.fileservice.cache.impl;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import zw.co.isusu.fileservice.cache.AfterCommit;
+import zw.co.isusu.fileservice.cache.MetadataInvalidationChannel;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Invalidation channel for a single instance, delivering within the process.
+ */
+@Component
+@ConditionalOnProperty(name = "file-service.cache.metadata.channel", havingValue = "local", matchIfMissing = true)
+public class LocalInvalidationChannel implements MetadataInvalidationChannel {
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(UUID fileId) {
+        AfterCommit.run(() -> deliver(fileId));
+    }
+
+    @Override
+    public void subscribe(Subscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    private void deliver(UUID fileId) {
+        subscribers.forEach(subscriber -> subscriber.invalidate(fileId));
+    }
+}
@@ -0,0 +1,127 @@
+package zw.co.isusu.fileservice.cache.impl;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import zw.co.isusu.fileservice.cache.MetadataInvalidationChannel;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Invalidation channel between instances sharing a PostgreSQL database, over LISTEN/NOTIFY.
+ * <p>
+ * Notifications are sent on the connection of the current transaction, so PostgreSQL only
+ * delivers them once it commits. A background thread listens on a connection of its own,
+ * taken from the pool for as long as the service runs. Whenever that connection has to be
+ * re-established, subscribers drop everything, as notifications may have been missed.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "file-service.cache.metadata.channel", havingValue = "postgres")
+public class PostgresInvalidationChannel implements MetadataInvalidationChannel {
+
+    static final String CHANNEL = "file_metadata_invalidation";
+    private static final int POLL_TIMEOUT_MILLIS = 1000;
+    private static final long RECONNECT_DELAY_MILLIS = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final Thread listener;
+    private volatile boolean running = true;
+
+    public PostgresInvalidationChannel(JdbcTemplate jdbcTemplate, DataSource dataSource) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = dataSource;
+        this.listener = new Thread(this::listen, "metadata-invalidation-listener");
+        this.listener.setDaemon(true);
+    }
+
+    @PostConstruct
+    void start() {
+        listener.start();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        listener.interrupt();
+    }
+
+    @Override
+    public void publish(UUID fileId) {
+        jdbcTemplate.query("select pg_notify(?, ?)", rs -> { }, CHANNEL, fileId.toString());
+    }
+
+    @Override
+    public void subscribe(Subscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                subscribers.forEach(this::invalidateAll);
+                PGConnection notifications = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] received = notifications.getNotifications(POLL_TIMEOUT_MILLIS);
+                    if (received != null) {
+                        for (PGNotification notification : received) {
+                            deliver(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Lost metadata invalidation channel, reconnecting", e);
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void deliver(String payload) {
+        UUID fileId;
+        try {
+            fileId = UUID.fromString(payload);
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed metadata invalidation: {}", payload);
+            return;
+        }
+        for (Subscriber subscriber : subscribers) {
+            // One failing subscriber must neither starve the others nor stop the listener
+            try {
+                subscriber.invalidate(fileId);
+            } catch (RuntimeException e) {
+                log.warn("Failed to deliver metadata invalidation of file {}", fileId, e);
+            }
+        }
+    }
+
+    private void invalidateAll(Subscriber subscriber) {
+        try {
+            subscriber.invalidateAll();
+        } catch (RuntimeException e) {
+            log.warn("Failed to drop cached metadata after reconnecting", e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package zw.co.isusu.fileservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Settings for admitting transfers and shaping their bandwidth.
+ * <p>
+ * Concurrency limits apply per traffic class: uploads, downloads (including previews) and
+ * exports (ZIP archives). A limit of 0 leaves that dimension unlimited, as does a rate of 0.
+ * An upload holds a database connection while its body is received, so the upload limit
+ * belongs below {@code spring.datasource.hikari.maximum-pool-size}; with the {@code postgres}
+ * blob store, every download and export streams over a connection of its own as well.
+ *
+ * @param enabled              whether transfers pass through admission control
+ * @param maxInFlight          request body bytes being received at once, across all uploads;
+ *                             a single larger upload is admitted on its own
+ * @param retryAfter           delay suggested to rejected clients in {@code Retry-After}
+ * @param clientHeader         header identifying the client, e.g. {@code X-Forwarded-For} behind
+ *                             a single trusted proxy; the last value, appended by that proxy, is
+ *                             used. Without it, the remote address, which
+ *                             {@code server.forward-headers-strategy} can resolve instead
+ * @param uploadConcurrency    uploads in progress at once
+ * @param uploadPerClient      uploads in progress at once per client
+ * @param uploadRate           bytes per second each client may stream request bodies at
+ * @param downloadConcurrency  downloads and previews in progress at once
+ * @param downloadPerClient    downloads and previews in progress at once per client
+ * @param downloadRate         bytes per second each client may receive downloads and previews at
+ * @param exportConcurrency    archive exports in progress at once
+ * @param exportPerClient      archive exports in progress at once per client
+ * @param exportRate           bytes per second shared by all archive exports
+ */
+@ConfigurationProperties(prefix = "file-service.admission")
+public record AdmissionProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("512MB") DataSize maxInFlight,
+        @DefaultValue("5s") Duration retryAfter,
+        String clientHeader,
+        @DefaultValue("8") int uploadConcurrency,
+        @DefaultValue("4") int uploadPerClient,
+        @DefaultValue("0B") DataSize uploadRate,
+        @DefaultValue("256") int downloadConcurrency,
+        @DefaultValue("8") int downloadPerClient,
+        @DefaultValue("0B") DataSize downloadRate,
+        @DefaultValue("2") int exportConcurrency,
+        @DefaultValue("1") int exportPerClient,
+        @DefaultValue("0B") DataSize exportRate
+) { }
@@ -0,0 +1,22 @@
+package zw.co.isusu.fileservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+
+/**
+ * Settings for streamed ZIP archive downloads.
+ *
+ * @param maxFiles     most files a single archive may contain
+ * @param prefetchSize leading bytes of the next file read ahead while the current one streams
+ * @param storedTypes  media type patterns of already-compressed contents, archived without compression
+ */
+@ConfigurationProperties(prefix = "file-service.archive")
+public record ArchiveProperties(
+        @DefaultValue("10000") int maxFiles,
+        @DefaultValue("1MB") DataSize prefetchSize,
+        @DefaultValue({"image/jpeg", "image/png", "image/gif", "image/webp", "video/*", "audio/*",
+                "application/zip", "application/gzip", "application/x-7z-compressed"}) List<String> storedTypes
+) { }
@@ -0,0 +1,18 @@
+package zw.co.isusu.fileservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings for multi-file uploads.
+ *
+ * @param workers     blobs written in parallel, across all requests
+ * @param maxInFlight bytes being written to the blob store at once, across all requests;
+ *                    a single larger file is written on its own
+ */
+@ConfigurationProperties(prefix = "file-service.batch-upload")
+public record BatchUploadProperties(
+        @DefaultValue("4") int workers,
+        @DefaultValue("256MB") DataSize maxInFlight
+) { }
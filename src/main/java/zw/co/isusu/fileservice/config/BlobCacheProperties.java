@@ -0,0 +1,21 @@
+package zw.co.isusu.fileservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings for the in-memory cache of frequently downloaded blobs.
+ *
+ * @param enabled      whether downloads and previews go through the cache
+ * @param maxSize      total bytes the cache may hold
+ * @param maxEntrySize files larger than this are never cached
+ * @param offHeap      keep cached bytes in direct buffers outside the Java heap
+ */
+@ConfigurationProperties(prefix = "file-service.cache.blobs")
+public record BlobCacheProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("256MB") DataSize maxSize,
+        @DefaultValue("8MB") DataSize maxEntrySize,
+        @DefaultValue("true") boolean offHeap
+) { }
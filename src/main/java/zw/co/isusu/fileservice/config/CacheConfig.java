@@ -0,0 +1,9 @@
+package zw.co.isusu.fileservice.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties({BlobCacheProperties.class, HttpCacheProperties.class, MetadataCacheProperties.class})
+public class CacheConfig {
+}
@@ -0,0 +1,18 @@
+package zw.co.isusu.fileservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for the catalog export and bulk metadata updates.
+ *
+ * @param exportFetchSize rows fetched per round trip by the export's server-side cursor
+ * @param updateBatchSize items applied per JDBC batch and transaction by bulk updates
+ * @param maxUpdateItems  most items a single bulk update may contain
+ */
+@ConfigurationProperties(prefix = "file-service.catalog")
+public record CatalogProperties(
+        @DefaultValue("1000") int exportFetchSize,
+        @DefaultValue("500") int updateBatchSize,
+        @DefaultValue("10000") int maxUpdateItems
+) { }
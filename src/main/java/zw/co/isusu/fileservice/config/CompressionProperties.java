@@ -0,0 +1,26 @@
+package zw.co.isusu.fileservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+
+/**
+ * Settings for compressing blob contents at rest.
+ *
+ * @param enabled   whether new blobs may be stored compressed
+ * @param skipTypes media type patterns of contents that are already compressed and never probed
+ * @param probeSize leading bytes test-compressed to decide whether a blob is worth compressing
+ * @param minSize   blobs smaller than this are stored as is
+ * @param maxRatio  compressed-to-original size ratio the probe must reach for compression to be used
+ */
+@ConfigurationProperties(prefix = "file-service.compression")
+public record CompressionProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue({"image/jpeg", "image/png", "image/gif", "image/webp", "video/*", "audio/*",
+                "application/zip", "application/gzip", "application/x-7z-compressed"}) List<String> skipTypes,
+        @DefaultValue("64KB") DataSize probeSize,
+        @DefaultValue("1KB") DataSize minSize,
+        @DefaultValue("0.9") double maxRatio
+) { }
@@ -0,0 +1,25 @@
+package zw.co.isusu.fileservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Settings for signed download links.
+ *
+ * @param ttl                  lifetime of a link unless the caller asks for less
+ * @param maxTtl               longest lifetime a caller may ask for; revocations are remembered this long
+ * @param secrets              HMAC keys, the first signing new links and all of them verifying links,
+ *                             so a key is rotated by prepending its successor; when empty, a random key
+ *                             is generated on startup and links only work on the instance issuing them
+ * @param revocationMaxEntries files whose links are remembered as revoked at once
+ */
+@ConfigurationProperties(prefix = "file-service.download-links")
+public record DownloadLinkProperties(
+        @DefaultValue("5m") Duration ttl,
+        @DefaultValue("1h") Duration maxTtl,
+        @DefaultValue List<String> secrets,
+        @DefaultValue("100000") long revocationMaxEntries
+) { }
@@ -0,0 +1,24 @@
+package zw.co.isusu.fileservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * HTTP caching headers sent with file contents.
+ *
+ * @param cacheControl        {@code Cache-Control} value per media type pattern (e.g. {@code image/*}),
+ *                            matched against the stored file type in declaration order
+ * @param defaultCacheControl value used when no pattern matches
+ */
+@ConfigurationProperties(prefix = "file-service.http")
+public record HttpCacheProperties(
+        Map<String, String> cacheControl,
+        @DefaultValue("no-cache") String defaultCacheControl
+) {
+    public HttpCacheProperties {
+        cacheControl = cacheControl == null ? Map.of() : new LinkedHashMap<>(cacheControl);
+    }
+}
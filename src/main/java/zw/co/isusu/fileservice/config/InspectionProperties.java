@@ -0,0 +1,27 @@
+package zw.co.isusu.fileservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+
+/**
+ * Settings for the inspection of upload contents on their way to storage.
+ *
+ * @param enabled      whether uploads are inspected at all
+ * @param maxSize      largest upload accepted, whatever the client declares
+ * @param detectType   recognise common formats by their leading bytes and store them with the
+ *                     recognised type when the declared one contradicts it
+ * @param deniedTypes  media type patterns rejected, whether declared or recognised
+ * @param eicarScanner reject contents starting with the EICAR anti-virus test signature; a
+ *                     stand-in scanner for trying the rejection path without a real one
+ */
+@ConfigurationProperties(prefix = "file-service.inspection")
+public record InspectionProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("100MB") DataSize maxSize,
+        @DefaultValue("true") boolean detectType,
+        @DefaultValue({"application/x-msdownload", "application/x-executable"}) List<String> deniedTypes,
+        @DefaultValue("false") boolean eicarScanner
+) { }
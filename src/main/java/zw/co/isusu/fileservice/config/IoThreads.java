@@ -0,0 +1,43 @@
+package zw.co.isusu.fileservice.config;
+
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the threads that run blocking blob I/O off the request thread.
+ * <p>
+ * When {@code spring.threads.virtual.enabled} is set on a Java 21 runtime, requests are
+ * handled on virtual threads and so is the blob I/O handed off by them; otherwise these are
+ * daemon platform threads. Pools of CPU-bound work such as rendering bound their parallelism
+ * by their size either way.
+ */
+@Component
+public class IoThreads {
+
+    private final boolean virtual;
+
+    public IoThreads(Environment environment) {
+        this.virtual = Threading.VIRTUAL.isActive(environment);
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public ThreadFactory factory(String namePrefix) {
+        if (virtual) {
+            return new VirtualThreadTaskExecutor(namePrefix).getVirtualThreadFactory();
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
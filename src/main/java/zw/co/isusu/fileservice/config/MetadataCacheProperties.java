@@ -0,0 +1,26 @@
+package zw.co.isusu.fileservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for the cache of file metadata looked up by file ID.
+ *
+ * @param enabled     whether lookups by file ID go through the cache
+ * @param maxEntries  files whose metadata, or absence, is held at once
+ * @param ttl         how long metadata of a live file is kept; changes made through this
+ *                    service invalidate it earlier
+ * @param negativeTtl how long a missing or deleted file is remembered as such
+ * @param channel     how changes reach the caches of other instances: {@code local} for a
+ *                    single instance, {@code postgres} for LISTEN/NOTIFY
+ */
+@ConfigurationProperties(prefix = "file-service.cache.metadata")
+public record MetadataCacheProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("100000") long maxEntries,
+        @DefaultValue("10m") Duration ttl,
+        @DefaultValue("5s") Duration negativeTtl,
+        @DefaultValue("local") String channel
+) { }
@@ -0,0 +1,24 @@
+package zw.co.isusu.fileservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for the background purge of deleted files and unreferenced blobs.
+ *
+ * @param enabled          whether the purge runs at all
+ * @param retention        how long soft-deleted rows and unreferenced blobs are kept before they are purged
+ * @param batchSize        rows handled per batch
+ * @param batchPause       pause between batches, keeping the purge from saturating the database and disks
+ * @param maxBatchesPerRun batches handled per run of each purge step; the rest waits for the next run
+ */
+@ConfigurationProperties(prefix = "file-service.purge")
+public record PurgeProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("7d") Duration retention,
+        @DefaultValue("100") int batchSize,
+        @DefaultValue("200ms") Duration batchPause,
+        @DefaultValue("50") int maxBatchesPerRun
+) { }
@@ -0,0 +1,26 @@
+package zw.co.isusu.fileservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+
+/**
+ * Settings for the preview rendition pipeline.
+ *
+ * @param enabled       whether image previews are served as downscaled renditions
+ * @param sizes         longest-edge sizes, in pixels, rendered for every uploaded image
+ * @param quality       JPEG quality between 0 and 1
+ * @param workers       threads rendering in the background
+ * @param queueCapacity renditions waiting for a worker; further work is dropped and rendered on demand
+ * @param maxPixels     images with more pixels than this are never decoded
+ */
+@ConfigurationProperties(prefix = "file-service.renditions")
+public record RenditionProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue({"256", "1024"}) List<Integer> sizes,
+        @DefaultValue("0.8") float quality,
+        @DefaultValue("2") int workers,
+        @DefaultValue("64") int queueCapacity,
+        @DefaultValue("100000000") long maxPixels
+) { }
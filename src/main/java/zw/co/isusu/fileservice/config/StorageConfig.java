@@ -0,0 +1,12 @@
+package zw.co.isusu.fileservice.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties({StorageProperties.class, UploadSessionProperties.class, RenditionProperties.class,
+        ArchiveProperties.class, CompressionProperties.class, BatchUploadProperties.class,
+        PurgeProperties.class, AdmissionProperties.class, VersioningProperties.class, TieringProperties.class,
+        InspectionProperties.class, DownloadLinkProperties.class, CatalogProperties.class})
+public class StorageConfig {
+}
@@ -0,0 +1,44 @@
+package zw.co.isusu.fileservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Settings for the blob store that holds file contents.
+ *
+ * @param type                 backing store, either {@code filesystem} or {@code postgres}
+ * @param root                 root directory used by the filesystem store when no volumes are configured
+ * @param volumes              directories, typically on separate disks, the filesystem store spreads blobs over
+ * @param rebalanceMovesPerRun most blobs moved to the volume they belong on per rebalancing run
+ */
+@ConfigurationProperties(prefix = "file-service.storage")
+public record StorageProperties(
+        @DefaultValue("filesystem") String type,
+        @DefaultValue("./data/blobs") Path root,
+        @DefaultValue List<Volume> volumes,
+        @DefaultValue("1000") int rebalanceMovesPerRun
+) {
+
+    /**
+     * The configured volumes, or the root as the only one.
+     */
+    public List<Volume> effectiveVolumes() {
+        return volumes.isEmpty() ? List.of(new Volume(root, 1)) : volumes;
+    }
+
+    /**
+     * @param path   root directory of the volume
+     * @param weight share of the blobs placed on the volume relative to the others, e.g. its capacity in TB
+     */
+    public record Volume(Path path, @DefaultValue("1") int weight) {
+
+        public Volume {
+            if (weight < 1) {
+                throw new IllegalArgumentException("Volume weight must be positive: " + path);
+            }
+        }
+    }
+}
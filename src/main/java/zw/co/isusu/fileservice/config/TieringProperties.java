@@ -0,0 +1,37 @@
+package zw.co.isusu.fileservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings for moving blobs between the hot blob store and a cheaper cold tier by how often they are read.
+ *
+ * @param enabled          whether reads are counted and blobs are moved at all; blobs already in the
+ *                         cold tier stay readable either way
+ * @param coldRoot         directory of the cold tier, typically on a cheaper volume
+ * @param compress         gzip encode compressible blobs on their way into the cold tier
+ * @param coldAfter        blobs not read for this long are moved to the cold tier
+ * @param promoteReads     reads of a cold blob after which it moves back to the hot tier
+ * @param promoteWindow    only blobs whose latest read is at most this old are moved back
+ * @param batchSize        blobs moved per batch
+ * @param batchPause       pause between batches, leaving I/O for regular traffic
+ * @param maxBatchesPerRun batches handled per run in each direction; the rest waits for the next run
+ * @param retireDelay      how long the old copy of a moved blob is kept for readers that still
+ *                         resolve to it; never shorter than the metadata cache TTL
+ */
+@ConfigurationProperties(prefix = "file-service.tiering")
+public record TieringProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("./data/cold") Path coldRoot,
+        @DefaultValue("true") boolean compress,
+        @DefaultValue("7d") Duration coldAfter,
+        @DefaultValue("3") long promoteReads,
+        @DefaultValue("1d") Duration promoteWindow,
+        @DefaultValue("100") int batchSize,
+        @DefaultValue("200ms") Duration batchPause,
+        @DefaultValue("10") int maxBatchesPerRun,
+        @DefaultValue("15m") Duration retireDelay
+) { }
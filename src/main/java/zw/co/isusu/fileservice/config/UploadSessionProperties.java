@@ -0,0 +1,23 @@
+package zw.co.isusu.fileservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings for resumable chunked upload sessions.
+ *
+ * @param stagingDir   directory holding partially uploaded files; keep it on the same volume as the
+ *                     blob store so committed uploads can be moved into place instead of copied
+ * @param ttl          how long a session may stay open before it is expired
+ * @param maxChunkSize largest chunk a client may announce
+ */
+@ConfigurationProperties(prefix = "file-service.upload-sessions")
+public record UploadSessionProperties(
+        @DefaultValue("./data/upload-sessions") Path stagingDir,
+        @DefaultValue("24h") Duration ttl,
+        @DefaultValue("32MB") DataSize maxChunkSize
+) { }
@@ -0,0 +1,26 @@
+package zw.co.isusu.fileservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings for replacing files: content-defined chunking of new contents and the
+ * history of earlier versions.
+ *
+ * @param chunkingEnabled  whether replacements are stored as chunks shared with other contents
+ * @param chunkingMinSize  replacements smaller than this are stored whole
+ * @param minChunkSize     smallest chunk, except for the last one of a file
+ * @param avgChunkSize     chunk size the cut points aim for; a power of two
+ * @param maxChunkSize     largest chunk, and the most buffered while splitting
+ * @param maxVersions      earlier versions kept per file; older ones release their contents
+ */
+@ConfigurationProperties(prefix = "file-service.versioning")
+public record VersioningProperties(
+        @DefaultValue("true") boolean chunkingEnabled,
+        @DefaultValue("1MB") DataSize chunkingMinSize,
+        @DefaultValue("16KB") DataSize minChunkSize,
+        @DefaultValue("64KB") DataSize avgChunkSize,
+        @DefaultValue("256KB") DataSize maxChunkSize,
+        @DefaultValue("20") int maxVersions
+) { }
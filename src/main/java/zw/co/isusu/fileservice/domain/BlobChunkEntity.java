@@ -0,0 +1,37 @@
+package zw.co.isusu.fileservice.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import zw.co.isusu.fileservice.domain.utils.BaseEntity;
+
+/**
+ * One entry of the manifest of a chunked blob. The chunk is a blob of its own, shared
+ * with every other manifest containing the same bytes; each entry holds one reference to it.
+ */
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "blob_chunks", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_blob_chunks_blob_index", columnNames = {"blobDigest", "chunkIndex"})
+})
+public class BlobChunkEntity extends BaseEntity {
+
+    @Column(nullable = false, length = 64)
+    private String blobDigest; // References BlobEntity.digest of the chunked blob
+
+    @Column(nullable = false)
+    private int chunkIndex;
+
+    @Column(nullable = false)
+    private long offsetBytes; // Position of the chunk within the decoded contents
+
+    @Column(nullable = false)
+    private long sizeBytes;
+
+    @Column(nullable = false, length = 64)
+    private String chunkDigest; // References BlobEntity.digest of the chunk
+}
@@ -0,0 +1,85 @@
+package zw.co.isusu.fileservice.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+import org.springframework.data.domain.Persistable;
+import zw.co.isusu.fileservice.storage.ContentCodec;
+import zw.co.isusu.fileservice.storage.StorageTier;
+
+import java.time.LocalDateTime;
+
+/**
+ * Content-addressed blob shared by every file with the same contents.
+ * Files reference a blob through their content hash; the reference count
+ * tracks how many live files point at it.
+ */
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "blobs", indexes = {
+        @Index(name = "idx_blobs_orphaned_at", columnList = "orphanedAt"), // Purge of unreferenced blobs
+        @Index(name = "idx_blobs_tier_last_accessed_at", columnList = "tier, lastAccessedAt") // Tier migration
+})
+public class BlobEntity implements Persistable<String> {
+
+    @Id
+    @Column(length = 64)
+    private String digest; // Hex encoded SHA-256 of the contents
+
+    @Column(nullable = false)
+    private String storageKey; // Key of the contents in the configured BlobStore
+
+    @Column(nullable = false)
+    private long sizeBytes; // Size of the decoded contents
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private ContentCodec codec = ContentCodec.IDENTITY; // Encoding of the bytes in the BlobStore
+
+    @Column(nullable = false)
+    private long storedSizeBytes; // Size of the encoded bytes in the BlobStore
+
+    @Column(nullable = false)
+    private long refCount;
+
+    @Column
+    private LocalDateTime orphanedAt; // When the reference count last dropped to zero
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private StorageTier tier = StorageTier.HOT;
+
+    @Column(nullable = false)
+    private long accessCount; // Reads since the blob last changed tier, flushed in batches
+
+    @Column
+    private LocalDateTime lastAccessedAt; // Time of the flush that recorded the latest read
+
+    @CreationTimestamp
+    @Column(updatable = false)
+    private LocalDateTime createdAt;
+
+    @Transient
+    private boolean isNew = true;
+
+    @Override
+    public String getId() {
+        return digest;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+}
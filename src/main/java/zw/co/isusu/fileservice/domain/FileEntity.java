@@ -5,17 +5,28 @@ import lombok.Getter;
 import lombok.Setter;
 import lombok.NoArgsConstructor;
 import zw.co.isusu.fileservice.domain.utils.BaseEntity;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
 import java.util.UUID;
 
 /**
- * Represents file data stored in the database.
+ * Represents file metadata stored in the database; the contents are a shared BlobEntity.
  */
 
 @Getter
 @Setter
 @NoArgsConstructor
 @Entity
-@Table(name = "files")
+@Table(name = "files", indexes = {
+        @Index(name = "idx_files_created_at_file_id", columnList = "createdAt, fileId"), // Keyset pagination
+        @Index(name = "idx_files_deleted_at", columnList = "deletedAt"), // Purge of soft-deleted rows
+        @Index(name = "idx_files_file_type_created_at_file_id", columnList = "fileType, createdAt, fileId"), // Search by type
+        @Index(name = "idx_files_content_hash", columnList = "contentHash") // Files sharing a blob
+        // Search by name prefix uses idx_files_file_name from import.sql, which needs an operator class
+})
 public class FileEntity extends BaseEntity {
 
     @Column(nullable = false, unique = true)
@@ -27,14 +38,35 @@ public class FileEntity extends BaseEntity {
     @Column(nullable = false)
     private String fileType;
 
-    @Lob
-    private byte[] data;
+    @Column(nullable = false)
+    private long sizeBytes; // Size of the contents in bytes
+
+    @Column(nullable = false, length = 64)
+    private String contentHash; // Hex encoded SHA-256 of the contents, references BlobEntity.digest
+
+    @Column(nullable = false)
+    private LocalDateTime storedAt; // When the current contents were written
 
     @Column(nullable = false)
     private boolean deleted = false;
 
     @Column
-    private String tags;
+    private LocalDateTime deletedAt; // When the file was soft deleted; the row is purged after the retention period
 
-}
+    @ElementCollection
+    @CollectionTable(name = "file_tags", joinColumns = @JoinColumn(name = "file_id"), indexes = {
+            @Index(name = "idx_file_tags_tag_file_id", columnList = "tag, file_id") // Search by tag
+    })
+    @Column(name = "tag", nullable = false, length = 100)
+    private Set<String> tags = new LinkedHashSet<>(); // Trimmed and lower-cased
 
+    /**
+     * Canonical form of a tag as stored and searched, or null for a blank tag.
+     */
+    public static String normalizeTag(String tag) {
+        if (tag == null || tag.isBlank()) {
+            return null;
+        }
+        return tag.trim().toLowerCase(Locale.ROOT);
+    }
+}
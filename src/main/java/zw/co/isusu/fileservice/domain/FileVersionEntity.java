@@ -0,0 +1,60 @@
+package zw.co.isusu.fileservice.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import zw.co.isusu.fileservice.domain.utils.BaseEntity;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Earlier contents of a file, kept when the file is replaced. Each version holds its own
+ * reference to its blob, so it stays readable until it is trimmed or the file is purged.
+ */
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "file_versions", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_file_versions_file_version", columnNames = {"fileId", "fileVersion"})
+}, indexes = {
+        @Index(name = "idx_file_versions_content_hash", columnList = "contentHash") // Versions sharing a blob
+})
+public class FileVersionEntity extends BaseEntity {
+
+    @Column(nullable = false)
+    private UUID fileId;
+
+    @Column(nullable = false)
+    private int fileVersion; // FileEntity.version while these were the current contents
+
+    @Column(nullable = false)
+    private String fileName;
+
+    @Column(nullable = false)
+    private String fileType;
+
+    @Column(nullable = false)
+    private long sizeBytes;
+
+    @Column(nullable = false, length = 64)
+    private String contentHash; // References BlobEntity.digest
+
+    @Column(nullable = false)
+    private LocalDateTime storedAt; // When these contents were written
+
+    public static FileVersionEntity of(FileEntity file) {
+        FileVersionEntity version = new FileVersionEntity();
+        version.setFileId(file.getFileId());
+        version.setFileVersion(file.getVersion());
+        version.setFileName(file.getFileName());
+        version.setFileType(file.getFileType());
+        version.setSizeBytes(file.getSizeBytes());
+        version.setContentHash(file.getContentHash());
+        version.setStoredAt(file.getStoredAt());
+        return version;
+    }
+}
@@ -0,0 +1,37 @@
+package zw.co.isusu.fileservice.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import zw.co.isusu.fileservice.domain.utils.BaseEntity;
+
+/**
+ * Downscaled preview of an image, stored as a derived blob. Renditions are keyed by the
+ * content hash of their source, so files sharing the same contents share their renditions.
+ */
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "renditions", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_renditions_source_size", columnNames = {"sourceHash", "maxDimension"})
+})
+public class RenditionEntity extends BaseEntity {
+
+    @Column(nullable = false, length = 64)
+    private String sourceHash; // Content hash of the original file
+
+    @Column(nullable = false)
+    private int maxDimension; // Longest edge in pixels
+
+    @Column(nullable = false)
+    private String fileType;
+
+    @Column(nullable = false, length = 64)
+    private String contentHash; // References BlobEntity.digest of the rendered image
+
+    @Column(nullable = false)
+    private long sizeBytes;
+}
@@ -0,0 +1,36 @@
+package zw.co.isusu.fileservice.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import zw.co.isusu.fileservice.domain.utils.BaseEntity;
+
+import java.util.UUID;
+
+/**
+ * A verified chunk of an upload session. Chunks are insert-only, so parallel
+ * chunk uploads never contend on the same row.
+ */
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "upload_chunks", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_upload_chunks_session_index", columnNames = {"sessionId", "chunkIndex"})
+})
+public class UploadChunkEntity extends BaseEntity {
+
+    @Column(nullable = false)
+    private UUID sessionId;
+
+    @Column(nullable = false)
+    private int chunkIndex;
+
+    @Column(nullable = false)
+    private long sizeBytes;
+
+    @Column(nullable = false, length = 64)
+    private String checksum; // Hex encoded SHA-256 of the chunk
+}
@@ -0,0 +1,6 @@
+package zw.co.isusu.fileservice.domain;
+
+public enum UploadSessionStatus {
+    OPEN,
+    COMMITTED
+}
@@ -17,7 +17,7 @@ import java.time.LocalDateTime;
 public abstract class BaseEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE) // Pooled per-entity sequence, so inserts can be JDBC batched
     private Long id;
 
     @CreationTimestamp
@@ -0,0 +1,82 @@
+package zw.co.isusu.fileservice.inspection;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Hands every run of bytes read by the consumer to an {@link Inspection}, straight from the
+ * consumer's own buffer, and finishes it when the end of the stream is reached.
+ */
+final class InspectingInputStream extends FilterInputStream {
+
+    private final Inspection inspection;
+
+    InspectingInputStream(InputStream in, Inspection inspection) {
+        super(in);
+        this.inspection = inspection;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int read = read(single, 0, 1);
+        return read < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read > 0) {
+            inspection.update(b, off, read);
+        } else if (read < 0) {
+            inspection.finish();
+        }
+        return read;
+    }
+
+    @Override
+    public long transferTo(OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        long transferred = 0;
+        int read;
+        while ((read = read(buffer, 0, buffer.length)) >= 0) {
+            out.write(buffer, 0, read);
+            transferred += read;
+        }
+        return transferred;
+    }
+
+    /**
+     * Skipped bytes are still read, as every byte has to be inspected.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(8192, Math.max(n, 1))];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read < 0) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+        // not supported
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+}
@@ -0,0 +1,87 @@
+package zw.co.isusu.fileservice.inspection;
+
+import zw.co.isusu.fileservice.metrics.FileMetrics;
+
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * The inspection of one upload. Bytes reach every stage in a single pass, either through
+ * {@link #wrap} or, when the caller reads the contents itself, through {@link #update}.
+ * Once a stage has rejected the upload, every further call rethrows that rejection.
+ */
+public final class Inspection {
+
+    private final List<InspectionStage> stages;
+    private final FileMetrics fileMetrics;
+    private final InspectionReport report = new InspectionReport();
+    private UploadRejectedException rejection;
+    private boolean finished;
+
+    Inspection(List<InspectionStage> stages, FileMetrics fileMetrics) {
+        this.stages = stages;
+        this.fileMetrics = fileMetrics;
+    }
+
+    /**
+     * Returns a stream over the contents that feeds every byte read from it to the stages
+     * and finishes the inspection at the end of the stream.
+     */
+    public InputStream wrap(InputStream content) {
+        return new InspectingInputStream(content, this);
+    }
+
+    public void update(byte[] buffer, int offset, int length) throws UploadRejectedException {
+        checkNotRejected();
+        report.setSizeBytes(report.getSizeBytes() + length);
+        try {
+            for (InspectionStage stage : stages) {
+                stage.update(buffer, offset, length);
+            }
+        } catch (UploadRejectedException e) {
+            throw reject(e);
+        }
+    }
+
+    /**
+     * Ends the inspection; later calls do nothing.
+     */
+    public void finish() throws UploadRejectedException {
+        checkNotRejected();
+        if (finished) {
+            return;
+        }
+        try {
+            for (InspectionStage stage : stages) {
+                stage.finish(report);
+            }
+        } catch (UploadRejectedException e) {
+            throw reject(e);
+        }
+        finished = true;
+    }
+
+    /**
+     * The findings about the contents.
+     *
+     * @throws IllegalStateException if the contents have not been read to the end
+     */
+    public InspectionReport report() {
+        if (!finished) {
+            throw new IllegalStateException("Upload has not been inspected to the end");
+        }
+        return report;
+    }
+
+    private void checkNotRejected() throws UploadRejectedException {
+        if (rejection != null) {
+            throw rejection;
+        }
+    }
+
+    private UploadRejectedException reject(UploadRejectedException e) {
+        rejection = e;
+        fileMetrics.recordUploadRejection(e.getReason());
+        return e;
+    }
+}
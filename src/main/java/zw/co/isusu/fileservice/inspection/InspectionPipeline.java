@@ -0,0 +1,54 @@
+package zw.co.isusu.fileservice.inspection;
+
+import org.springframework.stereotype.Component;
+import zw.co.isusu.fileservice.config.InspectionProperties;
+import zw.co.isusu.fileservice.metrics.FileMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chain of {@link UploadInspector}s every upload passes through on its way to storage.
+ * <p>
+ * The stages see the bytes in the buffers of whoever reads the upload, in the same pass that
+ * writes them to the blob store, so adding a stage costs its own work but never another read
+ * of the contents. A stage rejecting an upload fails the read that brought the offending bytes,
+ * so a bad upload is abandoned mid-stream rather than stored first and deleted afterwards.
+ * Rejections are counted as {@code file.upload.rejected} tagged with their reason.
+ */
+@Component
+public class InspectionPipeline {
+
+    private final List<UploadInspector> inspectors;
+    private final InspectionProperties properties;
+    private final FileMetrics fileMetrics;
+
+    public InspectionPipeline(List<UploadInspector> inspectors, InspectionProperties properties, FileMetrics fileMetrics) {
+        this.inspectors = inspectors;
+        this.properties = properties;
+        this.fileMetrics = fileMetrics;
+    }
+
+    /**
+     * Starts the inspection of an upload, rejecting it outright if what the client declared
+     * already rules it out.
+     */
+    public Inspection begin(UploadContext upload) throws UploadRejectedException {
+        List<InspectionStage> stages = new ArrayList<>();
+        if (properties.enabled()) {
+            for (UploadInspector inspector : inspectors) {
+                InspectionStage stage;
+                try {
+                    stage = inspector.begin(upload);
+                } catch (UploadRejectedException e) {
+                    fileMetrics.recordUploadRejection(e.getReason());
+                    throw e;
+                }
+                if (stage != null) {
+                    stages.add(stage);
+                }
+            }
+        }
+        return new Inspection(stages, fileMetrics);
+    }
+}
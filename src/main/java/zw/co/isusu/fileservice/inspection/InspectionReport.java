@@ -0,0 +1,23 @@
+package zw.co.isusu.fileservice.inspection;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Findings about the contents of an upload, complete once the last byte has been inspected.
+ */
+@Getter
+@Setter
+public class InspectionReport {
+
+    private long sizeBytes;
+    private String detectedType; // Type recognised from the contents, when it should replace the declared one
+
+    /**
+     * The type to store the file with: the detected type, or the declared one when the
+     * contents did not contradict it.
+     */
+    public String fileType(String declaredType) {
+        return detectedType != null ? detectedType : declaredType;
+    }
+}
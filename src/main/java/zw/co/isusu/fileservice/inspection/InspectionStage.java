@@ -0,0 +1,16 @@
+package zw.co.isusu.fileservice.inspection;
+
+/**
+ * Inspection of the contents of one upload, fed the bytes in order as they move to storage.
+ * Stages reject an upload by throwing; the bytes they are given must not be modified or kept.
+ */
+public interface InspectionStage {
+
+    void update(byte[] buffer, int offset, int length) throws UploadRejectedException;
+
+    /**
+     * Called once every byte has been seen, before the contents are committed.
+     */
+    default void finish(InspectionReport report) throws UploadRejectedException {
+    }
+}
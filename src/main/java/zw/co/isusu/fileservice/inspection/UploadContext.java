@@ -0,0 +1,37 @@
+package zw.co.isusu.fileservice.inspection;
+
+import java.util.Locale;
+
+/**
+ * What is known about an upload before its contents are read.
+ *
+ * @param fileName     name given by the client
+ * @param declaredType content type given by the client, possibly null
+ * @param declaredSize size given by the client, or -1 if unknown
+ * @param checksum     checksums of the whole contents given by the client, e.g.
+ *                     {@code sha256=<hex>,crc32c=<hex>}, or null
+ */
+public record UploadContext(String fileName, String declaredType, long declaredSize, String checksum) {
+
+    public UploadContext(String fileName, String declaredType, long declaredSize) {
+        this(fileName, declaredType, declaredSize, null);
+    }
+
+    /**
+     * The declared SHA-256 of the contents in lower-case hex, or null if none was declared.
+     * Only a hint; the contents are verified against it while they are read.
+     */
+    public String declaredSha256() {
+        if (checksum == null) {
+            return null;
+        }
+        for (String part : checksum.split(",")) {
+            int separator = part.indexOf('=');
+            if (separator > 0 && part.substring(0, separator).trim().equalsIgnoreCase("sha256")) {
+                String value = part.substring(separator + 1).trim().toLowerCase(Locale.ROOT);
+                return value.matches("[0-9a-f]{64}") ? value : null;
+            }
+        }
+        return null;
+    }
+}
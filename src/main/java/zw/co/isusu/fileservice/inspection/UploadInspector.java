@@ -0,0 +1,18 @@
+package zw.co.isusu.fileservice.inspection;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Extension point of the upload inspection pipeline. Every bean implementing it takes part in
+ * the inspection of every upload, in {@link org.springframework.core.annotation.Order order}.
+ */
+public interface UploadInspector {
+
+    /**
+     * Starts the inspection of an upload. Can reject it outright from what the client declared.
+     *
+     * @return the stage inspecting the contents, or {@code null} if they need no inspection
+     */
+    @Nullable
+    InspectionStage begin(UploadContext upload) throws UploadRejectedException;
+}
@@ -0,0 +1,33 @@
+package zw.co.isusu.fileservice.inspection;
+
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+
+/**
+ * Thrown by an inspection stage to reject an upload. Being an {@link IOException}, it surfaces
+ * from the read of the upload stream that brought the offending bytes, which aborts the write
+ * to the blob store before anything is committed.
+ */
+public class UploadRejectedException extends IOException {
+
+    private final HttpStatus status;
+    private final String reason;
+
+    public UploadRejectedException(HttpStatus status, String reason, String message) {
+        super(message);
+        this.status = status;
+        this.reason = reason;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Short cause of the rejection, used in meter tags.
+     */
+    public String getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,103 @@
+package zw.co.isusu.fileservice.inspection.impl;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import zw.co.isusu.fileservice.inspection.InspectionReport;
+import zw.co.isusu.fileservice.inspection.InspectionStage;
+import zw.co.isusu.fileservice.inspection.UploadContext;
+import zw.co.isusu.fileservice.inspection.UploadInspector;
+import zw.co.isusu.fileservice.inspection.UploadRejectedException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Verifies the checksums a client declared for the whole contents, {@code sha256} and
+ * {@code crc32c} in hex. Only the declared ones are computed, so uploads without a declaration
+ * cost nothing. A mismatch is found at the end of the stream, still before the blob is committed.
+ */
+@Component
+@Order(20)
+public class ChecksumInspector implements UploadInspector {
+
+    @Override
+    public InspectionStage begin(UploadContext upload) throws UploadRejectedException {
+        if (upload.checksum() == null || upload.checksum().isBlank()) {
+            return null;
+        }
+        Map<String, String> expected = parse(upload.checksum());
+        MessageDigest sha256 = expected.containsKey("sha256") ? sha256() : null;
+        CRC32C crc32c = expected.containsKey("crc32c") ? new CRC32C() : null;
+        return new InspectionStage() {
+
+            @Override
+            public void update(byte[] buffer, int offset, int length) {
+                if (sha256 != null) {
+                    sha256.update(buffer, offset, length);
+                }
+                if (crc32c != null) {
+                    crc32c.update(buffer, offset, length);
+                }
+            }
+
+            @Override
+            public void finish(InspectionReport report) throws UploadRejectedException {
+                if (sha256 != null) {
+                    verify("sha256", expected.get("sha256"), HexFormat.of().formatHex(sha256.digest()));
+                }
+                if (crc32c != null) {
+                    verify("crc32c", expected.get("crc32c"), String.format("%08x", crc32c.getValue()));
+                }
+            }
+        };
+    }
+
+    /**
+     * Parses {@code algorithm=hex} pairs separated by commas.
+     */
+    private static Map<String, String> parse(String checksum) throws UploadRejectedException {
+        Map<String, String> expected = new LinkedHashMap<>();
+        for (String part : checksum.split(",")) {
+            int separator = part.indexOf('=');
+            if (separator < 0) {
+                throw malformed(checksum);
+            }
+            String algorithm = part.substring(0, separator).trim().toLowerCase(Locale.ROOT);
+            if (!algorithm.equals("sha256") && !algorithm.equals("crc32c")) {
+                throw new UploadRejectedException(HttpStatus.BAD_REQUEST, "checksum",
+                        "Unsupported checksum algorithm: " + algorithm);
+            }
+            String value = part.substring(separator + 1).trim();
+            if (value.isEmpty()) {
+                throw malformed(checksum);
+            }
+            expected.put(algorithm, value);
+        }
+        return expected;
+    }
+
+    private static void verify(String algorithm, String expected, String actual) throws UploadRejectedException {
+        if (!expected.equalsIgnoreCase(actual)) {
+            throw new UploadRejectedException(HttpStatus.UNPROCESSABLE_ENTITY, "checksum",
+                    "Contents do not match the declared " + algorithm + " checksum");
+        }
+    }
+
+    private static UploadRejectedException malformed(String checksum) {
+        return new UploadRejectedException(HttpStatus.BAD_REQUEST, "checksum", "Malformed checksum: " + checksum);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
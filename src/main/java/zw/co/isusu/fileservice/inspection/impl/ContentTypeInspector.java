@@ -0,0 +1,212 @@
+package zw.co.isusu.fileservice.inspection.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import zw.co.isusu.fileservice.config.InspectionProperties;
+import zw.co.isusu.fileservice.inspection.InspectionReport;
+import zw.co.isusu.fileservice.inspection.InspectionStage;
+import zw.co.isusu.fileservice.inspection.UploadContext;
+import zw.co.isusu.fileservice.inspection.UploadInspector;
+import zw.co.isusu.fileservice.inspection.UploadRejectedException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Recognises common binary formats by their leading bytes.
+ * <p>
+ * A declared type the contents contradict is replaced by the recognised one; a declared type
+ * that is a more specific flavour of it, such as a DOCX for a ZIP container, is kept. Contents
+ * no signature matches, plain text among them, keep the declared type. Denied types are
+ * rejected whether declared or recognised, the latter as soon as the leading bytes are in.
+ */
+@Slf4j
+@Component
+@Order(10)
+public class ContentTypeInspector implements UploadInspector {
+
+    private static final List<Signature> SIGNATURES = List.of(
+            signature("image/png", 0, bytes(0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)),
+            signature("image/jpeg", 0, bytes(0xFF, 0xD8, 0xFF)),
+            signature("image/gif", 0, ascii("GIF87a")),
+            signature("image/gif", 0, ascii("GIF89a")),
+            signature("image/webp", 0, ascii("RIFF"), 8, ascii("WEBP")),
+            signature("image/tiff", 0, bytes('I', 'I', 0x2A, 0x00)),
+            signature("image/tiff", 0, bytes('M', 'M', 0x00, 0x2A)),
+            signature("audio/wav", 0, ascii("RIFF"), 8, ascii("WAVE"), "audio/*"),
+            signature("audio/mpeg", 0, ascii("ID3"), "audio/*"),
+            signature("application/ogg", 0, ascii("OggS"), "audio/*", "video/*"),
+            signature("video/mp4", 4, ascii("ftyp"), "video/*", "audio/*", "image/heic", "image/heif", "image/avif"),
+            signature("application/pdf", 0, ascii("%PDF-")),
+            signature("application/zip", 0, bytes('P', 'K', 0x03, 0x04),
+                    "application/*+zip", "application/vnd.openxmlformats-officedocument.*",
+                    "application/vnd.oasis.opendocument.*", "application/java-archive",
+                    "application/vnd.android.package-archive", "application/x-zip-compressed"),
+            signature("application/x-ole-storage", 0, bytes(0xD0, 0xCF, 0x11, 0xE0, 0xA1, 0xB1, 0x1A, 0xE1),
+                    "application/msword", "application/vnd.ms-*"),
+            signature("application/gzip", 0, bytes(0x1F, 0x8B), "application/x-gzip", "application/x-gtar"),
+            signature("application/x-7z-compressed", 0, bytes('7', 'z', 0xBC, 0xAF, 0x27, 0x1C)),
+            signature("application/vnd.rar", 0, bytes('R', 'a', 'r', '!', 0x1A, 0x07), "application/x-rar-compressed"),
+            signature("application/x-executable", 0, bytes(0x7F, 'E', 'L', 'F')),
+            signature("application/x-msdownload", 0, ascii("MZ"))
+    );
+
+    private static final int HEADER_SIZE = SIGNATURES.stream().mapToInt(Signature::length).max().orElse(0);
+
+    private final InspectionProperties properties;
+    private final List<MediaType> deniedTypes;
+
+    public ContentTypeInspector(InspectionProperties properties) {
+        this.properties = properties;
+        this.deniedTypes = properties.deniedTypes().stream().map(MediaType::parseMediaType).toList();
+    }
+
+    @Override
+    public InspectionStage begin(UploadContext upload) throws UploadRejectedException {
+        MediaType declared = parse(upload.declaredType());
+        if (declared != null && denied(declared)) {
+            throw deniedType(upload.declaredType());
+        }
+        if (!properties.detectType()) {
+            return null;
+        }
+        return new InspectionStage() {
+
+            private final byte[] header = new byte[HEADER_SIZE];
+            private int filled;
+            private Signature detected;
+
+            @Override
+            public void update(byte[] buffer, int offset, int length) throws UploadRejectedException {
+                if (filled == header.length) {
+                    return;
+                }
+                int copied = Math.min(length, header.length - filled);
+                System.arraycopy(buffer, offset, header, filled, copied);
+                filled += copied;
+                if (filled == header.length) {
+                    detect();
+                }
+            }
+
+            @Override
+            public void finish(InspectionReport report) throws UploadRejectedException {
+                if (filled < header.length) {
+                    detect();
+                }
+                if (detected != null && !detected.describes(declared)) {
+                    log.debug("Declared type {} of {} contradicts its contents, storing as {}",
+                            upload.declaredType(), upload.fileName(), detected.type());
+                    report.setDetectedType(detected.type().toString());
+                }
+            }
+
+            private void detect() throws UploadRejectedException {
+                detected = SIGNATURES.stream()
+                        .filter(signature -> signature.matches(header, filled))
+                        .findFirst()
+                        .orElse(null);
+                if (detected != null && denied(detected.type())) {
+                    throw deniedType(detected.type().toString());
+                }
+            }
+        };
+    }
+
+    private boolean denied(MediaType type) {
+        return deniedTypes.stream().anyMatch(pattern -> pattern.includes(type));
+    }
+
+    private static UploadRejectedException deniedType(String type) {
+        return new UploadRejectedException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "type", "Files of type " + type + " are not accepted");
+    }
+
+    /**
+     * The declared type, or null when it is missing, unparseable or says nothing about the contents.
+     */
+    private static MediaType parse(String type) {
+        if (type == null || type.isBlank()) {
+            return null;
+        }
+        try {
+            MediaType mediaType = MediaType.parseMediaType(type);
+            return mediaType.equals(MediaType.APPLICATION_OCTET_STREAM) ? null : mediaType;
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+    }
+
+    private static Signature signature(String type, int offset, byte[] magic, String... compatible) {
+        return new Signature(MediaType.parseMediaType(type), new int[]{offset}, new byte[][]{magic}, List.of(compatible));
+    }
+
+    private static Signature signature(String type, int offset, byte[] magic, int secondOffset, byte[] secondMagic, String... compatible) {
+        return new Signature(MediaType.parseMediaType(type), new int[]{offset, secondOffset}, new byte[][]{magic, secondMagic},
+                List.of(compatible));
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Magic bytes at fixed offsets identifying a format.
+     *
+     * @param compatible declared types the format may legitimately carry besides its own;
+     *                   a single {@code *} stands for any run of characters
+     */
+    private record Signature(MediaType type, int[] offsets, byte[][] magic, List<String> compatible) {
+
+        int length() {
+            int length = 0;
+            for (int i = 0; i < offsets.length; i++) {
+                length = Math.max(length, offsets[i] + magic[i].length);
+            }
+            return length;
+        }
+
+        boolean matches(byte[] header, int available) {
+            if (available < length()) {
+                return false;
+            }
+            for (int i = 0; i < offsets.length; i++) {
+                if (!Arrays.equals(header, offsets[i], offsets[i] + magic[i].length, magic[i], 0, magic[i].length)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean describes(MediaType declared) {
+            if (declared == null) {
+                return false;
+            }
+            String bare = (declared.getType() + "/" + declared.getSubtype()).toLowerCase(Locale.ROOT);
+            return type.toString().equals(bare) || compatible.stream().anyMatch(pattern -> matches(pattern, bare));
+        }
+
+        private static boolean matches(String pattern, String type) {
+            int wildcard = pattern.indexOf('*');
+            if (wildcard < 0) {
+                return pattern.equals(type);
+            }
+            String prefix = pattern.substring(0, wildcard);
+            String suffix = pattern.substring(wildcard + 1);
+            return type.length() >= prefix.length() + suffix.length() && type.startsWith(prefix) && type.endsWith(suffix);
+        }
+    }
+}
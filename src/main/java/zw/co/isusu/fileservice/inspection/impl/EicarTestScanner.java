@@ -0,0 +1,50 @@
+package zw.co.isusu.fileservice.inspection.impl;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import zw.co.isusu.fileservice.inspection.InspectionStage;
+import zw.co.isusu.fileservice.inspection.UploadContext;
+import zw.co.isusu.fileservice.inspection.UploadInspector;
+import zw.co.isusu.fileservice.inspection.UploadRejectedException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Stand-in malware scanner recognising only the EICAR anti-virus test file, which by its
+ * definition starts at the first byte. Lets the rejection of infected uploads be exercised
+ * without a real scanner; a real one plugs in as another {@link UploadInspector}.
+ */
+@Component
+@Order(100)
+@ConditionalOnProperty(name = "file-service.inspection.eicar-scanner", havingValue = "true")
+public class EicarTestScanner implements UploadInspector {
+
+    private static final byte[] SIGNATURE =
+            "X5O!P%@AP[4\\PZX54(P^)7CC)7}$EICAR-STANDARD-ANTIVIRUS-TEST-FILE!$H+H*".getBytes(StandardCharsets.US_ASCII);
+
+    @Override
+    public InspectionStage begin(UploadContext upload) {
+        return new InspectionStage() {
+
+            private int matched;
+            private boolean mismatched;
+
+            @Override
+            public void update(byte[] buffer, int offset, int length) throws UploadRejectedException {
+                for (int i = 0; i < length && !mismatched && matched < SIGNATURE.length; i++) {
+                    if (buffer[offset + i] == SIGNATURE[matched]) {
+                        matched++;
+                    } else {
+                        mismatched = true;
+                    }
+                }
+                if (matched == SIGNATURE.length && !mismatched) {
+                    throw new UploadRejectedException(HttpStatus.UNPROCESSABLE_ENTITY, "malware",
+                            "Upload contains the EICAR test signature");
+                }
+            }
+        };
+    }
+}
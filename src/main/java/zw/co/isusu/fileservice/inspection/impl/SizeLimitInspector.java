@@ -0,0 +1,50 @@
+package zw.co.isusu.fileservice.inspection.impl;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import zw.co.isusu.fileservice.config.InspectionProperties;
+import zw.co.isusu.fileservice.inspection.InspectionStage;
+import zw.co.isusu.fileservice.inspection.UploadContext;
+import zw.co.isusu.fileservice.inspection.UploadInspector;
+import zw.co.isusu.fileservice.inspection.UploadRejectedException;
+
+/**
+ * Rejects uploads over the size limit: up front when the declared size is too large, otherwise
+ * as soon as the bytes read pass the limit.
+ */
+@Component
+@Order(0)
+public class SizeLimitInspector implements UploadInspector {
+
+    private final InspectionProperties properties;
+
+    public SizeLimitInspector(InspectionProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public InspectionStage begin(UploadContext upload) throws UploadRejectedException {
+        long limit = properties.maxSize().toBytes();
+        if (upload.declaredSize() > limit) {
+            throw tooLarge(limit);
+        }
+        return new InspectionStage() {
+
+            private long size;
+
+            @Override
+            public void update(byte[] buffer, int offset, int length) throws UploadRejectedException {
+                size += length;
+                if (size > limit) {
+                    throw tooLarge(limit);
+                }
+            }
+        };
+    }
+
+    private UploadRejectedException tooLarge(long limit) {
+        return new UploadRejectedException(HttpStatus.PAYLOAD_TOO_LARGE, "size",
+                "Upload exceeds the limit of " + properties.maxSize());
+    }
+}
@@ -0,0 +1,173 @@
+package zw.co.isusu.fileservice.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import zw.co.isusu.fileservice.storage.ContentCodec;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Payload and transfer meters for the upload and download paths.
+ * <p>
+ * The time spent resolving a download (metadata lookup, opening the blob) is part of the
+ * {@code file.operation} timer of the service call; the time spent streaming the bytes is
+ * {@code file.download.transfer}, so the two can be told apart. Transfers handed to the
+ * container's sendfile support only count the hand-off.
+ */
+@Component
+public class FileMetrics {
+
+    private final MeterRegistry registry;
+    private final DistributionSummary uploadSize;
+    private final Counter duplicateBlobs;
+    private final AtomicInteger activeUploads = new AtomicInteger();
+    private final AtomicInteger activeDownloads = new AtomicInteger();
+
+    public FileMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.uploadSize = DistributionSummary.builder("file.upload.size")
+                .description("Size of uploaded files")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.duplicateBlobs = Counter.builder("file.blob.duplicates")
+                .description("Uploads whose contents were already stored")
+                .register(registry);
+        Gauge.builder("file.uploads.active", activeUploads, AtomicInteger::get)
+                .description("Uploads in progress")
+                .register(registry);
+        Gauge.builder("file.downloads.active", activeDownloads, AtomicInteger::get)
+                .description("Downloads being transferred")
+                .register(registry);
+    }
+
+    public void recordUpload(long bytes) {
+        uploadSize.record(bytes);
+    }
+
+    /**
+     * Records a newly stored blob; duplicates of stored contents only count as such.
+     */
+    public void recordBlobStored(ContentCodec codec, long size, long storedSize, boolean duplicate) {
+        if (duplicate) {
+            duplicateBlobs.increment();
+            return;
+        }
+        String codecTag = codec.name().toLowerCase(Locale.ROOT);
+        DistributionSummary.builder("file.blob.size")
+                .description("Decoded size of newly stored blobs")
+                .baseUnit("bytes")
+                .tag("codec", codecTag)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(size);
+        DistributionSummary.builder("file.blob.stored.size")
+                .description("Size of newly stored blobs in the blob store")
+                .baseUnit("bytes")
+                .tag("codec", codecTag)
+                .register(registry)
+                .record(storedSize);
+    }
+
+    /**
+     * Records how much of chunked contents had to be written and how much was already stored.
+     */
+    public void recordChunks(long writtenBytes, long reusedBytes) {
+        Counter.builder("file.chunks.bytes")
+                .description("Bytes of chunked contents, by whether their chunk was already stored")
+                .baseUnit("bytes")
+                .tag("outcome", "written")
+                .register(registry)
+                .increment(writtenBytes);
+        Counter.builder("file.chunks.bytes")
+                .description("Bytes of chunked contents, by whether their chunk was already stored")
+                .baseUnit("bytes")
+                .tag("outcome", "reused")
+                .register(registry)
+                .increment(reusedBytes);
+    }
+
+    /**
+     * Records the bytes sent for one response body and how long sending them took.
+     *
+     * @param representation how the body was sent, e.g. {@code full}, {@code gzip}, {@code partial}, {@code multipart} or {@code archive}
+     */
+    public void recordDownload(String representation, long bytes, long transferNanos) {
+        DistributionSummary.builder("file.download.size")
+                .description("Bytes sent per response body")
+                .baseUnit("bytes")
+                .tag("representation", representation)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(bytes);
+        Timer.builder("file.download.transfer")
+                .description("Time spent sending response bodies")
+                .tag("representation", representation)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(transferNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records a transfer turned away by admission control.
+     *
+     * @param trafficClass {@code upload}, {@code download} or {@code export}
+     * @param reason       {@code client}, {@code concurrency} or {@code bytes}
+     */
+    public void recordRejection(String trafficClass, String reason) {
+        Counter.builder("file.admission.rejected")
+                .description("Transfers rejected by admission control")
+                .tag("class", trafficClass)
+                .tag("reason", reason)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Records an upload rejected by its inspection.
+     *
+     * @param reason e.g. {@code size}, {@code type}, {@code checksum} or {@code malware}
+     */
+    public void recordUploadRejection(String reason) {
+        Counter.builder("file.upload.rejected")
+                .description("Uploads rejected by their inspection")
+                .tag("reason", reason)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Records a download link turned away before anything was streamed.
+     *
+     * @param reason {@code malformed}, {@code signature} or {@code expired}
+     */
+    public void recordDownloadLinkRejection(String reason) {
+        Counter.builder("file.download.link.rejected")
+                .description("Download links rejected by their verification")
+                .tag("reason", reason)
+                .register(registry)
+                .increment();
+    }
+
+    public void uploadStarted() {
+        activeUploads.incrementAndGet();
+    }
+
+    public void uploadFinished() {
+        activeUploads.decrementAndGet();
+    }
+
+    public void downloadStarted() {
+        activeDownloads.incrementAndGet();
+    }
+
+    public void downloadFinished() {
+        activeDownloads.decrementAndGet();
+    }
+}
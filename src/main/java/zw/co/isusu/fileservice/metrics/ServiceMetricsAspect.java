@@ -0,0 +1,69 @@
+package zw.co.isusu.fileservice.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Times every call into the file, upload session and archive services.
+ * <p>
+ * Calls are published as the {@code file.operation} timer tagged with the service, the
+ * operation and its outcome; failures are also counted by exception type in
+ * {@code file.operation.errors}. Upload operations are tracked in the active uploads gauge.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class ServiceMetricsAspect {
+
+    private static final Set<String> UPLOAD_OPERATIONS = Set.of("uploadFile", "uploadFiles", "replaceFile", "uploadChunk");
+
+    private final MeterRegistry registry;
+    private final FileMetrics fileMetrics;
+
+    @Around("execution(public * zw.co.isusu.fileservice.service.FileService+.*(..))"
+            + " || execution(public * zw.co.isusu.fileservice.service.UploadSessionService+.*(..))"
+            + " || execution(public * zw.co.isusu.fileservice.service.ArchiveService+.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        String service = joinPoint.getSignature().getDeclaringType().getSimpleName().replace("Impl", "");
+        String operation = joinPoint.getSignature().getName();
+        boolean upload = UPLOAD_OPERATIONS.contains(operation);
+        if (upload) {
+            fileMetrics.uploadStarted();
+        }
+
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = "success";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            outcome = "error";
+            Counter.builder("file.operation.errors")
+                    .description("Failed service operations by exception type")
+                    .tag("service", service)
+                    .tag("operation", operation)
+                    .tag("exception", e.getClass().getSimpleName())
+                    .register(registry)
+                    .increment();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("file.operation")
+                    .description("Duration of service operations")
+                    .tag("service", service)
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry));
+            if (upload) {
+                fileMetrics.uploadFinished();
+            }
+        }
+    }
+}
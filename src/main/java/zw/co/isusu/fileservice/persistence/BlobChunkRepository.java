@@ -0,0 +1,34 @@
+package zw.co.isusu.fileservice.persistence;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import zw.co.isusu.fileservice.domain.BlobChunkEntity;
+import zw.co.isusu.fileservice.persistence.projection.BlobChunkView;
+
+import java.util.List;
+
+public interface BlobChunkRepository extends JpaRepository<BlobChunkEntity, Long> {
+
+    /**
+     * The manifest of a chunked blob in order, with the storage of each chunk.
+     */
+    @Query("""
+            select new zw.co.isusu.fileservice.persistence.projection.BlobChunkView(
+                c.offsetBytes, c.sizeBytes, b.storageKey, b.codec)
+            from BlobChunkEntity c join BlobEntity b on b.digest = c.chunkDigest
+            where c.blobDigest = :blobDigest
+            order by c.chunkIndex
+            """)
+    List<BlobChunkView> findManifest(String blobDigest);
+
+    /**
+     * Chunk digests of a manifest, once per entry.
+     */
+    @Query("select c.chunkDigest from BlobChunkEntity c where c.blobDigest = :blobDigest")
+    List<String> findChunkDigests(String blobDigest);
+
+    @Modifying
+    @Query("delete from BlobChunkEntity c where c.blobDigest = :blobDigest")
+    int deleteAllByBlobDigest(String blobDigest);
+}
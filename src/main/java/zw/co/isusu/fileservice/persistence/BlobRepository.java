@@ -0,0 +1,134 @@
+package zw.co.isusu.fileservice.persistence;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import zw.co.isusu.fileservice.domain.BlobEntity;
+import zw.co.isusu.fileservice.storage.ContentCodec;
+import zw.co.isusu.fileservice.storage.StorageTier;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface BlobRepository extends JpaRepository<BlobEntity, String> {
+
+    /**
+     * Inserts a blob row without references unless one with the same digest exists. Waits for
+     * a concurrent insert of the same digest to commit or roll back rather than failing.
+     *
+     * @return 1 if the row was inserted, 0 if it already existed
+     */
+    @Modifying
+    @Query(value = """
+            insert into blobs (digest, storage_key, size_bytes, codec, stored_size_bytes, ref_count,
+                               orphaned_at, tier, access_count, created_at)
+            values (:digest, :storageKey, :sizeBytes, :codec, :storedSize, 0, :now, 'HOT', 0, :now)
+            on conflict do nothing
+            """, nativeQuery = true)
+    int register(String digest, String storageKey, long sizeBytes, String codec, long storedSize, LocalDateTime now);
+
+    /**
+     * Looks a blob up and keeps it from being purged until the transaction ends, without
+     * blocking other readers of the row.
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("select b from BlobEntity b where b.digest = :digest")
+    Optional<BlobEntity> findForShare(String digest);
+
+    /**
+     * Adds a reference to an existing blob.
+     *
+     * @return 1 if the blob exists, 0 otherwise
+     */
+    @Modifying
+    @Query("update BlobEntity b set b.refCount = b.refCount + 1, b.orphanedAt = null where b.digest = :digest")
+    int acquire(String digest);
+
+    /**
+     * Adds several references to an existing blob at once.
+     *
+     * @return 1 if the blob exists, 0 otherwise
+     */
+    @Modifying
+    @Query("update BlobEntity b set b.refCount = b.refCount + :references, b.orphanedAt = null where b.digest = :digest")
+    int acquire(String digest, long references);
+
+    /**
+     * Drops references to a blob, stamping {@code orphanedAt} when the last reference goes.
+     */
+    @Modifying
+    @Query("""
+            update BlobEntity b
+            set b.refCount = b.refCount - :references,
+                b.orphanedAt = case when b.refCount = :references then :now else b.orphanedAt end
+            where b.digest = :digest and b.refCount >= :references
+            """)
+    int release(String digest, long references, LocalDateTime now);
+
+    /**
+     * Blobs without references since before the cutoff, oldest first.
+     */
+    @Query("select b from BlobEntity b where b.refCount = 0 and b.orphanedAt < :cutoff order by b.orphanedAt")
+    List<BlobEntity> findOrphans(LocalDateTime cutoff, Limit limit);
+
+    @Query("select count(b) from BlobEntity b where b.refCount = 0 and b.orphanedAt < :cutoff")
+    long countOrphans(LocalDateTime cutoff);
+
+    /**
+     * Deletes the blob row unless a reference was taken since it was found orphaned.
+     *
+     * @return 1 if the row was deleted
+     */
+    @Modifying
+    @Query("delete from BlobEntity b where b.digest = :digest and b.refCount = 0")
+    int deleteOrphan(String digest);
+
+    /**
+     * Adds reads counted in memory since the last flush.
+     */
+    @Modifying
+    @Query("update BlobEntity b set b.accessCount = b.accessCount + :reads, b.lastAccessedAt = :now where b.digest = :digest")
+    int recordAccess(String digest, long reads, LocalDateTime now);
+
+    /**
+     * Hot blobs of live files or versions that have not been read since the cutoff, least recently read first.
+     * Chunked blobs have no bytes of their own and are never moved.
+     */
+    @Query("""
+            select b from BlobEntity b
+            where b.tier = :hot and b.codec <> :chunked and b.refCount > 0
+              and coalesce(b.lastAccessedAt, b.createdAt) < :cutoff
+              and (exists (select 1 from FileEntity f where f.contentHash = b.digest and f.deleted = false)
+                   or exists (select 1 from FileVersionEntity v where v.contentHash = b.digest))
+            order by coalesce(b.lastAccessedAt, b.createdAt)
+            """)
+    List<BlobEntity> findDemotionCandidates(StorageTier hot, ContentCodec chunked, LocalDateTime cutoff, Limit limit);
+
+    /**
+     * Cold blobs read at least {@code minReads} times since they were demoted, the latest read after {@code since}.
+     */
+    @Query("""
+            select b from BlobEntity b
+            where b.tier = :cold and b.refCount > 0 and b.accessCount >= :minReads and b.lastAccessedAt > :since
+            order by b.accessCount desc
+            """)
+    List<BlobEntity> findPromotionCandidates(StorageTier cold, long minReads, LocalDateTime since, Limit limit);
+
+    /**
+     * Points the blob at a copy of its bytes in another tier, unless its storage key changed
+     * since the copy was taken. Reads start counting afresh.
+     *
+     * @return 1 if the blob was moved
+     */
+    @Modifying
+    @Query("""
+            update BlobEntity b
+            set b.storageKey = :newKey, b.tier = :tier, b.codec = :codec, b.storedSizeBytes = :storedSize, b.accessCount = 0
+            where b.digest = :digest and b.storageKey = :oldKey
+            """)
+    int move(String digest, String oldKey, String newKey, StorageTier tier, ContentCodec codec, long storedSize);
+}
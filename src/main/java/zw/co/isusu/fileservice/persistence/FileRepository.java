@@ -1,20 +1,127 @@
 package zw.co.isusu.fileservice.persistence;
 
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import zw.co.isusu.fileservice.domain.FileEntity;
+import zw.co.isusu.fileservice.persistence.projection.FileBlobRef;
+import zw.co.isusu.fileservice.persistence.projection.FileContentView;
+import zw.co.isusu.fileservice.persistence.projection.FileMetadata;
+import zw.co.isusu.fileservice.persistence.projection.FileSummary;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
-public interface FileRepository extends JpaRepository<FileEntity, Long> {
+public interface FileRepository extends JpaRepository<FileEntity, Long>, FileSearchRepository {
 
     Optional<FileEntity> findByFileIdAndDeletedFalse(UUID fileId);
 
-    Page<FileEntity> findAllByDeletedFalse(Pageable pageable);
+    /**
+     * Soft deletes the live files among the given IDs in one statement, stamping them with {@code now}.
+     *
+     * @return the number of files deleted
+     */
+    @Modifying
+    @Query("""
+            update FileEntity f
+            set f.deleted = true, f.deletedAt = :now, f.updatedAt = :now, f.version = f.version + 1
+            where f.fileId in :fileIds and f.deleted = false
+            """)
+    int softDeleteAll(Collection<UUID> fileIds, LocalDateTime now);
 
-    List<FileEntity> findAllByFileIdInAndDeletedFalse(List<UUID> fileIds);
-}
+    /**
+     * The files among the given IDs deleted at exactly {@code deletedAt}, i.e. by the
+     * {@link #softDeleteAll} call in the current transaction.
+     */
+    @Query("""
+            select new zw.co.isusu.fileservice.persistence.projection.FileBlobRef(f.fileId, f.contentHash)
+            from FileEntity f
+            where f.fileId in :fileIds and f.deleted = true and f.deletedAt = :deletedAt
+            """)
+    List<FileBlobRef> findDeletedAt(Collection<UUID> fileIds, LocalDateTime deletedAt);
+
+    @Query("select f.fileId from FileEntity f where f.contentHash = :contentHash and f.deleted = false")
+    List<UUID> findFileIdsByContentHash(String contentHash);
+
+    @Query("select f.id from FileEntity f where f.deleted = true and f.deletedAt < :cutoff order by f.deletedAt")
+    List<Long> findPurgeableIds(LocalDateTime cutoff, Limit limit);
+
+    /**
+     * Locks the given soft-deleted rows until the transaction ends, skipping rows another
+     * transaction holds, so each row is purged, and its versions released, by one purge only.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2")) // SKIP LOCKED
+    @Query("select f from FileEntity f where f.id in :ids and f.deleted = true")
+    List<FileEntity> lockPurgeable(Collection<Long> ids);
+
+    /**
+     * Removes the tags of files about to be deleted in bulk, which bypasses the element collection.
+     */
+    @Modifying
+    @Query(value = "delete from file_tags where file_id in (:ids)", nativeQuery = true)
+    int deleteTagsByIdIn(Collection<Long> ids);
 
+    @Query("""
+            select new zw.co.isusu.fileservice.persistence.projection.FileMetadata(
+                f.fileId, f.fileName, f.fileType, f.sizeBytes, f.contentHash, f.version, f.createdAt, f.updatedAt,
+                b.storageKey, b.codec, b.storedSizeBytes)
+            from FileEntity f join BlobEntity b on b.digest = f.contentHash
+            where f.fileId = :fileId and f.deleted = false
+            """)
+    Optional<FileMetadata> findMetadataByFileId(UUID fileId);
+
+    @Query("""
+            select new zw.co.isusu.fileservice.persistence.projection.FileContentView(
+                f.fileId, f.fileName, f.fileType, f.sizeBytes, f.contentHash, f.version, f.updatedAt, b.storageKey, b.codec, b.storedSizeBytes)
+            from FileEntity f join BlobEntity b on b.digest = f.contentHash
+            where f.fileId in :fileIds and f.deleted = false
+            order by f.createdAt, f.fileId
+            """)
+    List<FileContentView> findContentByFileIdIn(Collection<UUID> fileIds, Limit limit);
+
+    /**
+     * Files carrying a normalised tag.
+     */
+    @Query("""
+            select new zw.co.isusu.fileservice.persistence.projection.FileContentView(
+                f.fileId, f.fileName, f.fileType, f.sizeBytes, f.contentHash, f.version, f.updatedAt, b.storageKey, b.codec, b.storedSizeBytes)
+            from FileEntity f join f.tags t join BlobEntity b on b.digest = f.contentHash
+            where f.deleted = false and t = :tag
+            order by f.createdAt, f.fileId
+            """)
+    List<FileContentView> findContentByTag(String tag, Limit limit);
+
+    /**
+     * First page of the keyset ordered by {@code (createdAt, fileId)}.
+     */
+    @Query("""
+            select new zw.co.isusu.fileservice.persistence.projection.FileSummary(
+                f.fileId, f.fileName, f.fileType, f.sizeBytes, f.contentHash, f.version, f.createdAt, f.updatedAt)
+            from FileEntity f
+            where f.deleted = false
+            order by f.createdAt, f.fileId
+            """)
+    List<FileSummary> findFirstSummaries(Limit limit);
+
+    /**
+     * Next page of the keyset, seeking past the last row of the previous page
+     * instead of skipping an offset.
+     */
+    @Query("""
+            select new zw.co.isusu.fileservice.persistence.projection.FileSummary(
+                f.fileId, f.fileName, f.fileType, f.sizeBytes, f.contentHash, f.version, f.createdAt, f.updatedAt)
+            from FileEntity f
+            where f.deleted = false and (f.createdAt, f.fileId) > (:createdAt, :fileId)
+            order by f.createdAt, f.fileId
+            """)
+    List<FileSummary> findSummariesAfter(LocalDateTime createdAt, UUID fileId, Limit limit);
+}
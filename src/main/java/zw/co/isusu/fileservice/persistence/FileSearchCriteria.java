@@ -0,0 +1,24 @@
+package zw.co.isusu.fileservice.persistence;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Filters for {@link FileSearchRepository#search}. Null or empty filters are not applied.
+ *
+ * @param tags           normalised tags to filter by
+ * @param matchAllTags   whether a file needs every tag, rather than any of them
+ * @param namePrefix     case-sensitive prefix of the file name
+ * @param fileType       exact content type
+ * @param afterCreatedAt keyset position: only files after this row, together with {@code afterFileId}
+ * @param afterFileId    keyset position tie-breaker
+ */
+public record FileSearchCriteria(
+        List<String> tags,
+        boolean matchAllTags,
+        String namePrefix,
+        String fileType,
+        LocalDateTime afterCreatedAt,
+        UUID afterFileId
+) { }
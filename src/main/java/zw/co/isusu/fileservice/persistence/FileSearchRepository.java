@@ -0,0 +1,16 @@
+package zw.co.isusu.fileservice.persistence;
+
+import zw.co.isusu.fileservice.persistence.projection.FileSummary;
+
+import java.util.List;
+
+/**
+ * Dynamic search over live files, kept separate from the derived queries of {@link FileRepository}.
+ */
+public interface FileSearchRepository {
+
+    /**
+     * Summaries of matching files in keyset order {@code (createdAt, fileId)}.
+     */
+    List<FileSummary> search(FileSearchCriteria criteria, int limit);
+}
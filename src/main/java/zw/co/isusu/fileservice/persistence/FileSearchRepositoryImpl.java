@@ -0,0 +1,84 @@
+package zw.co.isusu.fileservice.persistence;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import zw.co.isusu.fileservice.domain.FileEntity;
+import zw.co.isusu.fileservice.persistence.projection.FileSummary;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Criteria implementation of {@link FileSearchRepository}.
+ * <p>
+ * Each tag filter is a correlated {@code EXISTS} probe into {@code file_tags}, answered from the
+ * {@code (tag, file_id)} index: matching all tags is one probe per tag, matching any tag is a
+ * single probe with {@code IN}. Only summary columns are selected.
+ */
+class FileSearchRepositoryImpl implements FileSearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<FileSummary> search(FileSearchCriteria criteria, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<FileSummary> query = cb.createQuery(FileSummary.class);
+        Root<FileEntity> file = query.from(FileEntity.class);
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.isFalse(file.get("deleted")));
+
+        List<String> tags = criteria.tags() == null ? List.of() : criteria.tags();
+        if (!tags.isEmpty()) {
+            if (criteria.matchAllTags()) {
+                tags.forEach(tag -> predicates.add(hasTag(cb, query, file, List.of(tag))));
+            } else {
+                predicates.add(hasTag(cb, query, file, tags));
+            }
+        }
+        if (criteria.namePrefix() != null && !criteria.namePrefix().isEmpty()) {
+            predicates.add(cb.like(file.get("fileName"), escapeLike(criteria.namePrefix()) + "%", '\\'));
+        }
+        if (criteria.fileType() != null && !criteria.fileType().isEmpty()) {
+            predicates.add(cb.equal(file.get("fileType"), criteria.fileType()));
+        }
+        if (criteria.afterCreatedAt() != null && criteria.afterFileId() != null) {
+            predicates.add(cb.or(
+                    cb.greaterThan(file.<LocalDateTime>get("createdAt"), criteria.afterCreatedAt()),
+                    cb.and(
+                            cb.equal(file.get("createdAt"), criteria.afterCreatedAt()),
+                            cb.greaterThan(file.<UUID>get("fileId"), criteria.afterFileId()))));
+        }
+
+        query.select(cb.construct(FileSummary.class,
+                        file.get("fileId"), file.get("fileName"), file.get("fileType"), file.get("sizeBytes"),
+                        file.get("contentHash"), file.get("version"), file.get("createdAt"), file.get("updatedAt")))
+                .where(predicates.toArray(Predicate[]::new))
+                .orderBy(cb.asc(file.get("createdAt")), cb.asc(file.get("fileId")));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    private static Predicate hasTag(CriteriaBuilder cb, CriteriaQuery<?> query, Root<FileEntity> file, List<String> tags) {
+        Subquery<Integer> subquery = query.subquery(Integer.class);
+        Root<FileEntity> tagged = subquery.correlate(file);
+        Join<FileEntity, String> tag = tagged.join("tags");
+        subquery.select(cb.literal(1)).where(tags.size() == 1 ? cb.equal(tag, tags.get(0)) : tag.in(tags));
+        return cb.exists(subquery);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
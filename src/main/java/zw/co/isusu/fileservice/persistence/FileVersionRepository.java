@@ -0,0 +1,45 @@
+package zw.co.isusu.fileservice.persistence;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import zw.co.isusu.fileservice.domain.FileVersionEntity;
+import zw.co.isusu.fileservice.persistence.projection.FileContentView;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface FileVersionRepository extends JpaRepository<FileVersionEntity, Long> {
+
+    List<FileVersionEntity> findByFileIdOrderByFileVersionDesc(UUID fileId);
+
+    Optional<FileVersionEntity> findByFileIdAndFileVersion(UUID fileId, int fileVersion);
+
+    /**
+     * An earlier version of a live file, ready to stream.
+     */
+    @Query("""
+            select new zw.co.isusu.fileservice.persistence.projection.FileContentView(
+                v.fileId, v.fileName, v.fileType, v.sizeBytes, v.contentHash, v.fileVersion, v.storedAt, b.storageKey, b.codec, b.storedSizeBytes)
+            from FileVersionEntity v
+                join FileEntity f on f.fileId = v.fileId
+                join BlobEntity b on b.digest = v.contentHash
+            where v.fileId = :fileId and v.fileVersion = :fileVersion and f.deleted = false
+            """)
+    Optional<FileContentView> findContent(UUID fileId, int fileVersion);
+
+    /**
+     * Content hashes of every version of the given file rows, once per version.
+     */
+    @Query("""
+            select v.contentHash from FileVersionEntity v
+            where v.fileId in (select f.fileId from FileEntity f where f.id in :ids)
+            """)
+    List<String> findContentHashesByFileRowIdIn(Collection<Long> ids);
+
+    @Modifying
+    @Query("delete from FileVersionEntity v where v.fileId in (select f.fileId from FileEntity f where f.id in :ids)")
+    int deleteAllByFileRowIdIn(Collection<Long> ids);
+}
@@ -0,0 +1,30 @@
+package zw.co.isusu.fileservice.persistence;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import zw.co.isusu.fileservice.domain.RenditionEntity;
+import zw.co.isusu.fileservice.persistence.projection.RenditionView;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface RenditionRepository extends JpaRepository<RenditionEntity, Long> {
+
+    boolean existsBySourceHashAndMaxDimension(String sourceHash, int maxDimension);
+
+    @Query("select r.contentHash from RenditionEntity r where r.sourceHash = :sourceHash")
+    List<String> findContentHashesBySourceHash(String sourceHash);
+
+    @Modifying
+    @Query("delete from RenditionEntity r where r.sourceHash = :sourceHash")
+    int deleteAllBySourceHash(String sourceHash);
+
+    @Query("""
+            select new zw.co.isusu.fileservice.persistence.projection.RenditionView(
+                r.fileType, r.sizeBytes, r.contentHash, b.storageKey, b.codec)
+            from RenditionEntity r join BlobEntity b on b.digest = r.contentHash
+            where r.sourceHash = :sourceHash and r.maxDimension = :maxDimension
+            """)
+    Optional<RenditionView> findView(String sourceHash, int maxDimension);
+}
@@ -0,0 +1,24 @@
+package zw.co.isusu.fileservice.persistence;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import zw.co.isusu.fileservice.domain.UploadChunkEntity;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface UploadChunkRepository extends JpaRepository<UploadChunkEntity, Long> {
+
+    Optional<UploadChunkEntity> findBySessionIdAndChunkIndex(UUID sessionId, int chunkIndex);
+
+    @Query("select c.chunkIndex from UploadChunkEntity c where c.sessionId = :sessionId order by c.chunkIndex")
+    List<Integer> findChunkIndices(UUID sessionId);
+
+    long countBySessionId(UUID sessionId);
+
+    @Modifying
+    @Query("delete from UploadChunkEntity c where c.sessionId = :sessionId")
+    void deleteAllBySessionId(UUID sessionId);
+}
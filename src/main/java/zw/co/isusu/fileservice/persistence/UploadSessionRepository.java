@@ -0,0 +1,26 @@
+package zw.co.isusu.fileservice.persistence;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import zw.co.isusu.fileservice.domain.UploadSessionEntity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSessionEntity, Long> {
+
+    Optional<UploadSessionEntity> findBySessionId(UUID sessionId);
+
+    /**
+     * Loads the session and locks its row until the transaction ends, so only one commit of it runs at a time.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from UploadSessionEntity s where s.sessionId = :sessionId")
+    Optional<UploadSessionEntity> findForUpdate(UUID sessionId);
+
+    List<UploadSessionEntity> findAllByExpiresAtBefore(LocalDateTime now);
+}
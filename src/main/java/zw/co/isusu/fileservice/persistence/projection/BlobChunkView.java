@@ -0,0 +1,13 @@
+package zw.co.isusu.fileservice.persistence.projection;
+
+import zw.co.isusu.fileservice.storage.ContentCodec;
+
+/**
+ * A manifest entry of a chunked blob, resolved together with where the chunk is stored.
+ */
+public record BlobChunkView(
+        long offsetBytes,
+        long sizeBytes,
+        String storageKey,
+        ContentCodec codec
+) { }
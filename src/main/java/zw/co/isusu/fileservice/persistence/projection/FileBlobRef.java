@@ -0,0 +1,11 @@
+package zw.co.isusu.fileservice.persistence.projection;
+
+import java.util.UUID;
+
+/**
+ * A file together with the blob it references.
+ */
+public record FileBlobRef(
+        UUID fileId,
+        String contentHash
+) { }
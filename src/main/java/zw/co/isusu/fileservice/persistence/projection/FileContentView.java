@@ -0,0 +1,22 @@
+package zw.co.isusu.fileservice.persistence.projection;
+
+import zw.co.isusu.fileservice.storage.ContentCodec;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Everything needed to stream a file, resolved together with its blob in one query.
+ */
+public record FileContentView(
+        UUID fileId,
+        String fileName,
+        String fileType,
+        long sizeBytes,
+        String contentHash,
+        int version,
+        LocalDateTime updatedAt,
+        String storageKey,
+        ContentCodec codec,
+        long storedSizeBytes
+) { }
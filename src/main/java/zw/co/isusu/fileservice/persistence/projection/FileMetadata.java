@@ -0,0 +1,33 @@
+package zw.co.isusu.fileservice.persistence.projection;
+
+import zw.co.isusu.fileservice.storage.ContentCodec;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Everything known about a live file short of its contents, resolved with its blob in one
+ * query. Small enough to cache, and serves both the details and the download of a file.
+ */
+public record FileMetadata(
+        UUID fileId,
+        String fileName,
+        String fileType,
+        long sizeBytes,
+        String contentHash,
+        int version,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt,
+        String storageKey,
+        ContentCodec codec,
+        long storedSizeBytes
+) {
+
+    public FileSummary summary() {
+        return new FileSummary(fileId, fileName, fileType, sizeBytes, contentHash, version, createdAt, updatedAt);
+    }
+
+    public FileContentView content() {
+        return new FileContentView(fileId, fileName, fileType, sizeBytes, contentHash, version, updatedAt, storageKey, codec, storedSizeBytes);
+    }
+}
@@ -0,0 +1,18 @@
+package zw.co.isusu.fileservice.persistence.projection;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Metadata-only view of a file, selected without touching the file contents.
+ */
+public record FileSummary(
+        UUID fileId,
+        String fileName,
+        String fileType,
+        long sizeBytes,
+        String contentHash,
+        int version,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt
+) { }
@@ -0,0 +1,14 @@
+package zw.co.isusu.fileservice.persistence.projection;
+
+import zw.co.isusu.fileservice.storage.ContentCodec;
+
+/**
+ * A stored rendition resolved together with the location of its blob.
+ */
+public record RenditionView(
+        String fileType,
+        long sizeBytes,
+        String contentHash,
+        String storageKey,
+        ContentCodec codec
+) { }
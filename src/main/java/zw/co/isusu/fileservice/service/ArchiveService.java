@@ -0,0 +1,24 @@
+package zw.co.isusu.fileservice.service;
+
+import zw.co.isusu.fileservice.service.exception.FileNotFoundException;
+import zw.co.isusu.fileservice.service.request.ArchiveRequest;
+import zw.co.isusu.fileservice.service.response.FileArchive;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Service interface for downloading many files as a single ZIP archive.
+ */
+public interface ArchiveService {
+
+    /**
+     * Resolves the metadata of the requested files, so a bad request fails before the response starts.
+     */
+    FileArchive prepareArchive(ArchiveRequest request) throws FileNotFoundException;
+
+    /**
+     * Streams the archive one file at a time; contents are never buffered as a whole.
+     */
+    void writeArchive(FileArchive archive, OutputStream out) throws IOException;
+}
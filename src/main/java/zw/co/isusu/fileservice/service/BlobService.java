@@ -0,0 +1,70 @@
+package zw.co.isusu.fileservice.service;
+
+import zw.co.isusu.fileservice.storage.BlobSource;
+import zw.co.isusu.fileservice.storage.ContentCodec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Service interface for content-addressed blob storage with reference counting.
+ */
+public interface BlobService {
+
+    /**
+     * Streams the content into storage and takes a reference to the resulting blob.
+     * Content that is already stored is not kept a second time. Compressible content is
+     * stored encoded; the declared type is only used to decide whether to try.
+     */
+    StoredBlob store(InputStream content, String fileType) throws IOException;
+
+    /**
+     * Like {@link #store}, for contents the client declared the SHA-256 of. If a blob with that
+     * digest is stored, a reference to it is taken up front and the contents are only read to
+     * verify them, never written.
+     *
+     * @param declaredDigest hex encoded SHA-256 declared by the client, or null
+     */
+    StoredBlob store(InputStream content, String fileType, String declaredDigest) throws IOException;
+
+    /**
+     * Like {@link #store}, but splits the content into content-defined chunks and only
+     * writes chunks that are not stored yet. Contents that only differ in a few places from
+     * stored ones cost little more than the changed chunks.
+     */
+    StoredBlob storeChunked(InputStream content, String fileType) throws IOException;
+
+    /**
+     * Stores a fully written local file whose digest is already known, taking a reference
+     * to the resulting blob. The file is consumed either way.
+     */
+    StoredBlob storeFile(Path file, String digest, long sizeBytes, String fileType) throws IOException;
+
+    /**
+     * Takes another reference to a stored blob.
+     */
+    void retain(String digest);
+
+    /**
+     * Drops one reference to the blob with the given digest.
+     */
+    void release(String digest);
+
+    /**
+     * Drops several references to the blob with the given digest at once.
+     */
+    void release(String digest, long references);
+
+    /**
+     * Opens the decoded contents of a blob.
+     */
+    BlobSource open(String storageKey, ContentCodec codec) throws IOException;
+
+    /**
+     * Opens the bytes of a blob exactly as stored, still encoded with its codec.
+     */
+    BlobSource openStored(String storageKey) throws IOException;
+
+    record StoredBlob(String digest, long sizeBytes, boolean duplicate) { }
+}
@@ -0,0 +1,24 @@
+package zw.co.isusu.fileservice.service;
+
+import zw.co.isusu.fileservice.service.request.BulkMetadataUpdate;
+import zw.co.isusu.fileservice.service.response.MetadataUpdateResult;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Service interface for reconciling the catalog of files in bulk.
+ */
+public interface CatalogService {
+
+    /**
+     * Streams the metadata of every live file as newline-delimited JSON, oldest first.
+     */
+    void exportCatalog(OutputStream out) throws IOException;
+
+    /**
+     * Applies renames and tag changes, reporting the outcome of each item separately.
+     */
+    List<MetadataUpdateResult> updateMetadata(List<BulkMetadataUpdate> updates);
+}
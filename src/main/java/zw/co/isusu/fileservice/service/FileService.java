@@ -1,16 +1,23 @@
 package zw.co.isusu.fileservice.service;
 
 import org.apache.tomcat.util.http.fileupload.FileUploadException;
-import org.springframework.data.domain.Page;
 import org.springframework.web.multipart.MultipartFile;
+import zw.co.isusu.fileservice.inspection.UploadRejectedException;
 import zw.co.isusu.fileservice.service.exception.FileNotFoundException;
+import zw.co.isusu.fileservice.service.request.FileSearchRequest;
 import zw.co.isusu.fileservice.service.request.FileUploadRequest;
 import zw.co.isusu.fileservice.service.request.UpdateFileMetadataRequest;
 import zw.co.isusu.fileservice.service.response.FileDetailsResponse;
 import zw.co.isusu.fileservice.service.response.FileDownloadResponse;
+import zw.co.isusu.fileservice.service.response.FileListResponse;
 import zw.co.isusu.fileservice.service.response.FileUploadResponse;
+import zw.co.isusu.fileservice.service.response.FileUploadResult;
+import zw.co.isusu.fileservice.service.response.FileVersionResponse;
+import zw.co.isusu.fileservice.signing.InvalidDownloadLinkException;
+import zw.co.isusu.fileservice.signing.SignedDownloadLink;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.List;
 import java.util.UUID;
 
@@ -18,24 +25,66 @@ import java.util.UUID;
  * Service interface for file operations.
  */
 public interface FileService {
-    FileUploadResponse uploadFile(FileUploadRequest request) throws FileUploadException;
+    /**
+     * Uploads a file, inspecting its contents on the way; rejected contents are never stored.
+     */
+    FileUploadResponse uploadFile(FileUploadRequest request) throws FileUploadException, UploadRejectedException;
 
     FileDownloadResponse downloadFile(UUID id) throws FileNotFoundException;
 
     FileDetailsResponse getFileById(UUID id) throws FileNotFoundException;
 
+    /**
+     * Issues a short-lived signed link downloading the current contents of a file.
+     *
+     * @param ttl requested lifetime, or null for the default
+     */
+    SignedDownloadLink createDownloadLink(UUID fileId, Duration ttl) throws FileNotFoundException;
+
+    /**
+     * Downloads the file a signed link was issued for, without looking it up unless it changed since.
+     */
+    FileDownloadResponse downloadSigned(String token) throws FileNotFoundException, InvalidDownloadLinkException;
+
     void deleteFile(UUID fileId) throws FileNotFoundException;
 
-    List<FileUploadResponse> uploadFiles(List<MultipartFile> files) throws IOException;
+    /**
+     * Uploads several files, reporting success or failure for each file separately.
+     */
+    List<FileUploadResult> uploadFiles(List<MultipartFile> files);
+
+    FileListResponse listFiles(String cursor, int size);
 
-    Page<FileDetailsResponse> listFiles(int page, int size);
+    /**
+     * Searches live files with the same keyset pagination as {@link #listFiles}.
+     */
+    FileListResponse searchFiles(FileSearchRequest request, String cursor, int size);
 
     void deleteFiles(List<UUID> fileIds) throws FileNotFoundException;
 
     FileDetailsResponse updateMetadata(UUID fileId, UpdateFileMetadataRequest request);
 
+    /**
+     * Replaces the contents of a file, keeping the previous contents as an earlier version.
+     */
     FileUploadResponse replaceFile(UUID fileId, MultipartFile file) throws IOException;
 
-    FileDownloadResponse previewFile(UUID fileId);
+    /**
+     * Earlier versions of a file, newest first.
+     */
+    List<FileVersionResponse> listVersions(UUID fileId) throws FileNotFoundException;
+
+    FileDownloadResponse downloadVersion(UUID fileId, int version) throws FileNotFoundException;
+
+    /**
+     * Makes an earlier version the current contents again; the contents it replaces become a version themselves.
+     */
+    FileUploadResponse restoreVersion(UUID fileId, int version) throws FileNotFoundException;
+
+    /**
+     * Returns a downscaled rendition for images whose longest edge fits the requested size,
+     * or the original contents for everything else.
+     */
+    FileDownloadResponse previewFile(UUID fileId, Integer size);
 }
 
@@ -0,0 +1,12 @@
+package zw.co.isusu.fileservice.service;
+
+/**
+ * Service interface for reclaiming the storage of deleted files.
+ */
+public interface PurgeService {
+
+    /**
+     * Hard deletes soft-deleted file rows and unreferenced blobs older than the retention period.
+     */
+    void purge();
+}
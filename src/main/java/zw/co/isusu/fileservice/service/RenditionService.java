@@ -0,0 +1,26 @@
+package zw.co.isusu.fileservice.service;
+
+import zw.co.isusu.fileservice.persistence.projection.RenditionView;
+import zw.co.isusu.fileservice.storage.BlobSource;
+
+import java.util.Optional;
+
+/**
+ * Service interface for downscaled image previews.
+ */
+public interface RenditionService {
+
+    boolean supports(String fileType);
+
+    /**
+     * Picks the configured rendition size to serve for a requested size.
+     */
+    int resolveSize(Integer requestedSize);
+
+    /**
+     * Returns the rendition of the given size, rendering and storing it first when it is missing.
+     * Empty when the source cannot be rendered. Meant to be called outside of a transaction;
+     * a new rendition is stored in a transaction of its own.
+     */
+    Optional<RenditionView> findOrCreate(String sourceHash, String fileType, BlobSource source, int maxDimension);
+}
@@ -0,0 +1,22 @@
+package zw.co.isusu.fileservice.service;
+
+/**
+ * Service interface for moving blobs between storage tiers by how often they are read.
+ */
+public interface TieringService {
+
+    /**
+     * Counts a read of the blob with the given digest. Cheap enough to call on every download.
+     */
+    void recordAccess(String digest);
+
+    /**
+     * Writes the reads counted since the last flush to the blob rows.
+     */
+    void flushAccesses();
+
+    /**
+     * Moves blobs nobody reads any more to the cold tier, and cold blobs being read again back.
+     */
+    void migrate();
+}
@@ -0,0 +1,26 @@
+package zw.co.isusu.fileservice.service;
+
+import zw.co.isusu.fileservice.service.exception.FileNotFoundException;
+import zw.co.isusu.fileservice.service.request.CreateUploadSessionRequest;
+import zw.co.isusu.fileservice.service.response.FileUploadResponse;
+import zw.co.isusu.fileservice.service.response.UploadChunkResponse;
+import zw.co.isusu.fileservice.service.response.UploadSessionResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+
+/**
+ * Service interface for resumable, chunked uploads.
+ */
+public interface UploadSessionService {
+    UploadSessionResponse createSession(CreateUploadSessionRequest request) throws IOException;
+
+    UploadSessionResponse getSession(UUID sessionId) throws FileNotFoundException;
+
+    UploadChunkResponse uploadChunk(UUID sessionId, int chunkIndex, String checksum, InputStream content) throws IOException, FileNotFoundException;
+
+    FileUploadResponse commitSession(UUID sessionId) throws IOException, FileNotFoundException;
+
+    void abortSession(UUID sessionId) throws FileNotFoundException;
+}
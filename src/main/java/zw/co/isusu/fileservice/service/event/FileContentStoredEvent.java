@@ -0,0 +1,8 @@
+package zw.co.isusu.fileservice.service.event;
+
+import java.util.UUID;
+
+/**
+ * Published when a file receives new contents, through upload, replacement or a committed upload session.
+ */
+public record FileContentStoredEvent(UUID fileId, String contentHash, String fileType) { }
@@ -0,0 +1,10 @@
+package zw.co.isusu.fileservice.service.exception;
+
+/**
+ * Thrown for a listing cursor that was not issued by this service, answered with {@code 400}.
+ */
+public class InvalidCursorException extends IllegalArgumentException {
+    public InvalidCursorException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
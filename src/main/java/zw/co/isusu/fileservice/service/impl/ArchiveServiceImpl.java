@@ -0,0 +1,255 @@
+package zw.co.isusu.fileservice.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import zw.co.isusu.fileservice.config.ArchiveProperties;
+import zw.co.isusu.fileservice.config.IoThreads;
+import zw.co.isusu.fileservice.domain.FileEntity;
+import zw.co.isusu.fileservice.metrics.FileMetrics;
+import zw.co.isusu.fileservice.persistence.FileRepository;
+import zw.co.isusu.fileservice.persistence.projection.FileContentView;
+import zw.co.isusu.fileservice.service.ArchiveService;
+import zw.co.isusu.fileservice.service.BlobService;
+import zw.co.isusu.fileservice.service.exception.FileNotFoundException;
+import zw.co.isusu.fileservice.service.request.ArchiveRequest;
+import zw.co.isusu.fileservice.service.response.FileArchive;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Service implementation streaming ZIP archives straight to the client.
+ * <p>
+ * Metadata for every entry is read up front; contents are then streamed one file at a time.
+ * While a file streams, the first window of the next one is read ahead on a separate thread,
+ * hiding the latency of opening a blob behind the transfer of the previous one. The read-ahead
+ * stream is then continued rather than reopened, so compressed blobs are decoded only once.
+ * At most one window per archive is held in memory.
+ */
+@Slf4j
+@Service
+public class ArchiveServiceImpl implements ArchiveService {
+
+    private final FileRepository fileRepository;
+    private final BlobService blobService;
+    private final ArchiveProperties properties;
+    private final FileMetrics fileMetrics;
+    private final List<MediaType> storedTypes;
+    private final ExecutorService prefetchExecutor;
+
+    public ArchiveServiceImpl(FileRepository fileRepository,
+                              BlobService blobService,
+                              ArchiveProperties properties,
+                              FileMetrics fileMetrics,
+                              IoThreads ioThreads) {
+        this.fileRepository = fileRepository;
+        this.blobService = blobService;
+        this.properties = properties;
+        this.fileMetrics = fileMetrics;
+        this.storedTypes = properties.storedTypes().stream().map(MediaType::parseMediaType).toList();
+        this.prefetchExecutor = Executors.newCachedThreadPool(ioThreads.factory("archive-prefetch-"));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        prefetchExecutor.shutdownNow();
+    }
+
+    @Override
+    @Transactional
+    public FileArchive prepareArchive(ArchiveRequest request) throws FileNotFoundException {
+        boolean byIds = request.fileIds() != null && !request.fileIds().isEmpty();
+        boolean byTag = request.tag() != null && !request.tag().isBlank();
+        if (byIds == byTag) {
+            throw new IllegalArgumentException("Provide either file IDs or a tag");
+        }
+        if (byIds && request.fileIds().size() > properties.maxFiles()) {
+            throw new IllegalArgumentException("An archive may contain at most " + properties.maxFiles() + " files");
+        }
+
+        log.debug("Preparing archive for {}", byIds ? request.fileIds().size() + " files" : "tag " + request.tag());
+        // One row past the limit tells an oversized tag apart from one that exactly fits
+        Limit limit = Limit.of(properties.maxFiles() + 1);
+        List<FileContentView> entries = byIds
+                ? fileRepository.findContentByFileIdIn(request.fileIds(), limit)
+                : fileRepository.findContentByTag(FileEntity.normalizeTag(request.tag()), limit);
+
+        if (entries.isEmpty()) {
+            throw new FileNotFoundException("No files found for the archive request");
+        }
+        if (entries.size() > properties.maxFiles()) {
+            throw new IllegalArgumentException("An archive may contain at most " + properties.maxFiles() + " files");
+        }
+        return new FileArchive(byTag ? request.tag() + ".zip" : "files.zip", entries);
+    }
+
+    @Override
+    public void writeArchive(FileArchive archive, OutputStream out) throws IOException {
+        List<FileContentView> entries = archive.entries();
+        Set<String> names = new HashSet<>();
+        CountingOutputStream counter = new CountingOutputStream(out);
+        ZipOutputStream zip = new ZipOutputStream(counter);
+        long started = System.nanoTime();
+        fileMetrics.downloadStarted();
+        Future<Prefetched> next = prefetch(entries.get(0));
+        try {
+            for (int i = 0; i < entries.size(); i++) {
+                FileContentView file = entries.get(i);
+                Prefetched current = await(next, file);
+                next = i + 1 < entries.size() ? prefetch(entries.get(i + 1)) : null;
+
+                try (current) {
+                    ZipEntry entry = new ZipEntry(entryName(file, names));
+                    entry.setTimeLocal(file.updatedAt());
+                    // Deflating already-compressed data burns CPU for no gain
+                    zip.setLevel(isCompressed(file.fileType()) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+                    zip.putNextEntry(entry);
+                    zip.write(current.head(), 0, current.length());
+                    current.rest().transferTo(zip);
+                }
+                zip.closeEntry();
+            }
+            zip.finish();
+            zip.flush();
+            log.debug("Streamed archive {} with {} files", archive.fileName(), entries.size());
+        } finally {
+            if (next != null) {
+                discard(next);
+            }
+            fileMetrics.downloadFinished();
+            fileMetrics.recordDownload("archive", counter.count, System.nanoTime() - started);
+        }
+    }
+
+    private Future<Prefetched> prefetch(FileContentView file) {
+        return prefetchExecutor.submit(() -> {
+            InputStream in = blobService.open(file.storageKey(), file.codec()).openStream(0);
+            try {
+                byte[] head = new byte[(int) Math.min(properties.prefetchSize().toBytes(), file.sizeBytes())];
+                int length = in.readNBytes(head, 0, head.length);
+                if (Thread.currentThread().isInterrupted()) {
+                    // Cancelled while reading; nobody will close the stream otherwise
+                    throw new InterruptedIOException("Read-ahead cancelled");
+                }
+                return new Prefetched(head, length, in);
+            } catch (IOException | RuntimeException e) {
+                in.close();
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Cancels a read-ahead that is no longer needed, closing its stream if it already completed.
+     */
+    private static void discard(Future<Prefetched> future) {
+        if (future.cancel(true)) {
+            return;
+        }
+        try {
+            future.get().close();
+        } catch (Exception e) {
+            log.debug("Discarded failed read-ahead", e);
+        }
+    }
+
+    private static Prefetched await(Future<Prefetched> future, FileContentView file) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading file " + file.fileId());
+        } catch (ExecutionException | CancellationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw cause instanceof IOException io ? io : new IOException("Failed to read file " + file.fileId(), cause);
+        }
+    }
+
+    private boolean isCompressed(String fileType) {
+        if (fileType == null) {
+            return false;
+        }
+        try {
+            MediaType type = MediaType.parseMediaType(fileType);
+            return storedTypes.stream().anyMatch(pattern -> pattern.includes(type));
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Strips directories from the stored name and suffixes duplicates, so entries never
+     * collide or escape the extraction directory.
+     */
+    private static String entryName(FileContentView file, Set<String> usedNames) {
+        String name = file.fileName() == null ? "" : file.fileName();
+        name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+        if (name.isBlank() || name.equals(".") || name.equals("..")) {
+            name = file.fileId().toString();
+        }
+
+        String candidate = name;
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (int copy = 2; !usedNames.add(candidate); copy++) {
+            candidate = base + " (" + copy + ")" + extension;
+        }
+        return candidate;
+    }
+
+    /**
+     * Counts the bytes of the archive as they are written to the client.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * The first window of a blob, read ahead, and the open stream positioned after it.
+     */
+    private record Prefetched(byte[] head, int length, InputStream rest) implements Closeable {
+
+        @Override
+        public void close() throws IOException {
+            rest.close();
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package zw.co.isusu.fileservice.service.impl;
+
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import zw.co.isusu.fileservice.config.VersioningProperties;
+import zw.co.isusu.fileservice.domain.BlobChunkEntity;
+import zw.co.isusu.fileservice.metrics.FileMetrics;
+import zw.co.isusu.fileservice.persistence.BlobChunkRepository;
+import zw.co.isusu.fileservice.persistence.BlobRepository;
+import zw.co.isusu.fileservice.service.BlobService;
+import zw.co.isusu.fileservice.storage.BlobSource;
+import zw.co.isusu.fileservice.storage.BlobStore;
+import zw.co.isusu.fileservice.storage.BlobWriter;
+import zw.co.isusu.fileservice.storage.ContentCodec;
+import zw.co.isusu.fileservice.storage.ContentDefinedChunker;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Service implementation for content-addressed blob storage.
+ * <p>
+ * The digest is only known once the content has been streamed, so an upload is written to
+ * a fresh blob first. If a blob with the same digest already exists the new copy is dropped
+ * and a reference to the existing one is taken instead. When the client declared the SHA-256
+ * of the contents and a blob with it exists, the reference is taken before reading and the
+ * contents are only hashed to verify the declaration, so stored contents are not written again.
+ * New blob rows are upserted in the transaction of the upload, so a concurrent upload of the
+ * same contents waits for it instead of failing; if the upload rolls back, the bytes it wrote
+ * are deleted again once the transaction has completed.
+ * <p>
+ * Compressible contents are gzip encoded on the way into the store. The digest is always
+ * taken over the decoded bytes, so deduplication does not depend on how a blob is stored.
+ * <p>
+ * Chunked contents are split with a {@link ContentDefinedChunker}; every chunk is a blob of
+ * its own, written only if no blob with its digest exists yet. The contents are then
+ * registered as a {@link ContentCodec#CHUNKED} blob whose manifest holds one reference per
+ * chunk entry. The manifest, and the references it holds, are committed together with the
+ * blob row, so they exist exactly as long as that row does.
+ */
+@Slf4j
+@Service
+@Transactional
+public class BlobServiceImpl implements BlobService {
+
+    private final BlobRepository blobRepository;
+    private final BlobChunkRepository blobChunkRepository;
+    private final BlobStore blobStore;
+    private final CompressionPolicy compressionPolicy;
+    private final FileMetrics fileMetrics;
+    private final ContentDefinedChunker chunker;
+
+    public BlobServiceImpl(BlobRepository blobRepository,
+                           BlobChunkRepository blobChunkRepository,
+                           BlobStore blobStore,
+                           CompressionPolicy compressionPolicy,
+                           VersioningProperties versioningProperties,
+                           FileMetrics fileMetrics) {
+        this.blobRepository = blobRepository;
+        this.blobChunkRepository = blobChunkRepository;
+        this.blobStore = blobStore;
+        this.compressionPolicy = compressionPolicy;
+        this.fileMetrics = fileMetrics;
+        this.chunker = new ContentDefinedChunker(
+                (int) versioningProperties.minChunkSize().toBytes(),
+                (int) versioningProperties.avgChunkSize().toBytes(),
+                (int) versioningProperties.maxChunkSize().toBytes());
+    }
+
+    @Override
+    public StoredBlob store(InputStream content, String fileType) throws IOException {
+        return store(content, fileType, null);
+    }
+
+    @Override
+    public StoredBlob store(InputStream content, String fileType, String declaredDigest) throws IOException {
+        if (declaredDigest != null && blobRepository.existsById(declaredDigest)) {
+            return verifyDuplicate(content, declaredDigest);
+        }
+        MessageDigest digest = sha256();
+        String storageKey;
+        ContentCodec codec = ContentCodec.IDENTITY;
+        long size;
+        try (InputStream in = content; BlobWriter writer = blobStore.newWriter()) {
+            InputStream source = in;
+            if (compressionPolicy.eligible(fileType)) {
+                byte[] sample = in.readNBytes(compressionPolicy.probeSize());
+                codec = compressionPolicy.choose(sample, sample.length);
+                source = new SequenceInputStream(new ByteArrayInputStream(sample), in);
+            }
+            try (OutputStream encoder = codec.encode(writer)) {
+                size = source.transferTo(new DigestOutputStream(encoder, digest));
+            }
+            storageKey = writer.commit();
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+
+        if (blobRepository.acquire(hash) == 1) {
+            log.debug("Blob {} already stored, discarding new copy", hash);
+            deleteQuietly(storageKey);
+            fileMetrics.recordBlobStored(codec, size, 0, true);
+            return new StoredBlob(hash, size, true);
+        }
+        long storedSize = codec == ContentCodec.IDENTITY ? size : blobStore.size(storageKey);
+        log.debug("Storing blob {} as {}, {} of {} bytes", hash, codec, storedSize, size);
+        return registerAndAcquire(hash, storageKey, size, codec, storedSize);
+    }
+
+    /**
+     * Reads contents declared to be those of a stored blob and takes a reference to it once
+     * they turn out to be. The blob row is only locked for that last update, not while the
+     * contents are read.
+     */
+    private StoredBlob verifyDuplicate(InputStream content, String declaredDigest) throws IOException {
+        MessageDigest digest = sha256();
+        long size;
+        try (InputStream in = content) {
+            size = in.transferTo(new DigestOutputStream(OutputStream.nullOutputStream(), digest));
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+        if (!hash.equals(declaredDigest)) {
+            throw new IOException("Contents do not match their declared SHA-256");
+        }
+        if (blobRepository.acquire(hash) != 1) {
+            // Purged as an orphan while the contents were read, which are gone by now
+            throw new IllegalStateException("Blob disappeared while being verified: " + hash);
+        }
+        log.debug("Blob {} already stored, verified without writing", hash);
+        fileMetrics.recordBlobStored(ContentCodec.IDENTITY, size, 0, true);
+        return new StoredBlob(hash, size, true);
+    }
+
+    @Override
+    public StoredBlob storeChunked(InputStream content, String fileType) throws IOException {
+        MessageDigest digest = sha256();
+        MessageDigest chunkDigest = sha256();
+        boolean compress = compressionPolicy.eligible(fileType);
+        List<BlobChunkEntity> manifest = new ArrayList<>();
+        ChunkWrite lastWrite = null;
+        long size = 0;
+        long writtenBytes = 0;
+        long storedBytes = 0;
+        try (InputStream in = content) {
+            ContentDefinedChunker.Chunks chunks = chunker.split(in);
+            while (chunks.next()) {
+                byte[] buffer = chunks.buffer();
+                int length = chunks.length();
+                digest.update(buffer, 0, length);
+                chunkDigest.update(buffer, 0, length);
+                String chunkHash = HexFormat.of().formatHex(chunkDigest.digest());
+                lastWrite = storeChunk(chunkHash, buffer, length, compress);
+                if (lastWrite.written()) {
+                    writtenBytes += length;
+                    storedBytes += lastWrite.storedSize();
+                }
+
+                BlobChunkEntity entry = new BlobChunkEntity();
+                entry.setChunkIndex(manifest.size());
+                entry.setOffsetBytes(size);
+                entry.setSizeBytes(length);
+                entry.setChunkDigest(chunkHash);
+                manifest.add(entry);
+                size += length;
+            }
+        }
+        if (manifest.isEmpty()) {
+            return store(InputStream.nullInputStream(), fileType);
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+        fileMetrics.recordChunks(writtenBytes, size - writtenBytes);
+
+        if (manifest.size() == 1) {
+            // A single chunk is the whole contents, already registered under the same digest
+            if (blobRepository.acquire(hash) != 1) {
+                throw new IllegalStateException("Blob disappeared while being registered: " + hash);
+            }
+            fileMetrics.recordBlobStored(lastWrite.codec(), size, lastWrite.storedSize(), !lastWrite.written());
+            return new StoredBlob(hash, size, !lastWrite.written());
+        }
+        if (blobRepository.acquire(hash) == 1) {
+            log.debug("Blob {} already stored, keeping {} new chunk bytes for other contents", hash, writtenBytes);
+            fileMetrics.recordBlobStored(ContentCodec.CHUNKED, size, 0, true);
+            return new StoredBlob(hash, size, true);
+        }
+
+        log.debug("Storing blob {} as {} chunks, {} of {} bytes new", hash, manifest.size(), writtenBytes, size);
+        manifest.forEach(entry -> entry.setBlobDigest(hash));
+        boolean registered = registerManifest(hash, size, manifest);
+        if (blobRepository.acquire(hash) != 1) {
+            throw new IllegalStateException("Blob disappeared while being registered: " + hash);
+        }
+        fileMetrics.recordBlobStored(ContentCodec.CHUNKED, size, storedBytes, !registered);
+        return new StoredBlob(hash, size, !registered);
+    }
+
+    @Override
+    public StoredBlob storeFile(Path file, String digest, long sizeBytes, String fileType) throws IOException {
+        if (blobRepository.acquire(digest) == 1) {
+            log.debug("Blob {} already stored, discarding staged file", digest);
+            Files.deleteIfExists(file);
+            fileMetrics.recordBlobStored(ContentCodec.IDENTITY, sizeBytes, 0, true);
+            return new StoredBlob(digest, sizeBytes, true);
+        }
+
+        ContentCodec codec = ContentCodec.IDENTITY;
+        if (compressionPolicy.eligible(fileType)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                byte[] sample = in.readNBytes(compressionPolicy.probeSize());
+                codec = compressionPolicy.choose(sample, sample.length);
+            }
+        }
+        if (codec == ContentCodec.IDENTITY) {
+            return registerAndAcquire(digest, blobStore.importFile(file), sizeBytes, codec, sizeBytes);
+        }
+
+        String storageKey;
+        try (InputStream in = Files.newInputStream(file); BlobWriter writer = blobStore.newWriter()) {
+            try (OutputStream encoder = codec.encode(writer)) {
+                in.transferTo(encoder);
+            }
+            storageKey = writer.commit();
+        }
+        Files.delete(file);
+        return registerAndAcquire(digest, storageKey, sizeBytes, codec, blobStore.size(storageKey));
+    }
+
+    @Override
+    public void retain(String digest) {
+        if (blobRepository.acquire(digest) != 1) {
+            throw new IllegalStateException("Blob not found: " + digest);
+        }
+    }
+
+    @Override
+    public void release(String digest) {
+        release(digest, 1);
+    }
+
+    @Override
+    public void release(String digest, long references) {
+        if (blobRepository.release(digest, references, LocalDateTime.now()) == 0) {
+            log.warn("Released {} references to blob {} which had fewer", references, digest);
+        }
+    }
+
+    @Override
+    public BlobSource open(String storageKey, ContentCodec codec) throws IOException {
+        if (codec == ContentCodec.CHUNKED) {
+            return new ChunkedBlobSource(() -> blobChunkRepository.findManifest(storageKey), blobStore);
+        }
+        return codec.decode(blobStore.open(storageKey));
+    }
+
+    @Override
+    public BlobSource openStored(String storageKey) throws IOException {
+        return blobStore.open(storageKey);
+    }
+
+    private StoredBlob registerAndAcquire(String digest, String storageKey, long size,
+                                          ContentCodec codec, long storedSize) {
+        boolean registered = register(digest, storageKey, size, codec, storedSize);
+        if (!registered) {
+            // Another upload registered the same content first
+            deleteQuietly(storageKey);
+        }
+        if (blobRepository.acquire(digest) != 1) {
+            throw new IllegalStateException("Blob disappeared while being registered: " + digest);
+        }
+        fileMetrics.recordBlobStored(codec, size, storedSize, !registered);
+        return new StoredBlob(digest, size, !registered);
+    }
+
+    /**
+     * Inserts the blob row without references, deleting the written bytes should the
+     * transaction roll back.
+     *
+     * @return false if a row with the same digest already existed
+     */
+    private boolean register(String digest, String storageKey, long size, ContentCodec codec, long storedSize) {
+        if (blobRepository.register(digest, storageKey, size, codec.name(), storedSize, LocalDateTime.now()) == 0) {
+            return false;
+        }
+        deleteOnRollback(storageKey);
+        return true;
+    }
+
+    /**
+     * Writes a chunk unless a blob with its digest exists. New chunks are registered without
+     * references; they are taken by the manifest, or the chunk is purged as an orphan.
+     */
+    private ChunkWrite storeChunk(String digest, byte[] buffer, int length, boolean compress) throws IOException {
+        if (blobRepository.existsById(digest)) {
+            return new ChunkWrite(ContentCodec.IDENTITY, 0, false);
+        }
+        ContentCodec codec = compress
+                ? compressionPolicy.choose(buffer, Math.min(length, compressionPolicy.probeSize()))
+                : ContentCodec.IDENTITY;
+        String storageKey;
+        try (BlobWriter writer = blobStore.newWriter()) {
+            try (OutputStream encoder = codec.encode(writer)) {
+                encoder.write(buffer, 0, length);
+            }
+            storageKey = writer.commit();
+        }
+        long storedSize = codec == ContentCodec.IDENTITY ? length : blobStore.size(storageKey);
+        if (!register(digest, storageKey, length, codec, storedSize)) {
+            // Another upload wrote the same chunk first
+            deleteQuietly(storageKey);
+            return new ChunkWrite(codec, 0, false);
+        }
+        return new ChunkWrite(codec, storedSize, true);
+    }
+
+    /**
+     * Inserts a chunked blob without references together with its manifest, taking the
+     * references of the manifest to its chunks.
+     *
+     * @return false if a row with the same digest already existed
+     */
+    private boolean registerManifest(String digest, long size, List<BlobChunkEntity> manifest) {
+        // The bytes belong to the chunks
+        if (blobRepository.register(digest, digest, size, ContentCodec.CHUNKED.name(), 0, LocalDateTime.now()) == 0) {
+            return false;
+        }
+        blobChunkRepository.saveAll(manifest);
+        Map<String, Long> references = manifest.stream()
+                .collect(Collectors.groupingBy(BlobChunkEntity::getChunkDigest, Collectors.counting()));
+        references.forEach((chunk, count) -> {
+            if (blobRepository.acquire(chunk, count) != 1) {
+                throw new IllegalStateException("Chunk disappeared while being registered: " + chunk);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Deletes bytes written for a new blob row if the transaction inserting it rolls back,
+     * as nothing else would ever find them.
+     */
+    private void deleteOnRollback(String storageKey) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    deleteQuietly(storageKey);
+                }
+            }
+        });
+    }
+
+    private void deleteQuietly(String storageKey) {
+        try {
+            blobStore.delete(storageKey);
+        } catch (IOException e) {
+            log.warn("Failed to delete blob: {}", storageKey, e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Outcome of storing one chunk.
+     *
+     * @param storedSize bytes written to the store, 0 unless written
+     * @param written    false if the chunk was already stored
+     */
+    private record ChunkWrite(ContentCodec codec, long storedSize, boolean written) { }
+}
@@ -0,0 +1,289 @@
+package zw.co.isusu.fileservice.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+import zw.co.isusu.fileservice.cache.FileMetadataCache;
+import zw.co.isusu.fileservice.config.CatalogProperties;
+import zw.co.isusu.fileservice.domain.FileEntity;
+import zw.co.isusu.fileservice.service.CatalogService;
+import zw.co.isusu.fileservice.service.request.BulkMetadataUpdate;
+import zw.co.isusu.fileservice.service.response.CatalogEntry;
+import zw.co.isusu.fileservice.service.response.MetadataUpdateResult;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Service implementation reading and changing file metadata in bulk with plain JDBC, bypassing
+ * the persistence context.
+ * <p>
+ * The export runs one query in a read-only transaction, so PostgreSQL serves it from a
+ * server-side cursor, a fetch size of rows at a time, and every line comes from the same
+ * snapshot. Tags are aggregated per row in the same query.
+ * <p>
+ * Bulk updates are applied in chunks, each one transaction with its statements sent as JDBC
+ * batches. A row is only updated while its version still matches the one the item was based
+ * on, the same check JPA makes against {@code BaseEntity.version};
+ * items that matched no row are then told apart as conflicts or missing files with one query.
+ */
+@Slf4j
+@Service
+public class CatalogServiceImpl implements CatalogService {
+
+    private static final String EXPORT_SQL = """
+            select f.file_id, f.file_name, f.file_type, f.size_bytes, f.content_hash, f.version, f.created_at, f.updated_at,
+                   array(select t.tag from file_tags t where t.file_id = f.id order by t.tag) as tags
+            from files f
+            where f.deleted = false
+            order by f.created_at, f.file_id
+            """;
+    private static final String UPDATE_SQL = """
+            update files
+            set file_name = coalesce(?, file_name), updated_at = ?, version = version + 1
+            where file_id = ? and version = ? and deleted = false
+            """;
+    private static final String DELETE_TAGS_SQL = "delete from file_tags where file_id = (select id from files where file_id = ?)";
+    private static final String INSERT_TAG_SQL = "insert into file_tags (file_id, tag) select id, ? from files where file_id = ?";
+    private static final String VERSIONS_SQL = "select file_id, version from files where deleted = false and file_id = any(?)";
+    private static final int MAX_FILE_NAME_LENGTH = 255;
+    private static final int MAX_TAG_LENGTH = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FileMetadataCache metadataCache;
+    private final ObjectMapper objectMapper;
+    private final CatalogProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTemplate;
+
+    public CatalogServiceImpl(JdbcTemplate jdbcTemplate,
+                              FileMetadataCache metadataCache,
+                              ObjectMapper objectMapper,
+                              CatalogProperties properties,
+                              PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.metadataCache = metadataCache;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+    }
+
+    @Override
+    public void exportCatalog(OutputStream out) throws IOException {
+        BufferedOutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+        long[] exported = {0};
+        try {
+            readOnlyTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(EXPORT_SQL);
+                statement.setFetchSize(properties.exportFetchSize());
+                return statement;
+            }, (RowCallbackHandler) row -> {
+                CatalogEntry entry = new CatalogEntry(
+                        row.getObject("file_id", UUID.class),
+                        row.getString("file_name"),
+                        row.getString("file_type"),
+                        row.getLong("size_bytes"),
+                        row.getString("content_hash"),
+                        row.getInt("version"),
+                        Arrays.asList((String[]) row.getArray("tags").getArray()),
+                        row.getObject("created_at", LocalDateTime.class),
+                        row.getObject("updated_at", LocalDateTime.class));
+                try {
+                    buffered.write(objectMapper.writeValueAsBytes(entry));
+                    buffered.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                exported[0]++;
+            }));
+        } catch (UncheckedIOException e) {
+            // The client went away; the cursor is closed with the transaction
+            throw e.getCause();
+        }
+        buffered.flush();
+        log.debug("Exported {} catalog entries", exported[0]);
+    }
+
+    @Override
+    public List<MetadataUpdateResult> updateMetadata(List<BulkMetadataUpdate> updates) {
+        if (updates == null || updates.isEmpty()) {
+            throw new IllegalArgumentException("No updates provided");
+        }
+        if (updates.size() > properties.maxUpdateItems()) {
+            throw new IllegalArgumentException("A bulk update may contain at most " + properties.maxUpdateItems() + " items");
+        }
+
+        MetadataUpdateResult[] results = new MetadataUpdateResult[updates.size()];
+        List<Change> changes = new ArrayList<>();
+        Set<UUID> seen = new HashSet<>();
+        for (int i = 0; i < updates.size(); i++) {
+            BulkMetadataUpdate update = updates.get(i);
+            String error = validate(update);
+            if (error == null && !seen.add(update.fileId())) {
+                error = "File appears more than once in the request";
+            }
+            if (error != null) {
+                results[i] = MetadataUpdateResult.invalid(update.fileId(), error);
+                continue;
+            }
+            changes.add(Change.of(i, update));
+        }
+
+        for (int from = 0; from < changes.size(); from += properties.updateBatchSize()) {
+            List<Change> chunk = changes.subList(from, Math.min(from + properties.updateBatchSize(), changes.size()));
+            List<UUID> updated;
+            try {
+                updated = transactionTemplate.execute(status -> apply(chunk, results));
+            } catch (DataAccessException | TransactionException e) {
+                log.error("Failed to apply a chunk of {} metadata updates", chunk.size(), e);
+                chunk.forEach(change -> results[change.index()] = MetadataUpdateResult.failed(change.fileId()));
+                continue;
+            }
+            // Only once committed, so a concurrent reader cannot cache the old rows again
+            updated.forEach(metadataCache::evict);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * @return the files updated
+     */
+    private List<UUID> apply(List<Change> chunk, MetadataUpdateResult[] results) {
+        LocalDateTime now = LocalDateTime.now();
+        int[] counts = jdbcTemplate.batchUpdate(UPDATE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                Change change = chunk.get(i);
+                statement.setString(1, change.fileName());
+                statement.setObject(2, now);
+                statement.setObject(3, change.fileId());
+                statement.setInt(4, change.version());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return chunk.size();
+            }
+        });
+
+        List<Change> applied = new ArrayList<>();
+        List<Change> missed = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                applied.add(chunk.get(i));
+            } else {
+                missed.add(chunk.get(i));
+            }
+        }
+        replaceTags(applied.stream().filter(change -> change.tags() != null).toList());
+
+        for (Change change : applied) {
+            results[change.index()] = MetadataUpdateResult.updated(change.fileId(), change.version() + 1);
+        }
+        Map<UUID, Integer> currentVersions = currentVersions(missed);
+        for (Change change : missed) {
+            Integer current = currentVersions.get(change.fileId());
+            results[change.index()] = current == null
+                    ? MetadataUpdateResult.notFound(change.fileId())
+                    : MetadataUpdateResult.conflict(change.fileId(), current);
+        }
+        return applied.stream().map(Change::fileId).toList();
+    }
+
+    private void replaceTags(List<Change> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(DELETE_TAGS_SQL, changes, properties.updateBatchSize(),
+                (statement, change) -> statement.setObject(1, change.fileId()));
+        List<Map.Entry<UUID, String>> tags = changes.stream()
+                .flatMap(change -> change.tags().stream().map(tag -> Map.entry(change.fileId(), tag)))
+                .toList();
+        jdbcTemplate.batchUpdate(INSERT_TAG_SQL, tags, properties.updateBatchSize(), (statement, tag) -> {
+            statement.setString(1, tag.getValue());
+            statement.setObject(2, tag.getKey());
+        });
+    }
+
+    private Map<UUID, Integer> currentVersions(List<Change> changes) {
+        Map<UUID, Integer> versions = new HashMap<>();
+        if (changes.isEmpty()) {
+            return versions;
+        }
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(VERSIONS_SQL);
+            statement.setArray(1, connection.createArrayOf("uuid", changes.stream().map(Change::fileId).toArray()));
+            return statement;
+        }, (RowCallbackHandler) row -> versions.put(row.getObject("file_id", UUID.class), row.getInt("version")));
+        return versions;
+    }
+
+    /**
+     * Why an item cannot be applied, or null if it can.
+     */
+    private static String validate(BulkMetadataUpdate update) {
+        if (update.fileId() == null) {
+            return "File ID is required";
+        }
+        if (update.version() == null) {
+            return "Version is required";
+        }
+        boolean rename = update.fileName() != null && !update.fileName().isBlank();
+        if (!rename && update.tags() == null) {
+            return "Nothing to update";
+        }
+        if (rename && update.fileName().length() > MAX_FILE_NAME_LENGTH) {
+            return "File name is longer than " + MAX_FILE_NAME_LENGTH + " characters";
+        }
+        if (update.tags() != null && update.tags().stream()
+                .map(FileEntity::normalizeTag)
+                .anyMatch(tag -> tag != null && tag.length() > MAX_TAG_LENGTH)) {
+            return "Tags may be at most " + MAX_TAG_LENGTH + " characters long";
+        }
+        return null;
+    }
+
+    /**
+     * A validated item and its position in the request.
+     *
+     * @param fileName the new name, or null to keep it
+     * @param tags     the normalised new tags, or null to keep them
+     */
+    private record Change(int index, UUID fileId, int version, String fileName, Set<String> tags) {
+
+        static Change of(int index, BulkMetadataUpdate update) {
+            String fileName = update.fileName() == null || update.fileName().isBlank() ? null : update.fileName();
+            Set<String> tags = update.tags() == null ? null : update.tags().stream()
+                    .map(FileEntity::normalizeTag)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+            return new Change(index, update.fileId(), update.version(), fileName, tags);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package zw.co.isusu.fileservice.service.impl;
+
+import zw.co.isusu.fileservice.persistence.projection.BlobChunkView;
+import zw.co.isusu.fileservice.storage.BlobSource;
+import zw.co.isusu.fileservice.storage.BlobStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Reassembles a chunked blob from its chunks while streaming.
+ * <p>
+ * The manifest is only loaded on the first read, keeping the source cheap to open for
+ * requests answered from metadata. Reads start at the chunk holding the requested position
+ * and open each following chunk only when the previous one is exhausted, so at most one
+ * chunk is open at a time. Transfers are delegated to the chunks, which keeps sendfile-style
+ * copies of stored chunks.
+ */
+final class ChunkedBlobSource implements BlobSource {
+
+    private final Supplier<List<BlobChunkView>> manifestLoader;
+    private final BlobStore blobStore;
+    private List<BlobChunkView> manifest;
+
+    ChunkedBlobSource(Supplier<List<BlobChunkView>> manifestLoader, BlobStore blobStore) {
+        this.manifestLoader = manifestLoader;
+        this.blobStore = blobStore;
+    }
+
+    @Override
+    public InputStream openStream(long position) throws IOException {
+        List<BlobChunkView> chunks = manifest();
+        int index = indexOf(chunks, position);
+        return new ChunkStream(chunks, index, position - (index < chunks.size() ? chunks.get(index).offsetBytes() : 0));
+    }
+
+    @Override
+    public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        List<BlobChunkView> chunks = manifest();
+        long remaining = count;
+        for (int i = indexOf(chunks, position); remaining > 0; i++) {
+            if (i >= chunks.size()) {
+                throw new IOException("Blob ended " + remaining + " bytes before the requested range");
+            }
+            BlobChunkView chunk = chunks.get(i);
+            long start = Math.max(0, position - chunk.offsetBytes());
+            long length = Math.min(chunk.sizeBytes() - start, remaining);
+            open(chunk).transferTo(start, length, target);
+            remaining -= length;
+        }
+    }
+
+    private List<BlobChunkView> manifest() {
+        if (manifest == null) {
+            manifest = manifestLoader.get();
+        }
+        return manifest;
+    }
+
+    private BlobSource open(BlobChunkView chunk) throws IOException {
+        return chunk.codec().decode(blobStore.open(chunk.storageKey()));
+    }
+
+    /**
+     * Index of the chunk holding the position, or the number of chunks when it is past the end.
+     */
+    private static int indexOf(List<BlobChunkView> chunks, long position) {
+        int low = 0;
+        int high = chunks.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            BlobChunkView chunk = chunks.get(mid);
+            if (position < chunk.offsetBytes()) {
+                high = mid - 1;
+            } else if (position >= chunk.offsetBytes() + chunk.sizeBytes()) {
+                low = mid + 1;
+            } else {
+                return mid;
+            }
+        }
+        return chunks.size();
+    }
+
+    private final class ChunkStream extends InputStream {
+
+        private final List<BlobChunkView> chunks;
+        private int index;
+        private long skip;
+        private InputStream current;
+
+        private ChunkStream(List<BlobChunkView> chunks, int index, long skip) {
+            this.chunks = chunks;
+            this.index = index;
+            this.skip = skip;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (index < chunks.size()) {
+                if (current == null) {
+                    current = open(chunks.get(index)).openStream(skip);
+                    skip = 0;
+                }
+                int read = current.read(buffer, offset, length);
+                if (read >= 0) {
+                    return read;
+                }
+                current.close();
+                current = null;
+                index++;
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() throws IOException {
+            index = chunks.size();
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        }
+    }
+}
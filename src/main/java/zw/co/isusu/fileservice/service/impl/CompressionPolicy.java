@@ -0,0 +1,71 @@
+package zw.co.isusu.fileservice.service.impl;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import zw.co.isusu.fileservice.config.CompressionProperties;
+import zw.co.isusu.fileservice.storage.ContentCodec;
+
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Chooses the codec a new blob is stored with, from its declared type and a
+ * fast test compression of its first bytes.
+ */
+@Component
+class CompressionPolicy {
+
+    private final CompressionProperties properties;
+    private final List<MediaType> skipTypes;
+
+    CompressionPolicy(CompressionProperties properties) {
+        this.properties = properties;
+        this.skipTypes = properties.skipTypes().stream().map(MediaType::parseMediaType).toList();
+    }
+
+    /**
+     * Whether contents of this type should be probed at all.
+     */
+    boolean eligible(String fileType) {
+        if (!properties.enabled()) {
+            return false;
+        }
+        if (fileType == null) {
+            return true;
+        }
+        try {
+            MediaType type = MediaType.parseMediaType(fileType);
+            return skipTypes.stream().noneMatch(pattern -> pattern.includes(type));
+        } catch (InvalidMediaTypeException e) {
+            return true;
+        }
+    }
+
+    int probeSize() {
+        return (int) properties.probeSize().toBytes();
+    }
+
+    /**
+     * Picks a codec from the leading bytes of the contents. A sample shorter than the probe
+     * size is the whole blob.
+     */
+    ContentCodec choose(byte[] sample, int length) {
+        if (length < properties.probeSize().toBytes() && length < properties.minSize().toBytes()) {
+            return ContentCodec.IDENTITY;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(sample, 0, length);
+            deflater.finish();
+            byte[] buffer = new byte[8 * 1024];
+            long compressed = 0;
+            while (!deflater.finished()) {
+                compressed += deflater.deflate(buffer);
+            }
+            return compressed <= length * properties.maxRatio() ? ContentCodec.GZIP : ContentCodec.IDENTITY;
+        } finally {
+            deflater.end();
+        }
+    }
+}
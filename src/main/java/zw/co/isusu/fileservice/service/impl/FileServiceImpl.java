@@ -4,25 +4,68 @@ import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.tomcat.util.http.fileupload.FileUploadException;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import zw.co.isusu.fileservice.cache.BlobCache;
+import zw.co.isusu.fileservice.cache.FileMetadataCache;
+import zw.co.isusu.fileservice.config.VersioningProperties;
 import zw.co.isusu.fileservice.domain.FileEntity;
+import zw.co.isusu.fileservice.domain.FileVersionEntity;
+import zw.co.isusu.fileservice.inspection.Inspection;
+import zw.co.isusu.fileservice.inspection.InspectionPipeline;
+import zw.co.isusu.fileservice.inspection.UploadContext;
+import zw.co.isusu.fileservice.inspection.UploadRejectedException;
+import zw.co.isusu.fileservice.metrics.FileMetrics;
 import zw.co.isusu.fileservice.persistence.FileRepository;
+import zw.co.isusu.fileservice.persistence.FileSearchCriteria;
+import zw.co.isusu.fileservice.persistence.FileVersionRepository;
+import zw.co.isusu.fileservice.persistence.projection.FileBlobRef;
+import zw.co.isusu.fileservice.persistence.projection.FileContentView;
+import zw.co.isusu.fileservice.persistence.projection.FileMetadata;
+import zw.co.isusu.fileservice.persistence.projection.FileSummary;
+import zw.co.isusu.fileservice.persistence.projection.RenditionView;
+import zw.co.isusu.fileservice.service.BlobService;
+import zw.co.isusu.fileservice.service.BlobService.StoredBlob;
 import zw.co.isusu.fileservice.service.FileService;
+import zw.co.isusu.fileservice.service.RenditionService;
+import zw.co.isusu.fileservice.service.event.FileContentStoredEvent;
 import zw.co.isusu.fileservice.service.exception.FileNotFoundException;
+import zw.co.isusu.fileservice.service.request.FileCursor;
+import zw.co.isusu.fileservice.service.request.FileSearchRequest;
 import zw.co.isusu.fileservice.service.request.FileUploadRequest;
+import zw.co.isusu.fileservice.service.request.TagMatch;
 import zw.co.isusu.fileservice.service.request.UpdateFileMetadataRequest;
 import zw.co.isusu.fileservice.service.response.FileDetailsResponse;
 import zw.co.isusu.fileservice.service.response.FileDownloadResponse;
+import zw.co.isusu.fileservice.service.response.FileDownloadResponse.EncodedContent;
+import zw.co.isusu.fileservice.service.response.FileListResponse;
 import zw.co.isusu.fileservice.service.response.FileUploadResponse;
+import zw.co.isusu.fileservice.service.response.FileUploadResult;
+import zw.co.isusu.fileservice.service.response.FileVersionResponse;
+import zw.co.isusu.fileservice.signing.DownloadLinkRevocations;
+import zw.co.isusu.fileservice.signing.DownloadLinkSigner;
+import zw.co.isusu.fileservice.signing.InvalidDownloadLinkException;
+import zw.co.isusu.fileservice.signing.SignedDownload;
+import zw.co.isusu.fileservice.signing.SignedDownloadLink;
+
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 /**
  * Service implementation for managing files.
@@ -34,24 +77,42 @@ import java.util.UUID;
 public class FileServiceImpl implements FileService {
 
     private final FileRepository fileRepository;
+    private final FileVersionRepository fileVersionRepository;
+    private final BlobService blobService;
+    private final BlobCache blobCache;
+    private final FileMetadataCache metadataCache;
+    private final ParallelBlobWriter parallelBlobWriter;
+    private final InspectionPipeline inspectionPipeline;
+    private final RenditionService renditionService;
+    private final DownloadLinkSigner downloadLinkSigner;
+    private final DownloadLinkRevocations downloadLinkRevocations;
+    private final ApplicationEventPublisher eventPublisher;
+    private final FileMetrics fileMetrics;
+    private final VersioningProperties versioningProperties;
 
     @Override
-    public FileUploadResponse uploadFile(FileUploadRequest request) throws FileUploadException {
-        log.info("Uploading file: {}", request.fileName());
+    public FileUploadResponse uploadFile(FileUploadRequest request) throws FileUploadException, UploadRejectedException {
+        log.debug("Uploading file: {}", request.fileName());
         try {
+            UploadContext upload = new UploadContext(request.fileName(), request.fileType(), -1, request.checksum());
+            Inspection inspection = inspectionPipeline.begin(upload);
+            StoredBlob blob = blobService.store(inspection.wrap(request.content()), request.fileType(), upload.declaredSha256());
             FileEntity fileEntity = new FileEntity();
             fileEntity.setFileName(request.fileName());
-            fileEntity.setFileType(request.fileType());
-            fileEntity.setData(request.data());
+            fileEntity.setFileType(inspection.report().fileType(request.fileType()));
+            applyContent(fileEntity, blob);
 
             FileEntity savedFile = fileRepository.save(fileEntity);
+            publishContentStored(savedFile);
 
-            log.info("File uploaded successfully: {}", savedFile.getFileName());
+            log.debug("File uploaded successfully: {}", savedFile.getFileName());
             return new FileUploadResponse(
                     savedFile.getFileId(),
                     savedFile.getFileName(),
                     savedFile.getFileType()
             );
+        } catch (UploadRejectedException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error uploading file: {}", request.fileName(), e);
             throw new FileUploadException("Failed to upload file", e);
@@ -60,113 +121,222 @@ public class FileServiceImpl implements FileService {
 
     @Override
     public FileDownloadResponse downloadFile(UUID id) throws FileNotFoundException {
-        log.info("Downloading file with ID: {}", id);
-        FileEntity fileEntity = fileRepository.findByFileIdAndDeletedFalse(id)
+        log.debug("Downloading file with ID: {}", id);
+        FileContentView file = metadataCache.get(id).map(FileMetadata::content)
                 .orElseThrow(() -> new FileNotFoundException("File not found with id: " + id));
+        log.debug("File downloaded successfully: {}", file.fileName());
+        return toDownloadResponse(file);
+    }
 
-        log.info("File downloaded successfully: {}", fileEntity.getFileName());
-        return new FileDownloadResponse(
-                fileEntity.getFileId(),
-                fileEntity.getFileName(),
-                fileEntity.getFileType(),
-                fileEntity.getData()
-        );
+    @Override
+    public SignedDownloadLink createDownloadLink(UUID fileId, Duration ttl) throws FileNotFoundException {
+        log.debug("Creating download link for file with ID: {}", fileId);
+        FileContentView file = metadataCache.get(fileId).map(FileMetadata::content)
+                .orElseThrow(() -> new FileNotFoundException("File not found with id: " + fileId));
+        return downloadLinkSigner.sign(file, ttl);
     }
 
+    /**
+     * Streams what the link carries, outside of any transaction. Only links to files changed
+     * since they were issued, or whose blob moved, are checked against the current metadata:
+     * the current contents are served if they are still the ones the link was issued for.
+     */
     @Override
-    public void deleteFile(UUID fileId) throws FileNotFoundException {
-        log.info("Deleting file with ID: {}", fileId);
-        FileEntity fileEntity = fileRepository.findByFileIdAndDeletedFalse(fileId)
-                .orElseThrow(() -> new FileNotFoundException("File not found or already deleted"));
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public FileDownloadResponse downloadSigned(String token) throws FileNotFoundException, InvalidDownloadLinkException {
+        SignedDownload link = downloadLinkSigner.verify(token);
+        FileContentView file = link.content();
+        log.debug("Downloading file with ID: {} through a signed link", file.fileId());
+        boolean checked = downloadLinkRevocations.isRevoked(file.fileId(), link.issuedAt());
+        if (checked) {
+            file = currentContent(file);
+        }
+        try {
+            return toDownloadResponse(file);
+        } catch (UncheckedIOException e) {
+            if (checked || !(e.getCause() instanceof NoSuchFileException)) {
+                throw e;
+            }
+            return toDownloadResponse(currentContent(file));
+        }
+    }
 
-        fileEntity.setDeleted(true);
-        fileRepository.save(fileEntity);
+    /**
+     * The live file a link was issued for, provided its contents did not change.
+     */
+    private FileContentView currentContent(FileContentView linked) throws FileNotFoundException {
+        return metadataCache.get(linked.fileId())
+                .map(FileMetadata::content)
+                .filter(current -> current.contentHash().equals(linked.contentHash()))
+                .orElseThrow(() -> new FileNotFoundException("File not found with id: " + linked.fileId()));
+    }
 
-        log.info("File deleted successfully with ID: {}", fileId);
+    @Override
+    public void deleteFile(UUID fileId) throws FileNotFoundException {
+        log.debug("Deleting file with ID: {}", fileId);
+        if (softDelete(List.of(fileId)) == 0) {
+            throw new FileNotFoundException("File not found or already deleted");
+        }
+
+        log.debug("File deleted successfully with ID: {}", fileId);
     }
 
     @Override
     public FileDetailsResponse getFileById(UUID fileId) throws FileNotFoundException {
-        log.info("Fetching file details for ID: {}", fileId);
-        FileEntity fileEntity = fileRepository.findByFileIdAndDeletedFalse(fileId)
+        log.debug("Fetching file details for ID: {}", fileId);
+        FileSummary summary = metadataCache.get(fileId).map(FileMetadata::summary)
                 .orElseThrow(() -> new FileNotFoundException("File not found with ID: " + fileId));
 
-        log.info("File details retrieved for ID: {}", fileId);
-        return new FileDetailsResponse(
-                fileEntity.getFileId(),
-                fileEntity.getFileName(),
-                fileEntity.getFileType(),
-                fileEntity.getData().length,
-                fileEntity.getCreatedAt(),
-                fileEntity.getUpdatedAt()
-        );
+        log.debug("File details retrieved for ID: {}", fileId);
+        return toDetailsResponse(summary);
     }
 
+    /**
+     * Stores the blobs in parallel, then inserts the metadata of every stored file in one
+     * batched transaction. If the batch fails, rows are retried one at a time so a single bad
+     * file only fails itself; blobs whose metadata could not be saved are released again.
+     */
     @Override
-    public List<FileUploadResponse> uploadFiles(List<MultipartFile> files) throws IOException {
-        log.info("Uploading multiple files, total count: {}", files.size());
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public List<FileUploadResult> uploadFiles(List<MultipartFile> files) {
+        log.debug("Uploading multiple files, total count: {}", files.size());
         if (files.isEmpty()) {
             log.error("No files provided for upload");
             throw new IllegalArgumentException("No files provided for upload");
         }
 
+        List<ParallelBlobWriter.Outcome> outcomes = parallelBlobWriter.storeAll(files);
+        FileUploadResult[] results = new FileUploadResult[files.size()];
         List<FileEntity> fileEntities = new ArrayList<>();
-        for (MultipartFile file : files) {
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            MultipartFile file = files.get(i);
+            ParallelBlobWriter.Outcome outcome = outcomes.get(i);
+            if (outcome.error() != null) {
+                String error = outcome.error() instanceof UploadRejectedException rejected
+                        ? rejected.getMessage()
+                        : "Failed to store file contents";
+                results[i] = FileUploadResult.failed(file.getOriginalFilename(), file.getContentType(), error);
+                continue;
+            }
             FileEntity fileEntity = new FileEntity();
             fileEntity.setFileName(file.getOriginalFilename());
-            fileEntity.setFileType(file.getContentType());
-            fileEntity.setData(file.getBytes());
+            fileEntity.setFileType(outcome.report().fileType(file.getContentType()));
+            applyContent(fileEntity, outcome.blob());
             fileEntities.add(fileEntity);
+            positions.add(i);
         }
 
-        List<FileEntity> savedFiles = fileRepository.saveAll(fileEntities);
+        List<FileEntity> savedFiles = saveBatch(fileEntities);
+        for (int j = 0; j < fileEntities.size(); j++) {
+            FileEntity fileEntity = fileEntities.get(j);
+            int position = positions.get(j);
+            if (savedFiles.contains(fileEntity)) {
+                publishContentStored(fileEntity);
+                results[position] = FileUploadResult.uploaded(fileEntity.getFileId(), fileEntity.getFileName(), fileEntity.getFileType());
+            } else {
+                blobService.release(fileEntity.getContentHash());
+                results[position] = FileUploadResult.failed(fileEntity.getFileName(), fileEntity.getFileType(), "Failed to save file metadata");
+            }
+        }
 
-        log.info("Successfully uploaded {} files", savedFiles.size());
-        return savedFiles.stream()
-                .map(savedFile -> new FileUploadResponse(
-                        savedFile.getFileId(),
-                        savedFile.getFileName(),
-                        savedFile.getFileType()
-                ))
-                .toList();
+        log.debug("Uploaded {} of {} files", savedFiles.size(), files.size());
+        return List.of(results);
+    }
+
+    private List<FileEntity> saveBatch(List<FileEntity> fileEntities) {
+        if (fileEntities.isEmpty()) {
+            return List.of();
+        }
+        try {
+            fileRepository.saveAll(fileEntities);
+            return fileEntities;
+        } catch (DataAccessException e) {
+            log.warn("Batch insert of {} files failed, retrying one at a time", fileEntities.size(), e);
+        }
+        List<FileEntity> saved = new ArrayList<>();
+        for (FileEntity fileEntity : fileEntities) {
+            try {
+                fileEntity.setId(null);
+                saved.add(fileRepository.save(fileEntity));
+            } catch (DataAccessException e) {
+                log.warn("Failed to save metadata of file: {}", fileEntity.getFileName(), e);
+            }
+        }
+        return saved;
     }
 
     @Override
-    public Page<FileDetailsResponse> listFiles(int page, int size) {
-        log.info("Listing files, page: {}, size: {}", page, size);
-        Pageable pageable = PageRequest.of(page, size);
-        Page<FileEntity> filePage = fileRepository.findAllByDeletedFalse(pageable);
+    public FileListResponse listFiles(String cursor, int size) {
+        log.debug("Listing files, cursor: {}, size: {}", cursor, size);
+        // Fetch one extra row to learn whether another page follows, without a COUNT query
+        Limit limit = Limit.of(size + 1);
+        List<FileSummary> summaries;
+        if (cursor == null || cursor.isBlank()) {
+            summaries = fileRepository.findFirstSummaries(limit);
+        } else {
+            FileCursor position = FileCursor.decode(cursor);
+            summaries = fileRepository.findSummariesAfter(position.createdAt(), position.fileId(), limit);
+        }
 
-        log.info("Retrieved {} files", filePage.getTotalElements());
-        return filePage.map(file -> new FileDetailsResponse(
-                file.getFileId(),
-                file.getFileName(),
-                file.getFileType(),
-                file.getData().length,
-                file.getCreatedAt(),
-                file.getUpdatedAt()
-        ));
+        FileListResponse page = toPage(summaries, size);
+        log.debug("Retrieved {} files", page.files().size());
+        return page;
+    }
+
+    @Override
+    public FileListResponse searchFiles(FileSearchRequest request, String cursor, int size) {
+        log.debug("Searching files, tags: {}, match: {}, name prefix: {}, type: {}",
+                request.tags(), request.match(), request.namePrefix(), request.fileType());
+        List<String> tags = request.tags() == null ? List.of() : request.tags().stream()
+                .map(FileEntity::normalizeTag)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        FileCursor position = cursor == null || cursor.isBlank() ? null : FileCursor.decode(cursor);
+        FileSearchCriteria criteria = new FileSearchCriteria(
+                tags,
+                request.match() != TagMatch.ANY,
+                request.namePrefix(),
+                request.fileType(),
+                position == null ? null : position.createdAt(),
+                position == null ? null : position.fileId()
+        );
+
+        FileListResponse page = toPage(fileRepository.search(criteria, size + 1), size);
+        log.debug("Found {} files", page.files().size());
+        return page;
+    }
+
+    /**
+     * Trims the extra row fetched beyond the page size, turning it into the cursor of the next page.
+     */
+    private FileListResponse toPage(List<FileSummary> summaries, int size) {
+        String nextCursor = null;
+        if (summaries.size() > size) {
+            summaries = summaries.subList(0, size);
+            FileSummary last = summaries.get(size - 1);
+            nextCursor = new FileCursor(last.createdAt(), last.fileId()).encode();
+        }
+        return new FileListResponse(summaries.stream().map(this::toDetailsResponse).toList(), nextCursor);
     }
 
     @Override
     public void deleteFiles(List<UUID> fileIds) throws FileNotFoundException {
-        log.info("Deleting multiple files, total count: {}", fileIds.size());
-        List<FileEntity> files = fileRepository.findAllByFileIdInAndDeletedFalse(fileIds);
+        log.debug("Deleting multiple files, total count: {}", fileIds.size());
+        int deleted = softDelete(fileIds);
 
-        if (files.isEmpty()) {
+        if (deleted == 0) {
             log.error("No valid files found for the provided IDs");
             throw new FileNotFoundException("No valid files found for the provided IDs");
         }
 
-        files.forEach(file -> file.setDeleted(true));
-        fileRepository.saveAll(files);
-
-        log.info("Successfully deleted {} files", files.size());
+        log.debug("Successfully deleted {} files", deleted);
     }
 
     @Override
     public FileDetailsResponse updateMetadata(UUID fileId, UpdateFileMetadataRequest request) {
-        log.info("Updating metadata for file ID: {}", fileId);
+        log.debug("Updating metadata for file ID: {}", fileId);
         FileEntity file = fileRepository.findByFileIdAndDeletedFalse(fileId)
                 .orElseThrow(() -> new IllegalArgumentException("File not found or already deleted"));
 
@@ -175,36 +345,59 @@ public class FileServiceImpl implements FileService {
         }
 
         if (request.tags() != null) {
-            file.setTags(String.join(",", request.tags()));
+            Set<String> tags = request.tags().stream()
+                    .map(FileEntity::normalizeTag)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+            file.getTags().clear();
+            file.getTags().addAll(tags);
         }
 
-        fileRepository.save(file);
+        fileRepository.saveAndFlush(file);
+        metadataCache.evict(fileId);
 
-        log.info("Metadata updated successfully for file ID: {}", fileId);
+        log.debug("Metadata updated successfully for file ID: {}", fileId);
         return new FileDetailsResponse(
                 file.getFileId(),
                 file.getFileName(),
                 file.getFileType(),
-                file.getData().length,
+                file.getSizeBytes(),
+                file.getContentHash(),
+                file.getVersion(),
                 file.getCreatedAt(),
                 file.getUpdatedAt()
         );
     }
 
+    /**
+     * Stores the new contents, chunked when large enough so that unchanged parts of an
+     * edited file are not written again, and keeps the previous contents as a version.
+     */
     @Override
     public FileUploadResponse replaceFile(UUID fileId, MultipartFile file) throws IOException {
-        log.info("Replacing file with ID: {}", fileId);
+        log.debug("Replacing file with ID: {}", fileId);
         FileEntity existingFile = fileRepository.findByFileIdAndDeletedFalse(fileId)
                 .orElseThrow(() -> new IllegalArgumentException("File not found"));
 
+        Inspection inspection = inspectionPipeline.begin(
+                new UploadContext(file.getOriginalFilename(), file.getContentType(), file.getSize()));
+        boolean chunked = versioningProperties.chunkingEnabled()
+                && file.getSize() >= versioningProperties.chunkingMinSize().toBytes();
+        StoredBlob blob = chunked
+                ? blobService.storeChunked(inspection.wrap(file.getInputStream()), file.getContentType())
+                : blobService.store(inspection.wrap(file.getInputStream()), file.getContentType());
+        keepVersion(existingFile);
         existingFile.setFileName(file.getOriginalFilename());
-        existingFile.setFileType(file.getContentType());
-        existingFile.setData(file.getBytes());
+        existingFile.setFileType(inspection.report().fileType(file.getContentType()));
+        applyContent(existingFile, blob);
         existingFile.setUpdatedAt(LocalDateTime.now());
 
         fileRepository.save(existingFile);
+        publishContentStored(existingFile);
+        blobCache.invalidate(fileId);
+        metadataCache.evict(fileId);
 
-        log.info("File replaced successfully with ID: {}", fileId);
+        log.debug("File replaced successfully with ID: {}", fileId);
         return new FileUploadResponse(
                 existingFile.getFileId(),
                 existingFile.getFileName(),
@@ -213,12 +406,194 @@ public class FileServiceImpl implements FileService {
     }
 
     @Override
-    public FileDownloadResponse previewFile(UUID fileId) {
-        log.info("Previewing file with ID: {}", fileId);
+    public List<FileVersionResponse> listVersions(UUID fileId) throws FileNotFoundException {
+        log.debug("Listing versions of file with ID: {}", fileId);
+        if (metadataCache.get(fileId).isEmpty()) {
+            throw new FileNotFoundException("File not found with ID: " + fileId);
+        }
+        return fileVersionRepository.findByFileIdOrderByFileVersionDesc(fileId).stream()
+                .map(version -> new FileVersionResponse(
+                        version.getFileVersion(),
+                        version.getFileName(),
+                        version.getFileType(),
+                        version.getSizeBytes(),
+                        version.getContentHash(),
+                        version.getStoredAt(),
+                        version.getCreatedAt()))
+                .toList();
+    }
+
+    @Override
+    public FileDownloadResponse downloadVersion(UUID fileId, int version) throws FileNotFoundException {
+        log.debug("Downloading version {} of file with ID: {}", version, fileId);
+        FileContentView file = fileVersionRepository.findContent(fileId, version)
+                .orElseThrow(() -> new FileNotFoundException("Version " + version + " not found for file with ID: " + fileId));
+        return toDownloadResponse(file);
+    }
+
+    @Override
+    public FileUploadResponse restoreVersion(UUID fileId, int version) throws FileNotFoundException {
+        log.debug("Restoring version {} of file with ID: {}", version, fileId);
         FileEntity file = fileRepository.findByFileIdAndDeletedFalse(fileId)
+                .orElseThrow(() -> new FileNotFoundException("File not found with ID: " + fileId));
+        FileVersionEntity restored = fileVersionRepository.findByFileIdAndFileVersion(fileId, version)
+                .orElseThrow(() -> new FileNotFoundException("Version " + version + " not found for file with ID: " + fileId));
+
+        // The version keeps its own reference, the file takes another one
+        blobService.retain(restored.getContentHash());
+        keepVersion(file);
+        file.setFileName(restored.getFileName());
+        file.setFileType(restored.getFileType());
+        file.setSizeBytes(restored.getSizeBytes());
+        file.setContentHash(restored.getContentHash());
+        file.setStoredAt(restored.getStoredAt());
+        file.setUpdatedAt(LocalDateTime.now());
+
+        fileRepository.save(file);
+        publishContentStored(file);
+        blobCache.invalidate(fileId);
+        metadataCache.evict(fileId);
+
+        log.debug("Version {} restored for file with ID: {}", version, fileId);
+        return new FileUploadResponse(file.getFileId(), file.getFileName(), file.getFileType());
+    }
+
+    /**
+     * Moves the current contents of a file into its history, handing over the file's blob
+     * reference, and trims the history to the configured number of versions.
+     */
+    private void keepVersion(FileEntity file) {
+        if (versioningProperties.maxVersions() <= 0) {
+            blobService.release(file.getContentHash());
+            return;
+        }
+        fileVersionRepository.save(FileVersionEntity.of(file));
+        List<FileVersionEntity> versions = fileVersionRepository.findByFileIdOrderByFileVersionDesc(file.getFileId());
+        if (versions.size() > versioningProperties.maxVersions()) {
+            List<FileVersionEntity> trimmed = versions.subList(versioningProperties.maxVersions(), versions.size());
+            fileVersionRepository.deleteAll(trimmed);
+            trimmed.forEach(version -> blobService.release(version.getContentHash()));
+        }
+    }
+
+    /**
+     * Serves a preview outside of any transaction, so no connection is held while a missing
+     * rendition is rendered, and the rendition can be stored in a transaction of its own.
+     */
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public FileDownloadResponse previewFile(UUID fileId, Integer size) {
+        log.debug("Previewing file with ID: {}", fileId);
+        FileContentView file = metadataCache.get(fileId).map(FileMetadata::content)
                 .orElseThrow(() -> new IllegalArgumentException("File not found"));
 
-        log.info("File previewed successfully with ID: {}", fileId);
-        return new FileDownloadResponse(file.getFileId(), file.getFileName(), file.getFileType(), file.getData());
+        if (renditionService.supports(file.fileType())) {
+            Optional<FileDownloadResponse> rendition = toRenditionResponse(file, renditionService.resolveSize(size));
+            if (rendition.isPresent()) {
+                log.debug("Rendition previewed successfully for file ID: {}", fileId);
+                return rendition.get();
+            }
+        }
+
+        log.debug("File previewed successfully with ID: {}", fileId);
+        return toDownloadResponse(file);
+    }
+
+    /**
+     * Soft deletes files with one UPDATE, without loading them, then releases their blobs.
+     *
+     * @return the number of files deleted
+     */
+    private int softDelete(Collection<UUID> fileIds) {
+        if (fileIds.isEmpty()) {
+            return 0;
+        }
+        // Stamp precision matches the column, so the follow-up query finds exactly these rows
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        if (fileRepository.softDeleteAll(fileIds, now) == 0) {
+            return 0;
+        }
+
+        List<FileBlobRef> deleted = fileRepository.findDeletedAt(fileIds, now);
+        deleted.stream()
+                .collect(Collectors.groupingBy(FileBlobRef::contentHash, Collectors.counting()))
+                .forEach(blobService::release);
+        deleted.forEach(file -> {
+            blobCache.invalidate(file.fileId());
+            metadataCache.evict(file.fileId());
+        });
+        return deleted.size();
+    }
+
+    private void publishContentStored(FileEntity file) {
+        eventPublisher.publishEvent(new FileContentStoredEvent(file.getFileId(), file.getContentHash(), file.getFileType()));
+    }
+
+    private void applyContent(FileEntity file, StoredBlob blob) {
+        fileMetrics.recordUpload(blob.sizeBytes());
+        file.setSizeBytes(blob.sizeBytes());
+        file.setContentHash(blob.digest());
+        file.setStoredAt(LocalDateTime.now());
+    }
+
+    private FileDownloadResponse toDownloadResponse(FileContentView file) {
+        try {
+            return new FileDownloadResponse(
+                    file.fileId(),
+                    file.fileName(),
+                    file.fileType(),
+                    file.sizeBytes(),
+                    file.contentHash(),
+                    file.updatedAt(),
+                    blobCache.wrap(file.fileId(), file.version(), file.sizeBytes(), blobService.open(file.storageKey(), file.codec())),
+                    toEncodedContent(file)
+            );
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open contents of file " + file.fileId(), e);
+        }
+    }
+
+    private EncodedContent toEncodedContent(FileContentView file) throws IOException {
+        if (file.codec().contentCoding() == null) {
+            return null;
+        }
+        return new EncodedContent(file.codec().contentCoding(), file.storedSizeBytes(), blobService.openStored(file.storageKey()));
+    }
+
+    private Optional<FileDownloadResponse> toRenditionResponse(FileContentView file, int maxDimension) {
+        try {
+            Optional<RenditionView> rendition = renditionService.findOrCreate(
+                    file.contentHash(), file.fileType(), blobService.open(file.storageKey(), file.codec()), maxDimension);
+            if (rendition.isEmpty()) {
+                return Optional.empty();
+            }
+            RenditionView view = rendition.get();
+            return Optional.of(new FileDownloadResponse(
+                    file.fileId(),
+                    file.fileName(),
+                    view.fileType(),
+                    view.sizeBytes(),
+                    view.contentHash(),
+                    file.updatedAt(),
+                    blobService.open(view.storageKey(), view.codec()),
+                    null
+            ));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open preview of file " + file.fileId(), e);
+        }
     }
+
+    private FileDetailsResponse toDetailsResponse(FileSummary summary) {
+        return new FileDetailsResponse(
+                summary.fileId(),
+                summary.fileName(),
+                summary.fileType(),
+                summary.sizeBytes(),
+                summary.contentHash(),
+                summary.version(),
+                summary.createdAt(),
+                summary.updatedAt()
+        );
+    }
+
 }
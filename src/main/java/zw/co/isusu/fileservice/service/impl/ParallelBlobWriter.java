@@ -0,0 +1,103 @@
+package zw.co.isusu.fileservice.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+import zw.co.isusu.fileservice.config.BatchUploadProperties;
+import zw.co.isusu.fileservice.config.IoThreads;
+import zw.co.isusu.fileservice.inspection.Inspection;
+import zw.co.isusu.fileservice.inspection.InspectionPipeline;
+import zw.co.isusu.fileservice.inspection.InspectionReport;
+import zw.co.isusu.fileservice.inspection.UploadContext;
+import zw.co.isusu.fileservice.service.BlobService;
+import zw.co.isusu.fileservice.service.BlobService.StoredBlob;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Writes the blobs of a multi-file upload in parallel on a shared worker pool.
+ * <p>
+ * A global budget, counted in kilobytes, bounds the bytes being written at once across all
+ * requests; the request thread waits for budget before handing the next file to a worker.
+ * Each blob is stored in its own transaction, so one failing file does not affect the others.
+ * Every file is inspected on its way to the store, rejections only failing that file.
+ */
+@Slf4j
+@Component
+class ParallelBlobWriter {
+
+    private static final long PERMIT_SIZE = 1024;
+
+    private final BlobService blobService;
+    private final InspectionPipeline inspectionPipeline;
+    private final ExecutorService executor;
+    private final Semaphore budget;
+    private final int totalPermits;
+
+    ParallelBlobWriter(BlobService blobService, InspectionPipeline inspectionPipeline,
+                       BatchUploadProperties properties, IoThreads ioThreads) {
+        this.blobService = blobService;
+        this.inspectionPipeline = inspectionPipeline;
+        this.totalPermits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, properties.maxInFlight().toBytes() / PERMIT_SIZE));
+        this.budget = new Semaphore(totalPermits, true);
+        this.executor = Executors.newFixedThreadPool(properties.workers(), ioThreads.factory("blob-writer-"));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Stores every file, returning one outcome per file in the same order.
+     */
+    List<Outcome> storeAll(List<MultipartFile> files) {
+        List<Future<Outcome>> pending = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            int permits = (int) Math.min(totalPermits, Math.max(1, file.getSize() / PERMIT_SIZE));
+            budget.acquireUninterruptibly(permits);
+            pending.add(executor.submit(() -> {
+                try {
+                    Inspection inspection = inspectionPipeline.begin(
+                            new UploadContext(file.getOriginalFilename(), file.getContentType(), file.getSize()));
+                    StoredBlob blob = blobService.store(inspection.wrap(file.getInputStream()), file.getContentType());
+                    return new Outcome(blob, inspection.report(), null);
+                } finally {
+                    budget.release(permits);
+                }
+            }));
+        }
+
+        // Every write is awaited, even when interrupted, so no stored blob goes unaccounted for
+        boolean interrupted = false;
+        List<Outcome> outcomes = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            while (outcomes.size() == i) {
+                try {
+                    outcomes.add(pending.get(i).get());
+                } catch (ExecutionException e) {
+                    log.warn("Failed to store file: {}", files.get(i).getOriginalFilename(), e.getCause());
+                    outcomes.add(new Outcome(null, null, e.getCause()));
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return outcomes;
+    }
+
+    /**
+     * The stored blob and what its inspection found, or the reason the file could not be stored.
+     */
+    record Outcome(StoredBlob blob, InspectionReport report, Throwable error) { }
+}
@@ -0,0 +1,240 @@
+package zw.co.isusu.fileservice.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import zw.co.isusu.fileservice.config.PurgeProperties;
+import zw.co.isusu.fileservice.domain.BlobEntity;
+import zw.co.isusu.fileservice.domain.FileEntity;
+import zw.co.isusu.fileservice.persistence.BlobChunkRepository;
+import zw.co.isusu.fileservice.persistence.BlobRepository;
+import zw.co.isusu.fileservice.persistence.FileRepository;
+import zw.co.isusu.fileservice.persistence.FileVersionRepository;
+import zw.co.isusu.fileservice.persistence.RenditionRepository;
+import zw.co.isusu.fileservice.service.BlobService;
+import zw.co.isusu.fileservice.service.PurgeService;
+import zw.co.isusu.fileservice.storage.BlobStore;
+import zw.co.isusu.fileservice.storage.ContentCodec;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Service implementation purging deleted files in throttled batches.
+ * <p>
+ * Soft deletes release their blob references straight away, so two kinds of garbage are
+ * left behind: soft-deleted file rows and blobs nobody references. Both are removed once
+ * they are older than the retention period. A blob row is only deleted while its reference
+ * count is still zero, which makes the purge safe against uploads that take a new reference
+ * to the same content, and against other instances purging at the same time. Its bytes are
+ * removed from the store after that delete has committed. Renditions of a purged blob are
+ * dropped with it; their own blobs become orphans and follow one retention period later.
+ * The same goes for the chunks of a purged chunked blob, which has no bytes of its own, and
+ * for the earlier versions of a purged file. File rows are locked before their versions are
+ * released, so two instances purging the same batch never release a version twice.
+ * <p>
+ * Progress is published as {@code file.purge.*} meters: counts of purged rows, blobs and
+ * bytes, the duration of each run and the backlog of purgeable blobs left after the last run.
+ */
+@Slf4j
+@Service
+public class PurgeServiceImpl implements PurgeService {
+
+    private final FileRepository fileRepository;
+    private final FileVersionRepository fileVersionRepository;
+    private final BlobRepository blobRepository;
+    private final BlobChunkRepository blobChunkRepository;
+    private final RenditionRepository renditionRepository;
+    private final BlobService blobService;
+    private final BlobStore blobStore;
+    private final PurgeProperties properties;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter purgedFiles;
+    private final Counter purgedBlobs;
+    private final Counter purgedBytes;
+    private final Counter failedBlobs;
+    private final Timer runTimer;
+    private final AtomicLong backlog = new AtomicLong();
+
+    public PurgeServiceImpl(FileRepository fileRepository,
+                            FileVersionRepository fileVersionRepository,
+                            BlobRepository blobRepository,
+                            BlobChunkRepository blobChunkRepository,
+                            RenditionRepository renditionRepository,
+                            BlobService blobService,
+                            BlobStore blobStore,
+                            PurgeProperties properties,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry) {
+        this.fileRepository = fileRepository;
+        this.fileVersionRepository = fileVersionRepository;
+        this.blobRepository = blobRepository;
+        this.blobChunkRepository = blobChunkRepository;
+        this.renditionRepository = renditionRepository;
+        this.blobService = blobService;
+        this.blobStore = blobStore;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.purgedFiles = Counter.builder("file.purge.files")
+                .description("Soft-deleted file rows removed")
+                .register(meterRegistry);
+        this.purgedBlobs = Counter.builder("file.purge.blobs")
+                .description("Unreferenced blobs removed")
+                .register(meterRegistry);
+        this.purgedBytes = Counter.builder("file.purge.bytes")
+                .description("Stored bytes reclaimed from removed blobs")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.failedBlobs = Counter.builder("file.purge.failures")
+                .description("Blobs whose stored bytes could not be removed")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("file.purge.duration")
+                .description("Duration of purge runs")
+                .register(meterRegistry);
+        Gauge.builder("file.purge.backlog", backlog, AtomicLong::get)
+                .description("Purgeable blobs left after the last run")
+                .register(meterRegistry);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${file-service.purge.interval:PT10M}", initialDelayString = "${file-service.purge.initial-delay:PT1M}")
+    public void purge() {
+        if (!properties.enabled()) {
+            return;
+        }
+        runTimer.record(() -> {
+            LocalDateTime cutoff = LocalDateTime.now().minus(properties.retention());
+            int files = purgeFiles(cutoff);
+            int blobs = purgeBlobs(cutoff);
+            backlog.set(blobRepository.countOrphans(cutoff));
+            if (files > 0 || blobs > 0) {
+                log.info("Purged {} deleted files and {} unreferenced blobs, {} blobs left", files, blobs, backlog.get());
+            }
+        });
+    }
+
+    private int purgeFiles(LocalDateTime cutoff) {
+        int purged = 0;
+        for (int batch = 0; batch < properties.maxBatchesPerRun(); batch++) {
+            List<Long> ids = fileRepository.findPurgeableIds(cutoff, Limit.of(properties.batchSize()));
+            if (ids.isEmpty()) {
+                break;
+            }
+            Integer deleted = transactionTemplate.execute(status -> {
+                // Rows held or already purged by another instance are left to it
+                List<Long> locked = fileRepository.lockPurgeable(ids).stream().map(FileEntity::getId).toList();
+                if (locked.isEmpty()) {
+                    return 0;
+                }
+                List<String> versions = fileVersionRepository.findContentHashesByFileRowIdIn(locked);
+                fileVersionRepository.deleteAllByFileRowIdIn(locked);
+                fileRepository.deleteTagsByIdIn(locked);
+                fileRepository.deleteAllByIdInBatch(locked);
+                releaseAll(versions);
+                return locked.size();
+            });
+            purged += deleted;
+            purgedFiles.increment(deleted);
+            // A batch held entirely by another instance would be selected again on the next pass
+            if (deleted == 0 || ids.size() < properties.batchSize() || !pause()) {
+                break;
+            }
+        }
+        return purged;
+    }
+
+    private int purgeBlobs(LocalDateTime cutoff) {
+        int purged = 0;
+        for (int batch = 0; batch < properties.maxBatchesPerRun(); batch++) {
+            List<BlobEntity> orphans = blobRepository.findOrphans(cutoff, Limit.of(properties.batchSize()));
+            if (orphans.isEmpty()) {
+                break;
+            }
+            int purgedInBatch = 0;
+            for (BlobEntity blob : orphans) {
+                if (purgeBlob(blob)) {
+                    purgedInBatch++;
+                }
+            }
+            purged += purgedInBatch;
+            // A batch where nothing could be purged would only be selected again
+            if (purgedInBatch == 0 || orphans.size() < properties.batchSize() || !pause()) {
+                break;
+            }
+        }
+        return purged;
+    }
+
+    private boolean purgeBlob(BlobEntity blob) {
+        Boolean deleted;
+        try {
+            deleted = transactionTemplate.execute(status -> {
+                if (blobRepository.deleteOrphan(blob.getDigest()) == 0) {
+                    return false; // referenced again or purged by another instance
+                }
+                List<String> renditions = renditionRepository.findContentHashesBySourceHash(blob.getDigest());
+                renditionRepository.deleteAllBySourceHash(blob.getDigest());
+                renditions.forEach(blobService::release);
+                if (blob.getCodec() == ContentCodec.CHUNKED) {
+                    List<String> chunks = blobChunkRepository.findChunkDigests(blob.getDigest());
+                    blobChunkRepository.deleteAllByBlobDigest(blob.getDigest());
+                    releaseAll(chunks);
+                }
+                return true;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Failed to purge blob {}", blob.getDigest(), e);
+            return false;
+        }
+        if (!Boolean.TRUE.equals(deleted)) {
+            return false;
+        }
+        if (blob.getCodec() == ContentCodec.CHUNKED) {
+            purgedBlobs.increment();
+            return true;
+        }
+
+        try {
+            blobStore.delete(blob.getStorageKey());
+        } catch (IOException e) {
+            failedBlobs.increment();
+            log.warn("Purged blob {} but failed to delete its contents: {}", blob.getDigest(), blob.getStorageKey(), e);
+            return true;
+        }
+        purgedBlobs.increment();
+        purgedBytes.increment(blob.getStoredSizeBytes());
+        return true;
+    }
+
+    private void releaseAll(List<String> digests) {
+        digests.stream()
+                .collect(Collectors.groupingBy(digest -> digest, Collectors.counting()))
+                .forEach(blobService::release);
+    }
+
+    /**
+     * Waits between batches.
+     *
+     * @return false if interrupted, in which case the run stops
+     */
+    private boolean pause() {
+        try {
+            Thread.sleep(properties.batchPause().toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
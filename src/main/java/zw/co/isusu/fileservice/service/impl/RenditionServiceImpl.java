@@ -0,0 +1,262 @@
+package zw.co.isusu.fileservice.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import zw.co.isusu.fileservice.config.IoThreads;
+import zw.co.isusu.fileservice.config.RenditionProperties;
+import zw.co.isusu.fileservice.domain.BlobEntity;
+import zw.co.isusu.fileservice.domain.RenditionEntity;
+import zw.co.isusu.fileservice.persistence.BlobRepository;
+import zw.co.isusu.fileservice.persistence.RenditionRepository;
+import zw.co.isusu.fileservice.persistence.projection.RenditionView;
+import zw.co.isusu.fileservice.service.BlobService;
+import zw.co.isusu.fileservice.service.BlobService.StoredBlob;
+import zw.co.isusu.fileservice.service.RenditionService;
+import zw.co.isusu.fileservice.service.event.FileContentStoredEvent;
+import zw.co.isusu.fileservice.storage.BlobSource;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service implementation rendering downscaled JPEG previews with the JDK's ImageIO.
+ * <p>
+ * Renditions for every configured size are rendered by a small worker pool once an upload
+ * commits. The work queue is bounded; when it is full new work is dropped and the missing
+ * rendition is produced on demand by the first preview request instead. Large images are
+ * decoded with source subsampling, so the decoder never materialises full-resolution pixels
+ * for a thumbnail.
+ */
+@Slf4j
+@Service
+public class RenditionServiceImpl implements RenditionService {
+
+    private static final String RENDITION_TYPE = "image/jpeg";
+
+    private final RenditionRepository renditionRepository;
+    private final BlobRepository blobRepository;
+    private final BlobService blobService;
+    private final RenditionProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final List<Integer> sizes;
+    private final ThreadPoolExecutor executor;
+
+    public RenditionServiceImpl(RenditionRepository renditionRepository,
+                                BlobRepository blobRepository,
+                                BlobService blobService,
+                                RenditionProperties properties,
+                                PlatformTransactionManager transactionManager,
+                                IoThreads ioThreads) {
+        this.renditionRepository = renditionRepository;
+        this.blobRepository = blobRepository;
+        this.blobService = blobService;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.sizes = properties.sizes().stream().sorted().toList();
+        this.executor = new ThreadPoolExecutor(
+                properties.workers(), properties.workers(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.queueCapacity()),
+                ioThreads.factory("rendition-"),
+                (runnable, pool) -> log.debug("Rendition queue full, deferring work to preview requests"));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public boolean supports(String fileType) {
+        return properties.enabled()
+                && fileType != null
+                && ImageIO.getImageReadersByMIMEType(fileType).hasNext();
+    }
+
+    @Override
+    public int resolveSize(Integer requestedSize) {
+        if (requestedSize == null) {
+            return sizes.get(sizes.size() - 1);
+        }
+        return sizes.stream()
+                .filter(size -> size >= requestedSize)
+                .findFirst()
+                .orElse(sizes.get(sizes.size() - 1));
+    }
+
+    @Override
+    public Optional<RenditionView> findOrCreate(String sourceHash, String fileType, BlobSource source, int maxDimension) {
+        Optional<RenditionView> existing = renditionRepository.findView(sourceHash, maxDimension);
+        if (existing.isPresent()) {
+            return existing;
+        }
+
+        byte[] rendered;
+        try {
+            rendered = render(source, maxDimension);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to render {}px preview of blob {}", maxDimension, sourceHash, e);
+            return Optional.empty();
+        }
+        if (rendered == null) {
+            return Optional.empty();
+        }
+
+        try {
+            // Callers hold no transaction, so the rendition commits on its own without a second connection
+            transactionTemplate.executeWithoutResult(status -> save(sourceHash, maxDimension, rendered));
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Rendition {}px of blob {} was stored concurrently", maxDimension, sourceHash);
+        }
+        return renditionRepository.findView(sourceHash, maxDimension);
+    }
+
+    /**
+     * Queues renditions for newly stored images once the storing transaction has committed,
+     * or straight away when the files were saved outside a surrounding transaction.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onContentStored(FileContentStoredEvent event) {
+        if (!supports(event.fileType())) {
+            return;
+        }
+        executor.execute(() -> renderAll(event));
+    }
+
+    private void renderAll(FileContentStoredEvent event) {
+        Optional<BlobEntity> blob = blobRepository.findById(event.contentHash());
+        if (blob.isEmpty()) {
+            return;
+        }
+        for (int size : sizes) {
+            if (renditionRepository.existsBySourceHashAndMaxDimension(event.contentHash(), size)) {
+                continue;
+            }
+            try {
+                findOrCreate(event.contentHash(), event.fileType(), blobService.open(blob.get().getStorageKey(), blob.get().getCodec()), size);
+            } catch (IOException e) {
+                log.warn("Failed to open blob {} for rendering", event.contentHash(), e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stores a rendition while holding a share lock on its source blob, so the source is either
+     * purged before, and the rendition not stored, or after, together with the rendition.
+     */
+    private void save(String sourceHash, int maxDimension, byte[] rendered) {
+        if (blobRepository.findForShare(sourceHash).isEmpty()) {
+            log.debug("Blob {} was purged while its {}px preview was rendered", sourceHash, maxDimension);
+            return;
+        }
+        StoredBlob blob;
+        try {
+            blob = blobService.store(new ByteArrayInputStream(rendered), RENDITION_TYPE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to store rendition of blob " + sourceHash, e);
+        }
+        RenditionEntity rendition = new RenditionEntity();
+        rendition.setSourceHash(sourceHash);
+        rendition.setMaxDimension(maxDimension);
+        rendition.setFileType(RENDITION_TYPE);
+        rendition.setContentHash(blob.digest());
+        rendition.setSizeBytes(blob.sizeBytes());
+        renditionRepository.saveAndFlush(rendition);
+    }
+
+    /**
+     * Decodes the source and encodes a JPEG whose longest edge is at most {@code maxDimension}.
+     *
+     * @return the encoded image, or null when the source is not a decodable image within the pixel limit
+     */
+    private byte[] render(BlobSource source, int maxDimension) throws IOException {
+        Optional<Path> localFile = source.localFile();
+        try (InputStream in = localFile.isPresent() ? null : source.openStream(0);
+             ImageInputStream input = localFile.isPresent()
+                     ? new FileImageInputStream(localFile.get().toFile())
+                     : ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > properties.maxPixels()) {
+                    log.info("Skipping preview of {}x{} image, over the pixel limit", width, height);
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                // Decode at no less than twice the target size, then downscale smoothly
+                int subsampling = Math.max(1, Math.max(width, height) / (maxDimension * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return encodeJpeg(scale(reader.read(0, param), maxDimension));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage image, int maxDimension) {
+        double ratio = Math.min(1.0, (double) maxDimension / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            // JPEG has no alpha channel, so flatten transparency onto white
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(properties.quality());
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
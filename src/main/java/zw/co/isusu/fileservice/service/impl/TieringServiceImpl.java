@@ -0,0 +1,297 @@
+package zw.co.isusu.fileservice.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import zw.co.isusu.fileservice.cache.FileMetadataCache;
+import zw.co.isusu.fileservice.config.MetadataCacheProperties;
+import zw.co.isusu.fileservice.config.TieringProperties;
+import zw.co.isusu.fileservice.domain.BlobEntity;
+import zw.co.isusu.fileservice.persistence.BlobRepository;
+import zw.co.isusu.fileservice.persistence.FileRepository;
+import zw.co.isusu.fileservice.service.TieringService;
+import zw.co.isusu.fileservice.storage.BlobWriter;
+import zw.co.isusu.fileservice.storage.ContentCodec;
+import zw.co.isusu.fileservice.storage.StorageTier;
+import zw.co.isusu.fileservice.storage.impl.TieredBlobStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Service implementation moving blobs between the hot and the cold tier of the {@link TieredBlobStore}.
+ * <p>
+ * Reads are counted in memory and added to the blob rows in one transaction per flush, so a
+ * download costs no write. The latest read of a blob is therefore only known to the flush
+ * interval, which is plenty for decisions measured in days. A read racing a flush may go
+ * uncounted.
+ * <p>
+ * A blob is moved by copying its bytes to the other tier and then pointing the blob row at the
+ * copy, unless its key changed in the meantime. Only then are cached lookups of the files using
+ * it dropped. The old copy is deleted after a delay of at least the metadata cache TTL, so
+ * readers that resolved the old key, on this or another instance, can still open it. Old copies
+ * waiting for their delay when the service crashes are left behind in the store. Blobs going cold are gzip encoded on the way when that pays off; they keep that encoding
+ * when they come back, as hot gzip blobs are served as they are to clients accepting gzip.
+ * <p>
+ * Progress is published as {@code file.tiering.*} meters: blobs and stored bytes moved, tagged
+ * with the tier they moved to, failed moves and the duration of each run.
+ */
+@Slf4j
+@Service
+public class TieringServiceImpl implements TieringService {
+
+    private final BlobRepository blobRepository;
+    private final FileRepository fileRepository;
+    private final TieredBlobStore blobStore;
+    private final CompressionPolicy compressionPolicy;
+    private final FileMetadataCache metadataCache;
+    private final TieringProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentHashMap<String, LongAdder> reads = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<RetiredCopy> retired = new ConcurrentLinkedQueue<>();
+    private final Duration retireDelay;
+
+    private final Counter failedBlobs;
+    private final Timer runTimer;
+
+    public TieringServiceImpl(BlobRepository blobRepository,
+                              FileRepository fileRepository,
+                              TieredBlobStore blobStore,
+                              CompressionPolicy compressionPolicy,
+                              FileMetadataCache metadataCache,
+                              TieringProperties properties,
+                              MetadataCacheProperties metadataCacheProperties,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry) {
+        this.blobRepository = blobRepository;
+        this.fileRepository = fileRepository;
+        this.blobStore = blobStore;
+        this.compressionPolicy = compressionPolicy;
+        this.metadataCache = metadataCache;
+        this.properties = properties;
+        this.retireDelay = properties.retireDelay().compareTo(metadataCacheProperties.ttl()) < 0
+                ? metadataCacheProperties.ttl()
+                : properties.retireDelay();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.failedBlobs = Counter.builder("file.tiering.failures")
+                .description("Blobs that could not be moved between tiers")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("file.tiering.duration")
+                .description("Duration of tier migration runs")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void recordAccess(String digest) {
+        if (properties.enabled()) {
+            reads.computeIfAbsent(digest, key -> new LongAdder()).increment();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flushAccesses();
+        deleteRetired(LocalDateTime.MAX);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${file-service.tiering.flush-interval:PT30S}")
+    public void flushAccesses() {
+        if (reads.isEmpty()) {
+            return;
+        }
+        Map<String, Long> flushed = new HashMap<>();
+        for (String digest : reads.keySet()) {
+            LongAdder count = reads.remove(digest);
+            if (count != null) {
+                flushed.put(digest, count.sum());
+            }
+        }
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    flushed.forEach((digest, count) -> blobRepository.recordAccess(digest, count, now)));
+        } catch (RuntimeException e) {
+            log.warn("Failed to record reads of {} blobs", flushed.size(), e);
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${file-service.tiering.interval:PT1H}", initialDelayString = "${file-service.tiering.initial-delay:PT5M}")
+    public void migrate() {
+        if (!properties.enabled()) {
+            return;
+        }
+        runTimer.record(() -> {
+            flushAccesses();
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime coldCutoff = now.minus(properties.coldAfter());
+            LocalDateTime hotSince = now.minus(properties.promoteWindow());
+            int demoted = moveAll(StorageTier.COLD, limit ->
+                    blobRepository.findDemotionCandidates(StorageTier.HOT, ContentCodec.CHUNKED, coldCutoff, limit));
+            int promoted = moveAll(StorageTier.HOT, limit ->
+                    blobRepository.findPromotionCandidates(StorageTier.COLD, properties.promoteReads(), hotSince, limit));
+            if (demoted > 0 || promoted > 0) {
+                log.info("Moved {} blobs to the cold tier and {} back to the hot tier", demoted, promoted);
+            }
+        });
+    }
+
+    private int moveAll(StorageTier target, Function<Limit, List<BlobEntity>> candidates) {
+        int moved = 0;
+        for (int batch = 0; batch < properties.maxBatchesPerRun(); batch++) {
+            List<BlobEntity> blobs = candidates.apply(Limit.of(properties.batchSize()));
+            if (blobs.isEmpty()) {
+                break;
+            }
+            int movedInBatch = 0;
+            for (BlobEntity blob : blobs) {
+                if (move(blob, target)) {
+                    movedInBatch++;
+                }
+            }
+            moved += movedInBatch;
+            // A batch where nothing could be moved would only be selected again
+            if (movedInBatch == 0 || blobs.size() < properties.batchSize() || !pause()) {
+                break;
+            }
+        }
+        return moved;
+    }
+
+    private boolean move(BlobEntity blob, StorageTier target) {
+        String oldKey = blob.getStorageKey();
+        String newKey;
+        ContentCodec codec;
+        long storedSize;
+        try {
+            try (InputStream in = blobStore.open(oldKey).openStream(0); BlobWriter writer = blobStore.newWriter(target)) {
+                codec = copy(in, writer, blob.getCodec(), target);
+                newKey = writer.commit();
+            }
+            storedSize = codec == blob.getCodec() ? blob.getStoredSizeBytes() : blobStore.size(newKey);
+        } catch (IOException e) {
+            failedBlobs.increment();
+            log.warn("Failed to copy blob {} to the {} tier", blob.getDigest(), tag(target), e);
+            return false;
+        }
+
+        ContentCodec movedCodec = codec;
+        Integer moved;
+        try {
+            moved = transactionTemplate.execute(status ->
+                    blobRepository.move(blob.getDigest(), oldKey, newKey, target, movedCodec, storedSize));
+        } catch (RuntimeException e) {
+            failedBlobs.increment();
+            log.warn("Failed to move blob {} to the {} tier", blob.getDigest(), tag(target), e);
+            deleteQuietly(newKey);
+            return false;
+        }
+        if (moved == null || moved == 0) {
+            // Moved or purged meanwhile
+            deleteQuietly(newKey);
+            return false;
+        }
+
+        fileRepository.findFileIdsByContentHash(blob.getDigest()).forEach(metadataCache::evict);
+        retired.add(new RetiredCopy(oldKey, LocalDateTime.now().plus(retireDelay)));
+        Counter.builder("file.tiering.blobs")
+                .description("Blobs moved between tiers")
+                .tag("tier", tag(target))
+                .register(meterRegistry)
+                .increment();
+        Counter.builder("file.tiering.bytes")
+                .description("Stored bytes moved between tiers")
+                .baseUnit("bytes")
+                .tag("tier", tag(target))
+                .register(meterRegistry)
+                .increment(storedSize);
+        return true;
+    }
+
+    /**
+     * Copies the stored bytes, compressing plain blobs headed for the cold tier when that pays off.
+     *
+     * @return the codec of the copy
+     */
+    private ContentCodec copy(InputStream in, BlobWriter writer, ContentCodec codec, StorageTier target) throws IOException {
+        if (target != StorageTier.COLD || !properties.compress() || codec != ContentCodec.IDENTITY) {
+            in.transferTo(writer);
+            return codec;
+        }
+        byte[] sample = in.readNBytes(compressionPolicy.probeSize());
+        ContentCodec chosen = compressionPolicy.choose(sample, sample.length);
+        try (OutputStream encoder = chosen.encode(writer)) {
+            encoder.write(sample);
+            in.transferTo(encoder);
+        }
+        return chosen;
+    }
+
+    /**
+     * Deletes the old copies of moved blobs whose delay is over.
+     */
+    @Scheduled(fixedDelayString = "${file-service.tiering.flush-interval:PT30S}")
+    void deleteRetired() {
+        deleteRetired(LocalDateTime.now());
+    }
+
+    private void deleteRetired(LocalDateTime now) {
+        // Copies are queued in the order their delays end
+        RetiredCopy copy;
+        while ((copy = retired.peek()) != null && !copy.deleteAfter().isAfter(now)) {
+            if (retired.remove(copy)) {
+                deleteQuietly(copy.storageKey());
+            }
+        }
+    }
+
+    private void deleteQuietly(String storageKey) {
+        try {
+            blobStore.delete(storageKey);
+        } catch (IOException e) {
+            log.warn("Failed to delete blob: {}", storageKey, e);
+        }
+    }
+
+    private static String tag(StorageTier tier) {
+        return tier.name().toLowerCase(Locale.ROOT);
+    }
+
+    private record RetiredCopy(String storageKey, LocalDateTime deleteAfter) { }
+
+    /**
+     * Waits between batches.
+     *
+     * @return false if interrupted, in which case the run stops
+     */
+    private boolean pause() {
+        try {
+            Thread.sleep(properties.batchPause().toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
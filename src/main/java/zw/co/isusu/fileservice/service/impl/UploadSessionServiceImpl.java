@@ -0,0 +1,516 @@
+package zw.co.isusu.fileservice.service.impl;
+
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import zw.co.isusu.fileservice.config.UploadSessionProperties;
+import zw.co.isusu.fileservice.domain.FileEntity;
+import zw.co.isusu.fileservice.domain.UploadChunkEntity;
+import zw.co.isusu.fileservice.domain.UploadSessionEntity;
+import zw.co.isusu.fileservice.domain.UploadSessionStatus;
+import zw.co.isusu.fileservice.inspection.Inspection;
+import zw.co.isusu.fileservice.inspection.InspectionPipeline;
+import zw.co.isusu.fileservice.inspection.UploadContext;
+import zw.co.isusu.fileservice.inspection.UploadRejectedException;
+import zw.co.isusu.fileservice.metrics.FileMetrics;
+import zw.co.isusu.fileservice.persistence.FileRepository;
+import zw.co.isusu.fileservice.persistence.UploadChunkRepository;
+import zw.co.isusu.fileservice.persistence.UploadSessionRepository;
+import zw.co.isusu.fileservice.service.BlobService;
+import zw.co.isusu.fileservice.service.BlobService.StoredBlob;
+import zw.co.isusu.fileservice.service.UploadSessionService;
+import zw.co.isusu.fileservice.service.event.FileContentStoredEvent;
+import zw.co.isusu.fileservice.service.exception.FileNotFoundException;
+import zw.co.isusu.fileservice.service.request.CreateUploadSessionRequest;
+import zw.co.isusu.fileservice.service.response.FileUploadResponse;
+import zw.co.isusu.fileservice.service.response.UploadChunkResponse;
+import zw.co.isusu.fileservice.service.response.UploadSessionResponse;
+import zw.co.isusu.fileservice.service.response.UploadSessionResponse.CompletedRange;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Service implementation for resumable, chunked uploads.
+ * <p>
+ * Every session owns a sparse staging file sized to the whole upload. Chunks are written
+ * straight to their offset in that file, so they can arrive in parallel and in any order.
+ * The SHA-256 of the whole file is advanced over the contiguous run of received chunks
+ * right after each chunk lands, while its pages are still cached, so committing does not
+ * have to read the staged file again. The same pass feeds the upload's inspection, so a session
+ * whose contents are rejected fails on the chunk that brought the offending bytes, and every
+ * request after it, until it is aborted or expires. On commit the staging file is handed to the
+ * blob storage, which moves it into place when it lives on the same volume.
+ * <p>
+ * Chunks are read from the client outside of any transaction and only recorded, in a short
+ * transaction of their own, once written and verified, so a slow client never holds a
+ * connection. Concurrent requests for the same chunk are serialised, a retry finding the
+ * chunk already recorded. Commits lock the session row, so a session is committed once.
+ */
+@Slf4j
+@Service
+@Transactional
+public class UploadSessionServiceImpl implements UploadSessionService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final UploadSessionRepository sessionRepository;
+    private final UploadChunkRepository chunkRepository;
+    private final FileRepository fileRepository;
+    private final BlobService blobService;
+    private final InspectionPipeline inspectionPipeline;
+    private final UploadSessionProperties properties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final FileMetrics fileMetrics;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<UUID, HashFrontier> frontiers = new ConcurrentHashMap<>();
+
+    public UploadSessionServiceImpl(UploadSessionRepository sessionRepository,
+                                    UploadChunkRepository chunkRepository,
+                                    FileRepository fileRepository,
+                                    BlobService blobService,
+                                    InspectionPipeline inspectionPipeline,
+                                    UploadSessionProperties properties,
+                                    ApplicationEventPublisher eventPublisher,
+                                    FileMetrics fileMetrics,
+                                    PlatformTransactionManager transactionManager) throws IOException {
+        this.sessionRepository = sessionRepository;
+        this.chunkRepository = chunkRepository;
+        this.fileRepository = fileRepository;
+        this.blobService = blobService;
+        this.inspectionPipeline = inspectionPipeline;
+        this.properties = properties;
+        this.eventPublisher = eventPublisher;
+        this.fileMetrics = fileMetrics;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        Files.createDirectories(properties.stagingDir());
+    }
+
+    @Override
+    public UploadSessionResponse createSession(CreateUploadSessionRequest request) throws IOException {
+        log.debug("Creating upload session for file: {}", request.fileName());
+        if (request.fileName() == null || request.fileName().isBlank()) {
+            throw new IllegalArgumentException("File name is required");
+        }
+        if (request.totalSize() < 0) {
+            throw new IllegalArgumentException("Total size must not be negative");
+        }
+        if (request.chunkSize() <= 0 || request.chunkSize() > properties.maxChunkSize().toBytes()) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + properties.maxChunkSize().toBytes() + " bytes");
+        }
+
+        UploadSessionEntity session = new UploadSessionEntity();
+        session.setFileName(request.fileName());
+        session.setFileType(request.fileType() == null ? "application/octet-stream" : request.fileType());
+        session.setTotalSize(request.totalSize());
+        session.setChunkSize(request.chunkSize());
+        session.setExpiresAt(LocalDateTime.now().plus(properties.ttl()));
+        inspect(session); // Rejects what the declared size and type already rule out
+        sessionRepository.save(session);
+
+        try (RandomAccessFile staging = new RandomAccessFile(stagingFile(session).toFile(), "rw")) {
+            staging.setLength(session.getTotalSize());
+        }
+
+        log.debug("Upload session created with ID: {}", session.getSessionId());
+        return toResponse(session, List.of());
+    }
+
+    @Override
+    public UploadSessionResponse getSession(UUID sessionId) throws FileNotFoundException {
+        UploadSessionEntity session = findSession(sessionId);
+        return toResponse(session, chunkRepository.findChunkIndices(sessionId));
+    }
+
+    /**
+     * Runs outside of any transaction, so no connection is held while the chunk is read from the client.
+     */
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public UploadChunkResponse uploadChunk(UUID sessionId, int chunkIndex, String checksum, InputStream content)
+            throws IOException, FileNotFoundException {
+        UploadSessionEntity session = findOpenSession(sessionId);
+        if (chunkIndex < 0 || chunkIndex >= session.getTotalChunks()) {
+            throw new IllegalArgumentException("Chunk index out of range: " + chunkIndex);
+        }
+        if (checksum == null || checksum.isBlank()) {
+            throw new IllegalArgumentException("Chunk checksum is required");
+        }
+
+        HashFrontier frontier = frontierFor(session);
+        ReentrantLock chunkLock = frontier.chunkLock(chunkIndex);
+        // A retry racing the request it retries waits for it, then finds the chunk recorded
+        chunkLock.lock();
+        try {
+            Optional<UploadChunkEntity> existing = chunkRepository.findBySessionIdAndChunkIndex(sessionId, chunkIndex);
+            if (existing.isPresent()) {
+                content.close();
+                return alreadyReceived(session, existing.get(), checksum);
+            }
+
+            long expectedLength = session.chunkLength(chunkIndex);
+            String actual = writeChunk(stagingFile(session), session.chunkOffset(chunkIndex), expectedLength, content);
+            if (!actual.equalsIgnoreCase(checksum)) {
+                throw new IllegalArgumentException("Checksum mismatch for chunk " + chunkIndex);
+            }
+            if (!record(sessionId, chunkIndex, expectedLength, actual)) {
+                // Recorded by another instance sharing the staging directory
+                return alreadyReceived(session, chunkRepository.findBySessionIdAndChunkIndex(sessionId, chunkIndex)
+                        .orElseThrow(() -> new IllegalStateException("Chunk " + chunkIndex + " disappeared while being recorded")), checksum);
+            }
+        } finally {
+            chunkLock.unlock();
+        }
+
+        frontier.markReceived(chunkIndex);
+        if (frontier.lock.tryLock()) {
+            try {
+                frontier.advance(session, stagingFile(session));
+            } catch (IOException e) {
+                // The chunk is recorded; the commit hashes it again from a fresh frontier
+                log.warn("Failed to hash received chunks of upload session {}", sessionId, e);
+            } finally {
+                frontier.lock.unlock();
+            }
+        }
+
+        log.debug("Stored chunk {} of upload session {}", chunkIndex, sessionId);
+        return new UploadChunkResponse(sessionId, chunkIndex, session.chunkOffset(chunkIndex), session.chunkLength(chunkIndex));
+    }
+
+    @Override
+    public FileUploadResponse commitSession(UUID sessionId) throws IOException, FileNotFoundException {
+        log.debug("Committing upload session: {}", sessionId);
+        UploadSessionEntity session = sessionRepository.findForUpdate(sessionId)
+                .orElseThrow(() -> new FileNotFoundException("Upload session not found with ID: " + sessionId));
+        if (session.getStatus() == UploadSessionStatus.COMMITTED) {
+            return new FileUploadResponse(session.getFileId(), session.getFileName(), session.getFileType());
+        }
+        long received = chunkRepository.countBySessionId(sessionId);
+        if (received != session.getTotalChunks()) {
+            throw new IllegalStateException("Upload session " + sessionId + " is missing "
+                    + (session.getTotalChunks() - received) + " chunks");
+        }
+
+        Path staging = stagingFile(session);
+        HashFrontier frontier = frontierFor(session);
+        String digest;
+        frontier.lock.lock();
+        try {
+            frontier.advance(session, staging);
+            digest = frontier.digest();
+        } finally {
+            frontier.lock.unlock();
+        }
+        frontiers.remove(sessionId);
+
+        session.setFileType(frontier.inspection.report().fileType(session.getFileType()));
+        StoredBlob blob = blobService.storeFile(staging, digest, session.getTotalSize(), session.getFileType());
+        fileMetrics.recordUpload(blob.sizeBytes());
+        FileEntity file = new FileEntity();
+        file.setFileName(session.getFileName());
+        file.setFileType(session.getFileType());
+        file.setSizeBytes(blob.sizeBytes());
+        file.setContentHash(blob.digest());
+        file.setStoredAt(LocalDateTime.now());
+        fileRepository.save(file);
+        eventPublisher.publishEvent(new FileContentStoredEvent(file.getFileId(), file.getContentHash(), file.getFileType()));
+
+        session.setStatus(UploadSessionStatus.COMMITTED);
+        session.setFileId(file.getFileId());
+        sessionRepository.save(session);
+        chunkRepository.deleteAllBySessionId(sessionId);
+
+        log.debug("Upload session {} committed as file {}", sessionId, file.getFileId());
+        return new FileUploadResponse(file.getFileId(), file.getFileName(), file.getFileType());
+    }
+
+    @Override
+    public void abortSession(UUID sessionId) throws FileNotFoundException {
+        log.debug("Aborting upload session: {}", sessionId);
+        discard(findOpenSession(sessionId));
+    }
+
+    /**
+     * Removes sessions past their expiry time together with their staged bytes.
+     */
+    @Scheduled(fixedDelayString = "${file-service.upload-sessions.cleanup-interval:PT5M}")
+    public void expireSessions() {
+        List<UploadSessionEntity> expired = sessionRepository.findAllByExpiresAtBefore(LocalDateTime.now());
+        if (expired.isEmpty()) {
+            return;
+        }
+        expired.forEach(this::discard);
+        log.info("Expired {} upload sessions", expired.size());
+    }
+
+    private void discard(UploadSessionEntity session) {
+        frontiers.remove(session.getSessionId());
+        chunkRepository.deleteAllBySessionId(session.getSessionId());
+        sessionRepository.delete(session);
+        try {
+            Files.deleteIfExists(stagingFile(session));
+        } catch (IOException e) {
+            log.warn("Failed to delete staging file of upload session {}", session.getSessionId(), e);
+        }
+    }
+
+    /**
+     * Inserts the row of a written and verified chunk in a transaction of its own.
+     *
+     * @return false if a row for the same chunk already existed
+     */
+    private boolean record(UUID sessionId, int chunkIndex, long sizeBytes, String checksum) {
+        UploadChunkEntity chunk = new UploadChunkEntity();
+        chunk.setSessionId(sessionId);
+        chunk.setChunkIndex(chunkIndex);
+        chunk.setSizeBytes(sizeBytes);
+        chunk.setChecksum(checksum);
+        try {
+            transactionTemplate.executeWithoutResult(status -> chunkRepository.saveAndFlush(chunk));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Answers a chunk received before as an idempotent retry, unless its contents differ.
+     */
+    private static UploadChunkResponse alreadyReceived(UploadSessionEntity session, UploadChunkEntity chunk, String checksum) {
+        if (!chunk.getChecksum().equalsIgnoreCase(checksum)) {
+            throw new IllegalStateException("Chunk " + chunk.getChunkIndex() + " was already received with different contents");
+        }
+        return new UploadChunkResponse(session.getSessionId(), chunk.getChunkIndex(),
+                session.chunkOffset(chunk.getChunkIndex()), session.chunkLength(chunk.getChunkIndex()));
+    }
+
+    /**
+     * Writes one chunk at its offset in the staging file and returns its SHA-256.
+     */
+    private static String writeChunk(Path staging, long offset, long expectedLength, InputStream content) throws IOException {
+        MessageDigest digest = sha256();
+        long written = 0;
+        try (InputStream in = content;
+             FileChannel channel = FileChannel.open(staging, StandardOpenOption.WRITE)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (written + read > expectedLength) {
+                    throw new IllegalArgumentException("Chunk is larger than the expected " + expectedLength + " bytes");
+                }
+                digest.update(buffer, 0, read);
+                ByteBuffer slice = ByteBuffer.wrap(buffer, 0, read);
+                while (slice.hasRemaining()) {
+                    written += channel.write(slice, offset + written);
+                }
+            }
+        }
+        if (written != expectedLength) {
+            throw new IllegalArgumentException("Chunk is " + written + " bytes, expected " + expectedLength);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * The frontier of the session, started over from the first chunk if the last one failed
+     * partway through a chunk.
+     */
+    private HashFrontier frontierFor(UploadSessionEntity session) throws UploadRejectedException {
+        HashFrontier existing = frontiers.get(session.getSessionId());
+        if (existing != null && !existing.isBroken()) {
+            return existing;
+        }
+        Inspection inspection = inspect(session);
+        return frontiers.compute(session.getSessionId(), (id, current) -> {
+            if (current != null && !current.isBroken()) {
+                return current;
+            }
+            HashFrontier frontier = new HashFrontier(inspection, current == null ? new ConcurrentHashMap<>() : current.chunkLocks);
+            chunkRepository.findChunkIndices(id).forEach(frontier::markReceived);
+            return frontier;
+        });
+    }
+
+    private Inspection inspect(UploadSessionEntity session) throws UploadRejectedException {
+        return inspectionPipeline.begin(new UploadContext(session.getFileName(), session.getFileType(), session.getTotalSize()));
+    }
+
+    private UploadSessionEntity findSession(UUID sessionId) throws FileNotFoundException {
+        return sessionRepository.findBySessionId(sessionId)
+                .orElseThrow(() -> new FileNotFoundException("Upload session not found with ID: " + sessionId));
+    }
+
+    private UploadSessionEntity findOpenSession(UUID sessionId) throws FileNotFoundException {
+        UploadSessionEntity session = findSession(sessionId);
+        if (session.getStatus() != UploadSessionStatus.OPEN) {
+            throw new IllegalStateException("Upload session " + sessionId + " is already committed");
+        }
+        return session;
+    }
+
+    private Path stagingFile(UploadSessionEntity session) {
+        return properties.stagingDir().resolve(session.getSessionId() + ".part");
+    }
+
+    private static UploadSessionResponse toResponse(UploadSessionEntity session, List<Integer> chunkIndices) {
+        List<CompletedRange> ranges = new ArrayList<>();
+        int runStart = -1;
+        int previous = -2;
+        for (int index : chunkIndices) {
+            if (index != previous + 1) {
+                if (runStart >= 0) {
+                    ranges.add(new CompletedRange(session.chunkOffset(runStart), session.chunkOffset(previous) + session.chunkLength(previous)));
+                }
+                runStart = index;
+            }
+            previous = index;
+        }
+        if (runStart >= 0) {
+            ranges.add(new CompletedRange(session.chunkOffset(runStart), session.chunkOffset(previous) + session.chunkLength(previous)));
+        }
+        return new UploadSessionResponse(
+                session.getSessionId(),
+                session.getFileName(),
+                session.getFileType(),
+                session.getTotalSize(),
+                session.getChunkSize(),
+                session.getTotalChunks(),
+                ranges,
+                session.getStatus().name(),
+                session.getFileId(),
+                session.getExpiresAt()
+        );
+    }
+
+    private static MessageDigest cloneOf(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("SHA-256 digest cannot be cloned", e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Running whole-file digest and inspection over the longest prefix of received chunks.
+     * <p>
+     * The digest only takes in whole chunks. The inspection cannot be rewound, so a frontier
+     * that fails partway through a chunk is marked broken and replaced by one starting over.
+     */
+    static final class HashFrontier {
+
+        final ReentrantLock lock = new ReentrantLock();
+        // Marked by concurrent chunk uploads without the lock held
+        private final Set<Integer> received = ConcurrentHashMap.newKeySet();
+        // Handed on to the frontier replacing a broken one, so writers of a chunk stay serialised
+        private final Map<Integer, ReentrantLock> chunkLocks;
+        private final Inspection inspection;
+        private MessageDigest digest = sha256();
+        private int next;
+        private volatile boolean broken;
+
+        HashFrontier(Inspection inspection, Map<Integer, ReentrantLock> chunkLocks) {
+            this.inspection = inspection;
+            this.chunkLocks = chunkLocks;
+        }
+
+        void markReceived(int chunkIndex) {
+            received.add(chunkIndex);
+        }
+
+        ReentrantLock chunkLock(int chunkIndex) {
+            return chunkLocks.computeIfAbsent(chunkIndex, index -> new ReentrantLock());
+        }
+
+        boolean isBroken() {
+            return broken;
+        }
+
+        /**
+         * Hex encoded SHA-256 of every chunk before the frontier.
+         */
+        String digest() {
+            return HexFormat.of().formatHex(cloneOf(digest).digest());
+        }
+
+        private boolean isReceived(int chunkIndex) {
+            return received.contains(chunkIndex);
+        }
+
+        /**
+         * Feeds every chunk from the frontier up to the first gap into the digest and the
+         * inspection, finishing the inspection once the last chunk is in.
+         * Must be called with {@link #lock} held.
+         */
+        void advance(UploadSessionEntity session, Path staging) throws IOException {
+            if (broken) {
+                throw new IllegalStateException("Hash frontier of upload session " + session.getSessionId() + " is broken");
+            }
+            if (next >= session.getTotalChunks()) {
+                inspection.finish();
+                return;
+            }
+            if (!isReceived(next)) {
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(staging, StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                while (next < session.getTotalChunks() && isReceived(next)) {
+                    MessageDigest chunkDigest = cloneOf(digest);
+                    long position = session.chunkOffset(next);
+                    long end = position + session.chunkLength(next);
+                    while (position < end) {
+                        buffer.clear().limit((int) Math.min(BUFFER_SIZE, end - position));
+                        int read = channel.read(buffer, position);
+                        if (read < 0) {
+                            throw new IOException("Staging file ended early: " + staging);
+                        }
+                        chunkDigest.update(buffer.array(), 0, read);
+                        inspection.update(buffer.array(), 0, read);
+                        position += read;
+                    }
+                    digest = chunkDigest;
+                    next++;
+                }
+            } catch (IOException e) {
+                // The inspection may have seen part of the chunk
+                broken = true;
+                throw e;
+            }
+            if (next >= session.getTotalChunks()) {
+                inspection.finish();
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package zw.co.isusu.fileservice.service.request;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Selects the files to archive, either by ID or by tag.
+ */
+public record ArchiveRequest(
+        List<UUID> fileIds,
+        String tag
+) { }
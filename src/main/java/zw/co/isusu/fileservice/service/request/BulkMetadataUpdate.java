@@ -0,0 +1,14 @@
+package zw.co.isusu.fileservice.service.request;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One item of a bulk metadata update.
+ */
+public record BulkMetadataUpdate(
+        UUID fileId,
+        Integer version, // Version the change was based on; the item conflicts if the file changed since
+        String fileName, // Null or blank to keep the name
+        List<String> tags // Null to keep the tags, otherwise replaces them
+) { }
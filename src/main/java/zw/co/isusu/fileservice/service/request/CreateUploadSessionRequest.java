@@ -0,0 +1,12 @@
+package zw.co.isusu.fileservice.service.request;
+
+/**
+ * DTO for opening a resumable upload session.
+ */
+
+public record CreateUploadSessionRequest(
+        String fileName,
+        String fileType,
+        long totalSize, // Size of the whole file in bytes
+        int chunkSize // Size of every chunk but the last, in bytes
+) { }
@@ -0,0 +1,32 @@
+package zw.co.isusu.fileservice.service.request;
+
+import zw.co.isusu.fileservice.service.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Opaque position in the file listing, pointing just after the given row.
+ */
+public record FileCursor(LocalDateTime createdAt, UUID fileId) {
+
+    public String encode() {
+        String raw = createdAt + "|" + fileId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws InvalidCursorException if the cursor was not produced by {@link #encode()}
+     */
+    public static FileCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new FileCursor(LocalDateTime.parse(raw.substring(0, separator)), UUID.fromString(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
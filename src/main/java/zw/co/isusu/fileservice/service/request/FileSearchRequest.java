@@ -0,0 +1,14 @@
+package zw.co.isusu.fileservice.service.request;
+
+import java.util.List;
+
+/**
+ * DTO for searching files by tags, name prefix and content type.
+ */
+
+public record FileSearchRequest(
+        List<String> tags,
+        TagMatch match, // Defaults to ALL
+        String namePrefix,
+        String fileType
+) { }
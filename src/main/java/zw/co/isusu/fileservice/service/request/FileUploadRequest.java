@@ -1,8 +1,17 @@
 package zw.co.isusu.fileservice.service.request;
 
+import java.io.InputStream;
+
 /**
  * DTO for handling file upload requests.
+ *
+ * @param checksum checksums of the contents declared by the client, e.g. {@code sha256=<hex>}, or null
  */
 
-public record FileUploadRequest(String fileName, String fileType, byte[] data) {}
+public record FileUploadRequest(String fileName, String fileType, InputStream content, String checksum) {
+
+    public FileUploadRequest(String fileName, String fileType, InputStream content) {
+        this(fileName, fileType, content, null);
+    }
+}
 
@@ -0,0 +1,9 @@
+package zw.co.isusu.fileservice.service.request;
+
+/**
+ * How several tags in a search are combined.
+ */
+public enum TagMatch {
+    ALL,
+    ANY
+}
@@ -0,0 +1,20 @@
+package zw.co.isusu.fileservice.service.response;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One line of the catalog export.
+ */
+public record CatalogEntry(
+        UUID fileId,
+        String fileName,
+        String fileType,
+        long size, // File size in bytes
+        String contentHash, // Hex encoded SHA-256 of the contents
+        int version, // Pass back with bulk metadata updates
+        List<String> tags,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt
+) { }
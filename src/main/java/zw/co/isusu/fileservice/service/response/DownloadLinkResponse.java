@@ -0,0 +1,10 @@
+package zw.co.isusu.fileservice.service.response;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public record DownloadLinkResponse(
+        UUID fileId,
+        String url, // Signed URL, usable without further authentication until it expires
+        LocalDateTime expiresAt
+) { }
@@ -0,0 +1,13 @@
+package zw.co.isusu.fileservice.service.response;
+
+import zw.co.isusu.fileservice.persistence.projection.FileContentView;
+
+import java.util.List;
+
+/**
+ * The resolved contents of an archive, read before any bytes are streamed.
+ */
+public record FileArchive(
+        String fileName,
+        List<FileContentView> entries
+) { }
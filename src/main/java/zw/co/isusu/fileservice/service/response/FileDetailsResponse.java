@@ -10,6 +10,8 @@ public record FileDetailsResponse(
         String fileName,
         String fileType,
         long size, // File size in bytes
+        String contentHash, // Hex encoded SHA-256 of the contents
+        int version, // Changes on every modification
         LocalDateTime createdAt,
         LocalDateTime updatedAt
 ) { }
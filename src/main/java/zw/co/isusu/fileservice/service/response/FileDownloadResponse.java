@@ -1,6 +1,24 @@
 package zw.co.isusu.fileservice.service.response;
 
+import zw.co.isusu.fileservice.storage.BlobSource;
+
+import java.time.LocalDateTime;
 import java.util.UUID;
 
-public record FileDownloadResponse(UUID fileId, String fileName, String fileType, byte [] data) {
+public record FileDownloadResponse(
+        UUID fileId,
+        String fileName,
+        String fileType,
+        long size, // File size in bytes
+        String contentHash, // Strong validator for the contents
+        LocalDateTime lastModified,
+        BlobSource content, // Read lazily while the response is written
+        EncodedContent encoded // The stored bytes when they can be sent as they are with a Content-Encoding, otherwise null
+) {
+
+    public record EncodedContent(
+            String contentCoding,
+            long size,
+            BlobSource content
+    ) { }
 }
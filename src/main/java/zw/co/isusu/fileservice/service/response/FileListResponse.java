@@ -0,0 +1,11 @@
+package zw.co.isusu.fileservice.service.response;
+
+import java.util.List;
+
+/**
+ * One page of the file listing; {@code nextCursor} is null on the last page.
+ */
+public record FileListResponse(
+        List<FileDetailsResponse> files,
+        String nextCursor
+) { }
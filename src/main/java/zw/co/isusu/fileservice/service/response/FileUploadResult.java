@@ -0,0 +1,24 @@
+package zw.co.isusu.fileservice.service.response;
+
+import java.util.UUID;
+
+/**
+ * Outcome of one file within a multi-file upload.
+ */
+
+public record FileUploadResult(
+        String fileName,
+        boolean uploaded,
+        UUID fileId, // Null when the upload failed
+        String fileType,
+        String error // Null when the upload succeeded
+) {
+
+    public static FileUploadResult uploaded(UUID fileId, String fileName, String fileType) {
+        return new FileUploadResult(fileName, true, fileId, fileType, null);
+    }
+
+    public static FileUploadResult failed(String fileName, String fileType, String error) {
+        return new FileUploadResult(fileName, false, null, fileType, error);
+    }
+}
@@ -0,0 +1,13 @@
+package zw.co.isusu.fileservice.service.response;
+
+import java.time.LocalDateTime;
+
+public record FileVersionResponse(
+        int version, // The file's version while these were its contents
+        String fileName,
+        String fileType,
+        long size, // File size in bytes
+        String contentHash, // Hex encoded SHA-256 of the contents
+        LocalDateTime storedAt, // When these contents were written
+        LocalDateTime replacedAt // When newer contents replaced them
+) { }
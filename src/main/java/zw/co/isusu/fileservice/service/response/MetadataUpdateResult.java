@@ -0,0 +1,42 @@
+package zw.co.isusu.fileservice.service.response;
+
+import java.util.UUID;
+
+/**
+ * Outcome of one item within a bulk metadata update.
+ */
+public record MetadataUpdateResult(
+        UUID fileId,
+        Status status,
+        Integer version, // The file's version after the update, or its current version on a conflict
+        String error // Null when the item was applied
+) {
+
+    public enum Status {
+        UPDATED,
+        CONFLICT,
+        NOT_FOUND,
+        INVALID,
+        FAILED
+    }
+
+    public static MetadataUpdateResult updated(UUID fileId, int version) {
+        return new MetadataUpdateResult(fileId, Status.UPDATED, version, null);
+    }
+
+    public static MetadataUpdateResult conflict(UUID fileId, int currentVersion) {
+        return new MetadataUpdateResult(fileId, Status.CONFLICT, currentVersion, "File was modified since version was read");
+    }
+
+    public static MetadataUpdateResult notFound(UUID fileId) {
+        return new MetadataUpdateResult(fileId, Status.NOT_FOUND, null, "File not found or already deleted");
+    }
+
+    public static MetadataUpdateResult invalid(UUID fileId, String error) {
+        return new MetadataUpdateResult(fileId, Status.INVALID, null, error);
+    }
+
+    public static MetadataUpdateResult failed(UUID fileId) {
+        return new MetadataUpdateResult(fileId, Status.FAILED, null, "Failed to apply the update");
+    }
+}
@@ -0,0 +1,10 @@
+package zw.co.isusu.fileservice.service.response;
+
+import java.util.UUID;
+
+public record UploadChunkResponse(
+        UUID sessionId,
+        int chunkIndex,
+        long offset,
+        long size
+) { }
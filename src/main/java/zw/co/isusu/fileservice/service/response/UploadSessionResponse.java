@@ -0,0 +1,20 @@
+package zw.co.isusu.fileservice.service.response;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public record UploadSessionResponse(
+        UUID sessionId,
+        String fileName,
+        String fileType,
+        long totalSize,
+        int chunkSize,
+        int totalChunks,
+        List<CompletedRange> completedRanges, // Byte ranges already received, end exclusive
+        String status,
+        UUID fileId, // Set once committed
+        LocalDateTime expiresAt
+) {
+    public record CompletedRange(long start, long end) { }
+}
@@ -0,0 +1,67 @@
+package zw.co.isusu.fileservice.signing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import org.springframework.stereotype.Component;
+import zw.co.isusu.fileservice.cache.MetadataInvalidationChannel;
+import zw.co.isusu.fileservice.config.DownloadLinkProperties;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Remembers when files last changed, so that links issued before can no longer be trusted on
+ * their own.
+ * <p>
+ * Every change announced on the {@link MetadataInvalidationChannel}, from deletes and
+ * replacements to renames and tier moves, revokes the links issued for the file until then.
+ * Entries are only kept as long as the longest-lived link. Links issued before this instance
+ * started, before invalidations may have been missed, or before an entry evicted for space,
+ * count as revoked, as their changes are not known.
+ */
+@Component
+public class DownloadLinkRevocations implements MetadataInvalidationChannel.Subscriber {
+
+    private final Cache<UUID, Instant> revoked;
+    private final AtomicReference<Instant> revokedBefore = new AtomicReference<>(Instant.now());
+
+    public DownloadLinkRevocations(MetadataInvalidationChannel channel, DownloadLinkProperties properties) {
+        this.revoked = Caffeine.newBuilder()
+                .maximumSize(properties.revocationMaxEntries())
+                .expireAfterWrite(properties.maxTtl())
+                .evictionListener((UUID fileId, Instant revokedAt, RemovalCause cause) -> {
+                    if (cause == RemovalCause.SIZE) {
+                        revokeBefore(revokedAt);
+                    }
+                })
+                .build();
+        channel.subscribe(this);
+    }
+
+    /**
+     * Whether the file changed, or may have, since a link to it was issued.
+     */
+    public boolean isRevoked(UUID fileId, Instant issuedAt) {
+        if (!issuedAt.isAfter(revokedBefore.get())) {
+            return true;
+        }
+        Instant revokedAt = revoked.getIfPresent(fileId);
+        return revokedAt != null && !issuedAt.isAfter(revokedAt);
+    }
+
+    @Override
+    public void invalidate(UUID fileId) {
+        revoked.put(fileId, Instant.now());
+    }
+
+    @Override
+    public void invalidateAll() {
+        revokeBefore(Instant.now());
+    }
+
+    private void revokeBefore(Instant instant) {
+        revokedBefore.accumulateAndGet(instant, (current, next) -> next.isAfter(current) ? next : current);
+    }
+}
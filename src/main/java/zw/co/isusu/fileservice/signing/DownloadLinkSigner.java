@@ -0,0 +1,185 @@
+package zw.co.isusu.fileservice.signing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import zw.co.isusu.fileservice.config.DownloadLinkProperties;
+import zw.co.isusu.fileservice.metrics.FileMetrics;
+import zw.co.isusu.fileservice.persistence.projection.FileContentView;
+import zw.co.isusu.fileservice.storage.ContentCodec;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Issues and verifies download links that carry everything needed to stream a file: its blob
+ * key and codec, sizes, name, type and validators, with the time they were issued and expire.
+ * <p>
+ * A token is the Base64url encoded payload followed by its HMAC-SHA256, so verifying one is a
+ * hash computation with no lookup. It is signed with the first configured secret and verified
+ * with any of them. The payload is signed, not encrypted: holders of a link can read the name
+ * and the blob key of the file, but cannot change them.
+ */
+@Slf4j
+@Component
+public class DownloadLinkSigner {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final byte FORMAT = 1;
+
+    private final List<SecretKeySpec> keys;
+    private final DownloadLinkProperties properties;
+    private final FileMetrics fileMetrics;
+
+    public DownloadLinkSigner(DownloadLinkProperties properties, FileMetrics fileMetrics) {
+        this.properties = properties;
+        this.fileMetrics = fileMetrics;
+        if (properties.secrets().isEmpty()) {
+            byte[] secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            this.keys = List.of(new SecretKeySpec(secret, ALGORITHM));
+            log.warn("No download link secrets configured; links are signed with a random key and only work on this instance until it restarts");
+        } else {
+            this.keys = properties.secrets().stream()
+                    .map(secret -> new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM))
+                    .toList();
+        }
+    }
+
+    /**
+     * Signs a link to the file.
+     *
+     * @param ttl requested lifetime, or null for the default; capped at the configured maximum
+     */
+    public SignedDownloadLink sign(FileContentView file, Duration ttl) {
+        Duration lifetime = ttl == null ? properties.ttl() : ttl;
+        if (lifetime.compareTo(properties.maxTtl()) > 0) {
+            lifetime = properties.maxTtl();
+        }
+        Instant issuedAt = Instant.now();
+        Instant expiresAt = issuedAt.plus(lifetime);
+        byte[] payload = encode(file, issuedAt, expiresAt);
+        Base64.Encoder base64 = Base64.getUrlEncoder().withoutPadding();
+        String token = base64.encodeToString(payload) + "." + base64.encodeToString(mac(keys.get(0), payload));
+        return new SignedDownloadLink(token, expiresAt);
+    }
+
+    /**
+     * Checks the signature and expiry of a link and returns what it carries.
+     */
+    public SignedDownload verify(String token) throws InvalidDownloadLinkException {
+        int separator = token.indexOf('.');
+        byte[] payload;
+        byte[] signature;
+        try {
+            if (separator < 0) {
+                throw new IllegalArgumentException("No signature");
+            }
+            payload = Base64.getUrlDecoder().decode(token.substring(0, separator));
+            signature = Base64.getUrlDecoder().decode(token.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            throw reject(HttpStatus.FORBIDDEN, "malformed", "Malformed download link");
+        }
+        if (keys.stream().noneMatch(key -> MessageDigest.isEqual(mac(key, payload), signature))) {
+            throw reject(HttpStatus.FORBIDDEN, "signature", "Download link signature does not verify");
+        }
+        SignedDownload download;
+        try {
+            download = decode(payload);
+        } catch (IOException | IllegalArgumentException e) {
+            throw reject(HttpStatus.FORBIDDEN, "malformed", "Malformed download link");
+        }
+        if (!Instant.now().isBefore(download.expiresAt())) {
+            throw reject(HttpStatus.GONE, "expired", "Download link expired");
+        }
+        return download;
+    }
+
+    private InvalidDownloadLinkException reject(HttpStatus status, String reason, String message) {
+        fileMetrics.recordDownloadLinkRejection(reason);
+        return new InvalidDownloadLinkException(status, reason, message);
+    }
+
+    private static byte[] mac(SecretKeySpec key, byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static byte[] encode(FileContentView file, Instant issuedAt, Instant expiresAt) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            out.writeLong(issuedAt.toEpochMilli());
+            out.writeLong(expiresAt.toEpochMilli());
+            out.writeLong(file.fileId().getMostSignificantBits());
+            out.writeLong(file.fileId().getLeastSignificantBits());
+            out.writeInt(file.version());
+            out.writeLong(file.sizeBytes());
+            out.writeLong(file.storedSizeBytes());
+            out.writeUTF(file.codec().name());
+            out.writeLong(file.updatedAt().toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(file.updatedAt().getNano());
+            out.writeUTF(file.contentHash());
+            out.writeUTF(file.storageKey());
+            writeNullable(out, file.fileName());
+            writeNullable(out, file.fileType());
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode download link", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static SignedDownload decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        if (in.readByte() != FORMAT) {
+            throw new IOException("Unknown download link format");
+        }
+        Instant issuedAt = Instant.ofEpochMilli(in.readLong());
+        Instant expiresAt = Instant.ofEpochMilli(in.readLong());
+        UUID fileId = new UUID(in.readLong(), in.readLong());
+        int version = in.readInt();
+        long sizeBytes = in.readLong();
+        long storedSizeBytes = in.readLong();
+        ContentCodec codec = ContentCodec.valueOf(in.readUTF());
+        LocalDateTime updatedAt = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+        String contentHash = in.readUTF();
+        String storageKey = in.readUTF();
+        String fileName = readNullable(in);
+        String fileType = readNullable(in);
+        FileContentView content = new FileContentView(fileId, fileName, fileType, sizeBytes, contentHash, version,
+                updatedAt, storageKey, codec, storedSizeBytes);
+        return new SignedDownload(content, issuedAt, expiresAt);
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,30 @@
+package zw.co.isusu.fileservice.signing;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown for download links that were not issued by this service or have expired.
+ * {@code 403} means the link is malformed or its signature does not verify, {@code 410} that it expired.
+ */
+public class InvalidDownloadLinkException extends Exception {
+
+    private final HttpStatus status;
+    private final String reason;
+
+    public InvalidDownloadLinkException(HttpStatus status, String reason, String message) {
+        super(message);
+        this.status = status;
+        this.reason = reason;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Short cause of the rejection, used in meter tags.
+     */
+    public String getReason() {
+        return reason;
+    }
+}
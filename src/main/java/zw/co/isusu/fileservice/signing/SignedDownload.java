@@ -0,0 +1,10 @@
+package zw.co.isusu.fileservice.signing;
+
+import zw.co.isusu.fileservice.persistence.projection.FileContentView;
+
+import java.time.Instant;
+
+/**
+ * The contents of a verified download link: the file as it was when the link was issued.
+ */
+public record SignedDownload(FileContentView content, Instant issuedAt, Instant expiresAt) { }
@@ -0,0 +1,10 @@
+package zw.co.isusu.fileservice.signing;
+
+import java.time.Instant;
+
+/**
+ * A signed download link as issued.
+ *
+ * @param token path segment of the link, carrying everything needed to stream the file
+ */
+public record SignedDownloadLink(String token, Instant expiresAt) { }
@@ -0,0 +1,52 @@
+package zw.co.isusu.fileservice.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Read handle for the contents of a blob. Opening a source is cheap; bytes are
+ * only read when a stream is opened or a range is transferred.
+ */
+public interface BlobSource {
+
+    int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Opens a stream over the blob, starting at the given byte offset.
+     */
+    InputStream openStream(long position) throws IOException;
+
+    /**
+     * Copies {@code count} bytes starting at {@code position} to the target channel.
+     * Stores that can do better than a buffered copy override this.
+     */
+    default void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(TRANSFER_BUFFER_SIZE, Math.max(count, 1)));
+        try (InputStream in = openStream(position)) {
+            long remaining = count;
+            while (remaining > 0) {
+                int read = in.read(buffer.array(), 0, (int) Math.min(buffer.capacity(), remaining));
+                if (read < 0) {
+                    throw new IOException("Blob ended " + remaining + " bytes before the requested range");
+                }
+                buffer.position(0).limit(read);
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                remaining -= read;
+            }
+        }
+    }
+
+    /**
+     * The local file holding the blob, when the store keeps blobs as plain files.
+     * Lets the web layer hand the transfer to the container's sendfile support.
+     */
+    default Optional<Path> localFile() {
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,40 @@
+package zw.co.isusu.fileservice.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Abstraction over the place where file contents are kept.
+ * Contents are always written and read as streams so that no caller
+ * needs to hold a whole file in memory.
+ */
+public interface BlobStore {
+
+    /**
+     * Opens a writer for a new blob. The blob only becomes visible once
+     * {@link BlobWriter#commit()} returns its key.
+     */
+    BlobWriter newWriter() throws IOException;
+
+    /**
+     * Takes ownership of a fully written local file and stores it as a new blob.
+     * The file no longer exists at its old path once this returns.
+     */
+    default String importFile(Path file) throws IOException {
+        String key;
+        try (InputStream in = Files.newInputStream(file); BlobWriter writer = newWriter()) {
+            in.transferTo(writer);
+            key = writer.commit();
+        }
+        Files.delete(file);
+        return key;
+    }
+
+    BlobSource open(String key) throws IOException;
+
+    long size(String key) throws IOException;
+
+    void delete(String key) throws IOException;
+}
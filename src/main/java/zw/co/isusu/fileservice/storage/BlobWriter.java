@@ -0,0 +1,16 @@
+package zw.co.isusu.fileservice.storage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream for a blob being written to a {@link BlobStore}.
+ * Closing a writer that has not been committed discards everything written to it.
+ */
+public abstract class BlobWriter extends OutputStream {
+
+    /**
+     * Makes the written bytes durable and returns the key of the new blob.
+     */
+    public abstract String commit() throws IOException;
+}
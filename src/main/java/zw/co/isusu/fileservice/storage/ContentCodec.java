@@ -0,0 +1,119 @@
+package zw.co.isusu.fileservice.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoding applied to the contents of a blob before they reach the {@link BlobStore}.
+ * Digests and sizes recorded for files always refer to the decoded contents.
+ */
+public enum ContentCodec {
+
+    IDENTITY(null) {
+        @Override
+        public OutputStream encode(OutputStream out) {
+            return new UnclosableOutputStream(out);
+        }
+
+        @Override
+        public BlobSource decode(BlobSource stored) {
+            return stored;
+        }
+    },
+
+    GZIP("gzip") {
+        @Override
+        public OutputStream encode(OutputStream out) throws IOException {
+            return new GZIPOutputStream(new UnclosableOutputStream(out), BUFFER_SIZE);
+        }
+
+        @Override
+        public BlobSource decode(BlobSource stored) {
+            return position -> {
+                InputStream in = new GZIPInputStream(stored.openStream(0), BUFFER_SIZE);
+                try {
+                    in.skipNBytes(position);
+                } catch (IOException e) {
+                    in.close();
+                    throw e;
+                }
+                return in;
+            };
+        }
+    },
+
+    /**
+     * Contents made of other blobs, the chunks listed in its manifest. Nothing is stored
+     * under the storage key itself; the blob service reassembles the chunks on reading.
+     */
+    CHUNKED(null) {
+        @Override
+        public OutputStream encode(OutputStream out) {
+            throw new UnsupportedOperationException("Chunked blobs are written chunk by chunk");
+        }
+
+        @Override
+        public BlobSource decode(BlobSource stored) {
+            throw new UnsupportedOperationException("Chunked blobs are opened through the blob service");
+        }
+    };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String contentCoding;
+
+    ContentCodec(String contentCoding) {
+        this.contentCoding = contentCoding;
+    }
+
+    /**
+     * The HTTP content-coding token for this codec, or null when the stored bytes cannot be
+     * sent as they are.
+     */
+    public String contentCoding() {
+        return contentCoding;
+    }
+
+    /**
+     * Wraps the target in an encoder. Closing the returned stream finishes the encoding
+     * but leaves the target open, so a {@link BlobWriter} can still be committed.
+     */
+    public abstract OutputStream encode(OutputStream out) throws IOException;
+
+    /**
+     * Returns a source serving the decoded contents of a stored blob.
+     */
+    public abstract BlobSource decode(BlobSource stored);
+
+    private static final class UnclosableOutputStream extends OutputStream {
+
+        private final OutputStream out;
+
+        private UnclosableOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package zw.co.isusu.fileservice.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.SplittableRandom;
+
+/**
+ * Splits a stream into content-defined chunks with a FastCDC-style gear hash.
+ * <p>
+ * Cut points depend only on the bytes just before them, so an edit only changes the chunks
+ * around it and the rest of the stream splits exactly as before. Normalised chunking makes
+ * cuts harder to find before the average size and easier after it, which keeps chunk sizes
+ * close to the average. Only one maximum-sized chunk is buffered at a time.
+ * <p>
+ * The gear table is derived from a fixed seed: changing it would change every cut point and
+ * so stop new contents from sharing chunks with stored ones.
+ */
+public final class ContentDefinedChunker {
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x6765617243444321L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final int minSize;
+    private final int avgSize;
+    private final int maxSize;
+    private final long maskSmall;
+    private final long maskLarge;
+
+    public ContentDefinedChunker(int minSize, int avgSize, int maxSize) {
+        if (minSize <= 0 || minSize > avgSize || avgSize > maxSize) {
+            throw new IllegalArgumentException("Chunk sizes must satisfy 0 < min <= avg <= max");
+        }
+        this.minSize = minSize;
+        this.avgSize = avgSize;
+        this.maxSize = maxSize;
+        int bits = 63 - Long.numberOfLeadingZeros(avgSize);
+        // Shifting left moves older bytes up, so bit k only depends on the last k + 1 bytes. Masks
+        // take the top bits, which see the whole 64-byte window rather than the last few bytes.
+        this.maskSmall = mask(bits + 2);
+        this.maskLarge = mask(Math.max(1, bits - 2));
+    }
+
+    public Chunks split(InputStream in) {
+        return new Chunks(in);
+    }
+
+    /**
+     * Length of the first chunk in {@code buffer[0, length)}.
+     */
+    int cut(byte[] buffer, int length) {
+        if (length <= minSize) {
+            return length;
+        }
+        int end = Math.min(length, maxSize);
+        int normal = Math.min(end, avgSize);
+        long hash = 0;
+        int i = minSize;
+        for (; i < normal; i++) {
+            hash = (hash << 1) + GEAR[buffer[i] & 0xff];
+            if ((hash & maskSmall) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < end; i++) {
+            hash = (hash << 1) + GEAR[buffer[i] & 0xff];
+            if ((hash & maskLarge) == 0) {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    private static long mask(int bits) {
+        return -1L << (64 - bits);
+    }
+
+    /**
+     * Cursor over the chunks of one stream. After {@link #next()} returns true the current
+     * chunk is {@code buffer()[0, length())}; the buffer is reused by the following call.
+     */
+    public final class Chunks {
+
+        private final InputStream in;
+        private final byte[] buffer = new byte[maxSize];
+        private int filled;
+        private int length;
+        private boolean exhausted;
+
+        private Chunks(InputStream in) {
+            this.in = in;
+        }
+
+        public boolean next() throws IOException {
+            if (length > 0) {
+                System.arraycopy(buffer, length, buffer, 0, filled - length);
+                filled -= length;
+                length = 0;
+            }
+            if (!exhausted) {
+                int read = in.readNBytes(buffer, filled, buffer.length - filled);
+                filled += read;
+                exhausted = filled < buffer.length;
+            }
+            if (filled == 0) {
+                return false;
+            }
+            length = cut(buffer, filled);
+            return true;
+        }
+
+        public byte[] buffer() {
+            return buffer;
+        }
+
+        public int length() {
+            return length;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package zw.co.isusu.fileservice.storage;
+
+/**
+ * Where the bytes of a blob are kept. New blobs are always written to the hot tier;
+ * blobs nobody reads any more are moved to the cold tier and back once they are read again.
+ */
+public enum StorageTier {
+    HOT,
+    COLD
+}
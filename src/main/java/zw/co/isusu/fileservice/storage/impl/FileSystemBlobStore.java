@@ -0,0 +1,379 @@
+package zw.co.isusu.fileservice.storage.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import zw.co.isusu.fileservice.config.StorageProperties;
+import zw.co.isusu.fileservice.storage.BlobSource;
+import zw.co.isusu.fileservice.storage.BlobStore;
+import zw.co.isusu.fileservice.storage.BlobWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Blob store keeping each blob as a file under one or more local volumes.
+ * Blobs are written to a temporary file first and moved into place on commit,
+ * so readers never observe a partially written blob. Commit forces the file, and then
+ * the directory entry of the move, to disk, so a committed blob survives a crash.
+ * <p>
+ * With several volumes, each blob is placed on the volume a {@link VolumeRing} assigns its key
+ * to, so blobs, and the reads and writes of concurrent transfers, spread over the volumes in
+ * proportion to their weights. The key is chosen before the first byte is written, so the
+ * temporary file already lives on the right volume and commit stays a rename. Keys are found
+ * on the volume they belong on, or on any other while the {@link VolumeRebalancer} has not yet
+ * moved them there after a volume was added.
+ */
+@Slf4j
+@Component
+@Qualifier(TieredBlobStore.HOT)
+@ConditionalOnProperty(name = "file-service.storage.type", havingValue = "filesystem", matchIfMissing = true)
+public class FileSystemBlobStore implements BlobStore {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final List<Volume> volumes;
+    private final VolumeRing<Volume> ring;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    @Autowired
+    public FileSystemBlobStore(StorageProperties properties) throws IOException {
+        this(properties.effectiveVolumes());
+    }
+
+    public FileSystemBlobStore(Path root) throws IOException {
+        this(List.of(new StorageProperties.Volume(root, 1)));
+    }
+
+    private FileSystemBlobStore(List<StorageProperties.Volume> volumes) throws IOException {
+        this.volumes = volumes.stream().map(volume -> new Volume(volume.path().toAbsolutePath().normalize())).toList();
+        for (Volume volume : this.volumes) {
+            Files.createDirectories(volume.tmp());
+        }
+        this.ring = new VolumeRing<>(this.volumes,
+                this.volumes.stream().map(volume -> volume.root().toString()).toList(),
+                volumes.stream().map(StorageProperties.Volume::weight).toList());
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        volumes.forEach(volume -> log.info("Filesystem blob store volume at {} with weight {}", volume.path(), volume.weight()));
+    }
+
+    @Override
+    public BlobWriter newWriter() throws IOException {
+        UUID key = UUID.randomUUID();
+        Path file = Files.createTempFile(ring.owner(key).tmp(), "upload-", ".part");
+        return new FileBlobWriter(key, file, FileChannel.open(file, StandardOpenOption.WRITE));
+    }
+
+    /**
+     * Moves the file into place without copying it when it lives on the same volume,
+     * syncing it the same way {@link FileBlobWriter#commit()} does.
+     */
+    @Override
+    public String importFile(Path file) throws IOException {
+        UUID key = UUID.randomUUID();
+        Path target = ring.owner(key).resolve(key);
+        Files.createDirectories(target.getParent());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        try {
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(target.getParent());
+            return key.toString();
+        } catch (AtomicMoveNotSupportedException e) {
+            return BlobStore.super.importFile(file);
+        }
+    }
+
+    @Override
+    public BlobSource open(String key) throws IOException {
+        UUID id = UUID.fromString(key);
+        Path file = locate(id);
+        if (!Files.isRegularFile(file)) {
+            throw new NoSuchFileException(file.toString());
+        }
+        return new FileBlobSource(id);
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        return Files.size(locate(UUID.fromString(key)));
+    }
+
+    /**
+     * Deletes the blob from every volume, including a copy the rebalancer may be moving.
+     */
+    @Override
+    public void delete(String key) throws IOException {
+        UUID id = UUID.fromString(key);
+        ReentrantLock lock = lock(id);
+        lock.lock();
+        try {
+            for (Volume volume : volumes) {
+                Files.deleteIfExists(volume.resolve(id));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves blobs found on a volume other than the one they belong on, as left behind when a
+     * volume was added or weights changed.
+     *
+     * @param maxMoves most blobs to move
+     * @return the blobs moved, and whether every volume was walked
+     */
+    Rebalance rebalance(int maxMoves) throws IOException {
+        int moved = 0;
+        long bytes = 0;
+        if (volumes.size() < 2) {
+            return new Rebalance(0, 0, true);
+        }
+        for (Volume volume : volumes) {
+            try (Stream<Path> files = Files.walk(volume.root(), 3)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    UUID id = volume.keyOf(file);
+                    if (id == null) {
+                        continue;
+                    }
+                    Volume owner = ring.owner(id);
+                    if (owner == volume) {
+                        continue;
+                    }
+                    if (moved == maxMoves) {
+                        return new Rebalance(moved, bytes, false);
+                    }
+                    long size = moveTo(id, file, owner);
+                    if (size >= 0) {
+                        moved++;
+                        bytes += size;
+                    }
+                }
+            }
+        }
+        return new Rebalance(moved, bytes, true);
+    }
+
+    /**
+     * Copies the blob onto its volume and deletes the misplaced file. Readers find one of the
+     * two throughout; a delete of the same key waits for the move.
+     *
+     * @return the size of the moved blob, or -1 if it was deleted meanwhile
+     */
+    private long moveTo(UUID id, Path source, Volume owner) throws IOException {
+        ReentrantLock lock = lock(id);
+        lock.lock();
+        try {
+            if (!Files.isRegularFile(source)) {
+                return -1;
+            }
+            long size = Files.size(source);
+            Path target = owner.resolve(id);
+            if (!Files.exists(target)) {
+                Path part = Files.createTempFile(owner.tmp(), "rebalance-", ".part");
+                try {
+                    Files.copy(source, part, StandardCopyOption.REPLACE_EXISTING);
+                    Files.createDirectories(target.getParent());
+                    Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(part);
+                }
+            }
+            Files.delete(source);
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The file of the blob on the volume it belongs on, or wherever else it is found.
+     */
+    private Path locate(UUID id) {
+        Volume owner = ring.owner(id);
+        Path file = owner.resolve(id);
+        if (volumes.size() == 1 || Files.exists(file)) {
+            return file;
+        }
+        for (Volume volume : volumes) {
+            Path misplaced = volume.resolve(id);
+            if (volume != owner && Files.exists(misplaced)) {
+                return misplaced;
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Forces the entries of a directory to disk. Not every platform can open a directory,
+     * in which case the move is left to the file system to persist.
+     */
+    private static void syncDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException e) {
+            log.debug("Cannot sync directory {} on this platform", directory);
+        }
+    }
+
+    private ReentrantLock lock(UUID id) {
+        return locks[Math.floorMod(id.hashCode(), LOCK_STRIPES)];
+    }
+
+    /**
+     * Outcome of a rebalancing run.
+     *
+     * @param complete false if the run stopped at its move limit
+     */
+    record Rebalance(int moved, long bytes, boolean complete) { }
+
+    private record Volume(Path root, Path tmp) {
+
+        Volume(Path root) {
+            this(root, root.resolve("tmp"));
+        }
+
+        /**
+         * Spreads blobs over two levels of sub-directories so that no single directory grows too large.
+         */
+        Path resolve(UUID id) {
+            String name = id.toString();
+            return root.resolve(name.substring(0, 2)).resolve(name.substring(2, 4)).resolve(name);
+        }
+
+        /**
+         * The key of a blob file under this volume, or null for anything else.
+         */
+        UUID keyOf(Path file) {
+            if (file.startsWith(tmp) || root.relativize(file).getNameCount() != 3 || !Files.isRegularFile(file)) {
+                return null;
+            }
+            try {
+                return UUID.fromString(file.getFileName().toString());
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Reads ranges with {@link FileChannel#transferTo}, which lets the kernel move
+     * the bytes without copying them through the Java heap where the target allows it.
+     * The file is located on every read, as the rebalancer may have moved it since the blob was opened.
+     */
+    private final class FileBlobSource implements BlobSource {
+
+        private final UUID id;
+
+        private FileBlobSource(UUID id) {
+            this.id = id;
+        }
+
+        @Override
+        public InputStream openStream(long position) throws IOException {
+            FileChannel channel = openChannel();
+            channel.position(position);
+            return Channels.newInputStream(channel);
+        }
+
+        @Override
+        public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            try (FileChannel channel = openChannel()) {
+                long transferred = 0;
+                while (transferred < count) {
+                    long sent = channel.transferTo(position + transferred, count - transferred, target);
+                    if (sent <= 0 && position + transferred >= channel.size()) {
+                        throw new IOException("Blob ended before the requested range: " + id);
+                    }
+                    transferred += sent;
+                }
+            }
+        }
+
+        @Override
+        public Optional<Path> localFile() {
+            return Optional.of(locate(id));
+        }
+
+        private FileChannel openChannel() throws IOException {
+            try {
+                return FileChannel.open(locate(id), StandardOpenOption.READ);
+            } catch (NoSuchFileException e) {
+                // Moved between locating and opening it
+                return FileChannel.open(locate(id), StandardOpenOption.READ);
+            }
+        }
+    }
+
+    private final class FileBlobWriter extends BlobWriter {
+
+        private final UUID key;
+        private final Path file;
+        private final FileChannel channel;
+        private final OutputStream out;
+        private boolean closed;
+
+        private FileBlobWriter(UUID key, Path file, FileChannel channel) {
+            this.key = key;
+            this.file = file;
+            this.channel = channel;
+            this.out = Channels.newOutputStream(channel);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public String commit() throws IOException {
+            channel.force(true);
+            out.close();
+            Path target = ring.owner(key).resolve(key);
+            Files.createDirectories(target.getParent());
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+            closed = true;
+            syncDirectory(target.getParent());
+            return key.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                out.close();
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package zw.co.isusu.fileservice.storage.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.postgresql.PGConnection;
+import org.postgresql.largeobject.LargeObject;
+import org.postgresql.largeobject.LargeObjectManager;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import zw.co.isusu.fileservice.storage.BlobSource;
+import zw.co.isusu.fileservice.storage.BlobStore;
+import zw.co.isusu.fileservice.storage.BlobWriter;
+
+import javax.sql.DataSource;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Blob store keeping each blob as a PostgreSQL large object, keyed by its OID.
+ * Large objects are streamed in pages by the driver, so reads and writes never
+ * materialise the whole blob. Large object handles are only valid inside a transaction,
+ * so an operation called inside a Spring-managed transaction runs on that transaction's
+ * connection, and only otherwise takes a connection and transaction of its own. A caller
+ * holding a pooled connection therefore never waits on the pool for a second one; streams
+ * opened inside a transaction must be read before it ends.
+ */
+@Component
+@RequiredArgsConstructor
+@Qualifier(TieredBlobStore.HOT)
+@ConditionalOnProperty(name = "file-service.storage.type", havingValue = "postgres")
+public class PostgresLargeObjectBlobStore implements BlobStore {
+
+    private final DataSource dataSource;
+
+    @Override
+    public BlobWriter newWriter() throws IOException {
+        Lease lease = begin();
+        try {
+            LargeObjectManager manager = largeObjects(lease.connection());
+            long oid = manager.createLO(LargeObjectManager.READWRITE);
+            LargeObject largeObject = manager.open(oid, LargeObjectManager.WRITE);
+            return new LargeObjectWriter(lease, manager, largeObject, oid);
+        } catch (SQLException e) {
+            lease.abandon();
+            throw new IOException("Failed to create large object", e);
+        }
+    }
+
+    @Override
+    public BlobSource open(String key) {
+        long oid = Long.parseLong(key);
+        return position -> openStream(oid, position);
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        Lease lease = begin();
+        try {
+            LargeObject largeObject = largeObjects(lease.connection()).open(Long.parseLong(key), LargeObjectManager.READ);
+            long size = largeObject.size64();
+            largeObject.close();
+            lease.commit();
+            return size;
+        } catch (SQLException e) {
+            lease.abandon();
+            throw new IOException("Failed to read size of large object " + key, e);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Lease lease = begin();
+        try {
+            largeObjects(lease.connection()).unlink(Long.parseLong(key));
+            lease.commit();
+        } catch (SQLException e) {
+            lease.abandon();
+            throw new IOException("Failed to delete large object " + key, e);
+        }
+    }
+
+    private InputStream openStream(long oid, long position) throws IOException {
+        Lease lease = begin();
+        try {
+            LargeObject largeObject = largeObjects(lease.connection()).open(oid, LargeObjectManager.READ);
+            largeObject.seek64(position, LargeObject.SEEK_SET);
+            return new FilterInputStream(largeObject.getInputStream()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                        largeObject.close();
+                        lease.commit();
+                    } catch (SQLException e) {
+                        lease.abandon();
+                        throw new IOException("Failed to close large object " + oid, e);
+                    }
+                }
+            };
+        } catch (SQLException e) {
+            lease.abandon();
+            throw new IOException("Failed to open large object " + oid, e);
+        }
+    }
+
+    private Lease begin() throws IOException {
+        // Synchronization is already cleared while after-completion callbacks run, so those get
+        // a connection of their own instead of the finished transaction's
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && TransactionSynchronizationManager.isActualTransactionActive()) {
+            return new Lease(DataSourceUtils.getConnection(dataSource), true);
+        }
+        try {
+            Connection connection = dataSource.getConnection();
+            try {
+                connection.setAutoCommit(false);
+            } catch (SQLException e) {
+                closeQuietly(connection);
+                throw e;
+            }
+            return new Lease(connection, false);
+        } catch (SQLException e) {
+            throw new IOException("Failed to obtain connection for large object access", e);
+        }
+    }
+
+    private static LargeObjectManager largeObjects(Connection connection) throws SQLException {
+        return connection.unwrap(PGConnection.class).getLargeObjectAPI();
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // nothing left to release
+        }
+    }
+
+    /**
+     * A connection used for one large object operation. A joined connection belongs to the
+     * surrounding transaction, which commits or rolls it back; an own connection is committed
+     * or rolled back here and closed.
+     */
+    private final class Lease {
+
+        private final Connection connection;
+        private final boolean joined;
+        private boolean released;
+
+        private Lease(Connection connection, boolean joined) {
+            this.connection = connection;
+            this.joined = joined;
+        }
+
+        Connection connection() {
+            return connection;
+        }
+
+        boolean joined() {
+            return joined;
+        }
+
+        void commit() throws SQLException {
+            try {
+                if (!joined) {
+                    connection.commit();
+                }
+            } finally {
+                release();
+            }
+        }
+
+        void abandon() {
+            try {
+                if (!joined && !released) {
+                    connection.rollback();
+                }
+            } catch (SQLException ignored) {
+                // the connection is released below either way
+            } finally {
+                release();
+            }
+        }
+
+        private void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            if (joined) {
+                DataSourceUtils.releaseConnection(connection, dataSource);
+            } else {
+                closeQuietly(connection);
+            }
+        }
+    }
+
+    private static final class LargeObjectWriter extends BlobWriter {
+
+        private final Lease lease;
+        private final LargeObjectManager manager;
+        private final LargeObject largeObject;
+        private final OutputStream out;
+        private final long oid;
+        private boolean closed;
+
+        private LargeObjectWriter(Lease lease, LargeObjectManager manager, LargeObject largeObject, long oid)
+                throws SQLException {
+            this.lease = lease;
+            this.manager = manager;
+            this.largeObject = largeObject;
+            this.out = largeObject.getOutputStream();
+            this.oid = oid;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public String commit() throws IOException {
+            closed = true;
+            try {
+                out.close();
+                largeObject.close();
+                lease.commit();
+                return Long.toString(oid);
+            } catch (SQLException e) {
+                lease.abandon();
+                throw new IOException("Failed to commit large object " + oid, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (lease.joined()) {
+                // the surrounding transaction may still commit, so the object is dropped explicitly
+                try {
+                    largeObject.close();
+                    manager.unlink(oid);
+                } catch (SQLException ignored) {
+                    // a failed statement aborts the surrounding transaction, which drops it too
+                }
+            }
+            // rolling back an own transaction drops the large object created in it
+            lease.abandon();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package zw.co.isusu.fileservice.storage.impl;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import zw.co.isusu.fileservice.config.TieringProperties;
+import zw.co.isusu.fileservice.storage.BlobSource;
+import zw.co.isusu.fileservice.storage.BlobStore;
+import zw.co.isusu.fileservice.storage.BlobWriter;
+import zw.co.isusu.fileservice.storage.StorageTier;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Blob store spanning the configured store, which holds the hot tier, and a directory
+ * holding the cold tier.
+ * <p>
+ * New blobs are always written to the hot tier. Keys of cold blobs carry a prefix, so every
+ * reader finds the bytes of a blob from its key alone, whichever tier it was moved to.
+ */
+@Primary
+@Component
+public class TieredBlobStore implements BlobStore {
+
+    /**
+     * Qualifier of the store holding the hot tier.
+     */
+    public static final String HOT = "hot";
+
+    private static final String COLD_PREFIX = "cold/";
+
+    private final BlobStore hot;
+    private final BlobStore cold;
+
+    public TieredBlobStore(@Qualifier(HOT) BlobStore hot, TieringProperties properties) throws IOException {
+        this.hot = hot;
+        this.cold = new FileSystemBlobStore(properties.coldRoot());
+    }
+
+    public static StorageTier tierOf(String key) {
+        return key.startsWith(COLD_PREFIX) ? StorageTier.COLD : StorageTier.HOT;
+    }
+
+    @Override
+    public BlobWriter newWriter() throws IOException {
+        return hot.newWriter();
+    }
+
+    /**
+     * Opens a writer for a new blob in the given tier.
+     */
+    public BlobWriter newWriter(StorageTier tier) throws IOException {
+        return tier == StorageTier.COLD ? new ColdBlobWriter(cold.newWriter()) : hot.newWriter();
+    }
+
+    @Override
+    public String importFile(Path file) throws IOException {
+        return hot.importFile(file);
+    }
+
+    @Override
+    public BlobSource open(String key) throws IOException {
+        return tierOf(key) == StorageTier.COLD ? cold.open(coldKey(key)) : hot.open(key);
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        return tierOf(key) == StorageTier.COLD ? cold.size(coldKey(key)) : hot.size(key);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        if (tierOf(key) == StorageTier.COLD) {
+            cold.delete(coldKey(key));
+        } else {
+            hot.delete(key);
+        }
+    }
+
+    private static String coldKey(String key) {
+        return key.substring(COLD_PREFIX.length());
+    }
+
+    /**
+     * Writer into the cold tier, prefixing the key it commits to.
+     */
+    private static final class ColdBlobWriter extends BlobWriter {
+
+        private final BlobWriter writer;
+
+        private ColdBlobWriter(BlobWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            writer.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            writer.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public String commit() throws IOException {
+            return COLD_PREFIX + writer.commit();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package zw.co.isusu.fileservice.storage.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import zw.co.isusu.fileservice.config.StorageProperties;
+
+import java.io.IOException;
+
+/**
+ * Moves blobs of the {@link FileSystemBlobStore} onto the volume they belong on after a volume
+ * was added or weights changed, while the store keeps serving them from wherever they are.
+ * <p>
+ * Placement only changes with the configuration, so once a run walked every volume without
+ * moving anything the rebalancer stays idle until the next restart. Progress is published as
+ * {@code file.storage.rebalanced.*} meters.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "file-service.storage.type", havingValue = "filesystem", matchIfMissing = true)
+public class VolumeRebalancer {
+
+    private final FileSystemBlobStore blobStore;
+    private final StorageProperties properties;
+    private final Counter movedBlobs;
+    private final Counter movedBytes;
+    private volatile boolean balanced;
+
+    public VolumeRebalancer(FileSystemBlobStore blobStore, StorageProperties properties, MeterRegistry meterRegistry) {
+        this.blobStore = blobStore;
+        this.properties = properties;
+        this.movedBlobs = Counter.builder("file.storage.rebalanced.blobs")
+                .description("Blobs moved onto the volume they belong on")
+                .register(meterRegistry);
+        this.movedBytes = Counter.builder("file.storage.rebalanced.bytes")
+                .description("Bytes moved onto the volume they belong on")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${file-service.storage.rebalance-interval:PT10M}", initialDelayString = "${file-service.storage.rebalance-initial-delay:PT1M}")
+    public void rebalance() {
+        if (balanced) {
+            return;
+        }
+        try {
+            FileSystemBlobStore.Rebalance run = blobStore.rebalance(properties.rebalanceMovesPerRun());
+            movedBlobs.increment(run.moved());
+            movedBytes.increment(run.bytes());
+            if (run.moved() > 0) {
+                log.info("Moved {} blobs ({} bytes) onto the volume they belong on", run.moved(), run.bytes());
+            }
+            balanced = run.complete() && run.moved() == 0;
+        } catch (IOException e) {
+            log.warn("Failed to rebalance blob store volumes", e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package zw.co.isusu.fileservice.storage.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Consistent hash ring placing blob keys on volumes. Every volume owns points on the ring in
+ * proportion to its weight; a key belongs to the volume owning the first point at or after
+ * the hash of the key. Adding a volume therefore only moves the keys that now fall on its
+ * points, roughly its share of the total weight, and no key moves between the old volumes.
+ * Points are derived from the volume paths, so the placement is the same after every restart.
+ */
+final class VolumeRing<V> {
+
+    private static final int POINTS_PER_WEIGHT = 64;
+
+    private final long[] points;
+    private final Object[] owners;
+
+    /**
+     * @param names   stable names of the volumes, e.g. their paths
+     * @param weights relative weights of the volumes
+     */
+    VolumeRing(List<V> volumes, List<String> names, List<Integer> weights) {
+        int total = weights.stream().mapToInt(Integer::intValue).sum() * POINTS_PER_WEIGHT;
+        long[][] entries = new long[total][];
+        int next = 0;
+        for (int volume = 0; volume < volumes.size(); volume++) {
+            for (int point = 0; point < weights.get(volume) * POINTS_PER_WEIGHT; point++) {
+                entries[next++] = new long[]{hash(names.get(volume) + "#" + point), volume};
+            }
+        }
+        Arrays.sort(entries, (a, b) -> Long.compareUnsigned(a[0], b[0]));
+        this.points = new long[total];
+        this.owners = new Object[total];
+        for (int i = 0; i < total; i++) {
+            points[i] = entries[i][0];
+            owners[i] = volumes.get((int) entries[i][1]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    V owner(UUID key) {
+        long hash = mix(key.getMostSignificantBits() ^ Long.rotateLeft(key.getLeastSignificantBits(), 32));
+        int low = 0;
+        int high = points.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(points[mid], hash) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return (V) owners[low == points.length ? 0 : low];
+    }
+
+    private static long hash(String name) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(name.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                hash = (hash << 8) | (digest[i] & 0xFF);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Finalizer of SplitMix64, spreading the bits of a key evenly over the ring.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,3 @@
+-- Run by Hibernate after it creates the schema, for what the entity mappings cannot express.
+-- Prefix searches use LIKE 'prefix%', which a btree only serves under the C collation or a pattern operator class.
+create index idx_files_file_name on files (file_name text_pattern_ops);
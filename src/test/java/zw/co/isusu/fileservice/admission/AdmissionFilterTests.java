@@ -0,0 +1,101 @@
+package zw.co.isusu.fileservice.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+import zw.co.isusu.fileservice.config.AdmissionProperties;
+import zw.co.isusu.fileservice.metrics.FileMetrics;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionFilterTests {
+
+    private static final String DOWNLOAD = "/api/files/download/3f2b1c3e-6d0a-4a57-9a53-0d6c8e7f1a11";
+
+    private final AdmissionProperties properties = new AdmissionProperties(true, DataSize.ofMegabytes(1),
+            Duration.ofSeconds(5), "X-Forwarded-For", 1, 1, DataSize.ofBytes(0), 1, 1, DataSize.ofBytes(0),
+            1, 1, DataSize.ofBytes(0));
+    private final AdmissionFilter filter = new AdmissionFilter(
+            new AdmissionGate(properties, new MultipartProperties(), new FileMetrics(new SimpleMeterRegistry())),
+            properties);
+
+    @Test
+    void rejectsBeforeTheRequestReachesTheController() throws ServletException, IOException {
+        MockHttpServletRequest held = download("10.0.0.1");
+        filter.doFilter(held, new MockHttpServletResponse(), (request, response) -> request.startAsync());
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(download("10.0.0.1"), rejected, chain);
+
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        assertThat(rejected.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("5");
+        assertThat(chain.getRequest()).isNull();
+    }
+
+    @Test
+    void releasesTheAdmissionWhenTheResponseIsComplete() throws ServletException, IOException {
+        filter.doFilter(download("10.0.0.1"), new MockHttpServletResponse(), new MockFilterChain());
+
+        MockHttpServletResponse next = new MockHttpServletResponse();
+        filter.doFilter(download("10.0.0.1"), next, new MockFilterChain());
+
+        assertThat(next.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void holdsTheAdmissionOfAnAsyncResponseUntilItCompletes() throws ServletException, IOException {
+        MockHttpServletRequest streaming = download("10.0.0.1");
+        FilterChain startsAsync = (request, response) -> request.startAsync();
+        filter.doFilter(streaming, new MockHttpServletResponse(), startsAsync);
+
+        MockHttpServletResponse whileStreaming = new MockHttpServletResponse();
+        filter.doFilter(download("10.0.0.2"), whileStreaming, new MockFilterChain());
+        streaming.getAsyncContext().complete();
+        MockHttpServletResponse afterwards = new MockHttpServletResponse();
+        filter.doFilter(download("10.0.0.2"), afterwards, new MockFilterChain());
+
+        assertThat(whileStreaming.getStatus()).isEqualTo(503);
+        assertThat(afterwards.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void identifiesClientsByTheEntryTheProxyAppended() throws ServletException, IOException {
+        MockHttpServletRequest held = download("198.51.100.7, 10.0.0.1");
+        filter.doFilter(held, new MockHttpServletResponse(), (request, response) -> request.startAsync());
+
+        // A forged leftmost entry does not make the same client look like another one
+        MockHttpServletRequest forged = download("203.0.113.9, 10.0.0.1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(forged, response, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(429);
+    }
+
+    @Test
+    void passesRequestsWithoutFileContentsThrough() throws ServletException, IOException {
+        MockHttpServletRequest listing = new MockHttpServletRequest("GET", "/api/files");
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(listing, new MockHttpServletResponse(), chain);
+
+        assertThat(chain.getRequest()).isSameAs(listing);
+    }
+
+    private static MockHttpServletRequest download(String forwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", DOWNLOAD);
+        request.setAsyncSupported(true);
+        request.addHeader("X-Forwarded-For", forwardedFor);
+        return request;
+    }
+}
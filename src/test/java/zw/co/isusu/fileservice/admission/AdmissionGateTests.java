@@ -0,0 +1,91 @@
+package zw.co.isusu.fileservice.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.unit.DataSize;
+import zw.co.isusu.fileservice.config.AdmissionProperties;
+import zw.co.isusu.fileservice.metrics.FileMetrics;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdmissionGateTests {
+
+    private final AdmissionGate gate = new AdmissionGate(
+            new AdmissionProperties(true, DataSize.ofKilobytes(64), Duration.ofSeconds(5), null,
+                    2, 1, DataSize.ofBytes(0), 0, 0, DataSize.ofBytes(1000), 1, 1, DataSize.ofBytes(0)),
+            new MultipartProperties(),
+            new FileMetrics(new SimpleMeterRegistry()));
+
+    @Test
+    void rejectsASecondTransferOfTheSameClientWithTooManyRequests() throws AdmissionRejectedException {
+        gate.admit(TrafficClass.UPLOAD, "client-a", 1024);
+
+        assertThatThrownBy(() -> gate.admit(TrafficClass.UPLOAD, "client-a", 1024))
+                .isInstanceOfSatisfying(AdmissionRejectedException.class, e -> {
+                    assertThat(e.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+                    assertThat(e.getReason()).isEqualTo("client");
+                });
+    }
+
+    @Test
+    void rejectsTransfersBeyondTheClassLimitAsUnavailable() throws AdmissionRejectedException {
+        gate.admit(TrafficClass.UPLOAD, "client-a", 1024);
+        gate.admit(TrafficClass.UPLOAD, "client-b", 1024);
+
+        assertThatThrownBy(() -> gate.admit(TrafficClass.UPLOAD, "client-c", 1024))
+                .isInstanceOfSatisfying(AdmissionRejectedException.class, e -> {
+                    assertThat(e.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+                    assertThat(e.getReason()).isEqualTo("concurrency");
+                });
+    }
+
+    @Test
+    void rejectsUploadsBeyondTheBytesInFlight() throws AdmissionRejectedException {
+        gate.admit(TrafficClass.UPLOAD, "client-a", DataSize.ofKilobytes(48).toBytes());
+
+        assertThatThrownBy(() -> gate.admit(TrafficClass.UPLOAD, "client-b", DataSize.ofKilobytes(32).toBytes()))
+                .isInstanceOfSatisfying(AdmissionRejectedException.class,
+                        e -> assertThat(e.getReason()).isEqualTo("bytes"));
+        // The rejected upload gave back the class and client slots it had taken
+        assertThatCode(() -> gate.admit(TrafficClass.UPLOAD, "client-b", 1024)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void givesEverythingBackWhenTheTicketIsClosed() throws AdmissionRejectedException {
+        AdmissionGate.Ticket first = gate.admit(TrafficClass.UPLOAD, "client-a", DataSize.ofKilobytes(64).toBytes());
+
+        first.close();
+        first.close();
+
+        gate.admit(TrafficClass.UPLOAD, "client-a", DataSize.ofKilobytes(64).toBytes()).close();
+        gate.admit(TrafficClass.UPLOAD, "client-a", 1024);
+        // Closing twice released the slots once, so the class limit still holds
+        gate.admit(TrafficClass.UPLOAD, "client-b", 1024);
+        assertThatThrownBy(() -> gate.admit(TrafficClass.UPLOAD, "client-c", 1024))
+                .isInstanceOf(AdmissionRejectedException.class);
+    }
+
+    @Test
+    void keepsTrafficClassesApart() throws AdmissionRejectedException {
+        gate.admit(TrafficClass.EXPORT, "client-a", -1);
+
+        assertThatThrownBy(() -> gate.admit(TrafficClass.EXPORT, "client-b", -1))
+                .isInstanceOf(AdmissionRejectedException.class);
+        assertThatCode(() -> gate.admit(TrafficClass.DOWNLOAD, "client-a", -1)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void shapesOnlyClassesWithARate() {
+        assertThat(gate.bucket(TrafficClass.UPLOAD, "client-a")).isNull();
+        assertThat(gate.bucket(TrafficClass.DOWNLOAD, "client-a"))
+                .isNotNull()
+                .isSameAs(gate.bucket(TrafficClass.DOWNLOAD, "client-a"))
+                .isNotSameAs(gate.bucket(TrafficClass.DOWNLOAD, "client-b"));
+    }
+}
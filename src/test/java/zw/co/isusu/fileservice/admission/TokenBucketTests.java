@@ -0,0 +1,61 @@
+package zw.co.isusu.fileservice.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TokenBucketTests {
+
+    private static final long RATE = 10_000;
+
+    @Test
+    void passesABurstOfOneSecondWithoutWaiting() throws InterruptedIOException {
+        TokenBucket bucket = new TokenBucket(RATE);
+
+        long elapsed = timed(() -> bucket.consume(RATE));
+
+        assertThat(elapsed).isLessThan(TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    void holdsTheRateOnceTheBurstIsSpent() throws InterruptedIOException {
+        TokenBucket bucket = new TokenBucket(RATE);
+        bucket.consume(RATE);
+
+        long elapsed = timed(() -> {
+            for (int i = 0; i < 5; i++) {
+                bucket.consume(RATE / 10);
+            }
+        });
+
+        // Half a second's worth of bytes
+        assertThat(elapsed).isBetween(TimeUnit.MILLISECONDS.toNanos(400), TimeUnit.MILLISECONDS.toNanos(2000));
+    }
+
+    @Test
+    void stopsWaitingWhenInterrupted() {
+        TokenBucket bucket = new TokenBucket(RATE);
+        Thread.currentThread().interrupt();
+        try {
+            assertThatThrownBy(() -> bucket.consume(3 * RATE)).isInstanceOf(InterruptedIOException.class);
+            assertThat(Thread.currentThread().isInterrupted()).isTrue();
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    private static long timed(Consumption consumption) throws InterruptedIOException {
+        long started = System.nanoTime();
+        consumption.run();
+        return System.nanoTime() - started;
+    }
+
+    @FunctionalInterface
+    private interface Consumption {
+        void run() throws InterruptedIOException;
+    }
+}
@@ -0,0 +1,195 @@
+package zw.co.isusu.fileservice.api.support;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import zw.co.isusu.fileservice.config.HttpCacheProperties;
+import zw.co.isusu.fileservice.metrics.FileMetrics;
+import zw.co.isusu.fileservice.service.TieringService;
+import zw.co.isusu.fileservice.service.response.FileDownloadResponse;
+import zw.co.isusu.fileservice.storage.BlobSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class BlobResponseWriterTests {
+
+    private static final byte[] CONTENT = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes(StandardCharsets.US_ASCII);
+    private static final String HASH = "cafe".repeat(16);
+    private static final String ETAG = "\"" + HASH + "\"";
+    private static final LocalDateTime LAST_MODIFIED = LocalDateTime.of(2024, 5, 17, 9, 30, 12);
+
+    private final TieringService tieringService = mock(TieringService.class);
+    private final BlobResponseWriter writer = new BlobResponseWriter(
+            new HttpCacheProperties(Map.of(), "no-cache"), new FileMetrics(new SimpleMeterRegistry()), tieringService);
+
+    @Test
+    void sendsTheWholeFileWithoutRange() throws IOException {
+        MockHttpServletResponse response = write(get());
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsByteArray()).isEqualTo(CONTENT);
+        assertThat(response.getContentLengthLong()).isEqualTo(CONTENT.length);
+        assertThat(response.getHeader(HttpHeaders.ACCEPT_RANGES)).isEqualTo("bytes");
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(ETAG);
+        verify(tieringService).recordAccess(HASH);
+    }
+
+    @Test
+    void sendsASingleRangeAsPartialContent() throws IOException {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.RANGE, "bytes=10-15");
+
+        MockHttpServletResponse response = write(request);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 10-15/" + CONTENT.length);
+        assertThat(response.getContentAsString()).isEqualTo("abcdef");
+        assertThat(response.getContentLengthLong()).isEqualTo(6);
+    }
+
+    @Test
+    void sendsSuffixAndOpenEndedRanges() throws IOException {
+        MockHttpServletRequest suffix = get();
+        suffix.addHeader(HttpHeaders.RANGE, "bytes=-4");
+        MockHttpServletRequest openEnded = get();
+        openEnded.addHeader(HttpHeaders.RANGE, "bytes=30-");
+
+        assertThat(write(suffix).getContentAsString()).isEqualTo("wxyz");
+        assertThat(write(openEnded).getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 30-35/" + CONTENT.length);
+    }
+
+    @Test
+    void sendsSeveralRangesAsMultipartByteranges() throws IOException {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-2, 33-35");
+
+        MockHttpServletResponse response = write(request);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getContentType()).startsWith("multipart/byteranges; boundary=");
+        String boundary = response.getContentType().substring(response.getContentType().indexOf('=') + 1);
+        assertThat(response.getContentAsString()).isEqualTo(
+                "\r\n--" + boundary + "\r\n"
+                        + "Content-Type: application/octet-stream\r\n"
+                        + "Content-Range: bytes 0-2/36\r\n\r\n"
+                        + "012"
+                        + "\r\n--" + boundary + "\r\n"
+                        + "Content-Type: application/octet-stream\r\n"
+                        + "Content-Range: bytes 33-35/36\r\n\r\n"
+                        + "xyz"
+                        + "\r\n--" + boundary + "--\r\n");
+        verify(tieringService).recordAccess(HASH);
+    }
+
+    @Test
+    void answersUnsatisfiableRangesWith416() throws IOException {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.RANGE, "bytes=100-200");
+
+        MockHttpServletResponse response = write(request);
+
+        assertThat(response.getStatus()).isEqualTo(416);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes */" + CONTENT.length);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+        verify(tieringService, never()).recordAccess(HASH);
+    }
+
+    @Test
+    void ignoresMalformedRanges() throws IOException {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.RANGE, "lines=1-2");
+
+        MockHttpServletResponse response = write(request);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsByteArray()).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void honoursRangesWhenIfRangeMatches() throws IOException {
+        MockHttpServletRequest byEtag = get();
+        byEtag.addHeader(HttpHeaders.RANGE, "bytes=0-0");
+        byEtag.addHeader(HttpHeaders.IF_RANGE, ETAG);
+        MockHttpServletRequest byDate = get();
+        byDate.addHeader(HttpHeaders.RANGE, "bytes=0-0");
+        byDate.addHeader(HttpHeaders.IF_RANGE, httpDate(LAST_MODIFIED));
+
+        assertThat(write(byEtag).getStatus()).isEqualTo(206);
+        assertThat(write(byDate).getStatus()).isEqualTo(206);
+    }
+
+    @Test
+    void sendsTheWholeFileWhenIfRangeDoesNotMatch() throws IOException {
+        MockHttpServletRequest otherEtag = get();
+        otherEtag.addHeader(HttpHeaders.RANGE, "bytes=0-0");
+        otherEtag.addHeader(HttpHeaders.IF_RANGE, "\"other\"");
+        MockHttpServletRequest weakEtag = get();
+        weakEtag.addHeader(HttpHeaders.RANGE, "bytes=0-0");
+        weakEtag.addHeader(HttpHeaders.IF_RANGE, "W/" + ETAG);
+        MockHttpServletRequest otherDate = get();
+        otherDate.addHeader(HttpHeaders.RANGE, "bytes=0-0");
+        otherDate.addHeader(HttpHeaders.IF_RANGE, httpDate(LAST_MODIFIED.minusDays(1)));
+
+        for (MockHttpServletRequest request : Arrays.asList(otherEtag, weakEtag, otherDate)) {
+            MockHttpServletResponse response = write(request);
+            assertThat(response.getStatus()).isEqualTo(200);
+            assertThat(response.getContentAsByteArray()).isEqualTo(CONTENT);
+        }
+    }
+
+    @Test
+    void answersRevalidationsWith304WithoutReading() throws IOException {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, ETAG);
+
+        MockHttpServletResponse response = write(request);
+
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+        verify(tieringService, never()).recordAccess(HASH);
+    }
+
+    @Test
+    void sendsNoBodyForHead() throws IOException {
+        MockHttpServletResponse response = write(new MockHttpServletRequest("HEAD", "/files/1"));
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentLengthLong()).isEqualTo(CONTENT.length);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+        verify(tieringService, never()).recordAccess(HASH);
+    }
+
+    private MockHttpServletResponse write(MockHttpServletRequest request) throws IOException {
+        BlobSource source = position -> new ByteArrayInputStream(CONTENT, (int) position, CONTENT.length - (int) position);
+        FileDownloadResponse file = new FileDownloadResponse(UUID.randomUUID(), "file.txt", "text/plain",
+                CONTENT.length, HASH, LAST_MODIFIED, source, null);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        writer.write(file, MediaType.APPLICATION_OCTET_STREAM, null, request, response);
+        return response;
+    }
+
+    private static MockHttpServletRequest get() {
+        return new MockHttpServletRequest("GET", "/files/1");
+    }
+
+    private static String httpDate(LocalDateTime time) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(time.atZone(ZoneId.systemDefault()).withZoneSameInstant(ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,86 @@
+package zw.co.isusu.fileservice.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import zw.co.isusu.fileservice.config.BlobCacheProperties;
+import zw.co.isusu.fileservice.storage.BlobSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlobCacheTests {
+
+    private static final byte[] CONTENT = "cached contents".getBytes(StandardCharsets.UTF_8);
+
+    private final BlobCache cache = new BlobCache(
+            new BlobCacheProperties(true, DataSize.ofMegabytes(1), DataSize.ofKilobytes(64), false),
+            new SimpleMeterRegistry());
+
+    @Test
+    void servesRepeatedReadsFromMemory() throws IOException {
+        CountingSource origin = new CountingSource();
+        UUID fileId = UUID.randomUUID();
+
+        assertThat(read(cache.wrap(fileId, 0, CONTENT.length, origin))).isEqualTo(CONTENT);
+        assertThat(read(cache.wrap(fileId, 0, CONTENT.length, origin))).isEqualTo(CONTENT);
+
+        assertThat(origin.opened).hasValue(1);
+    }
+
+    @Test
+    void invalidatesEveryVersionOfOneFileOnly() throws IOException {
+        CountingSource invalidated = new CountingSource();
+        CountingSource kept = new CountingSource();
+        UUID fileId = UUID.randomUUID();
+        UUID otherId = UUID.randomUUID();
+        read(cache.wrap(fileId, 0, CONTENT.length, invalidated));
+        read(cache.wrap(fileId, 1, CONTENT.length, invalidated));
+        read(cache.wrap(otherId, 0, CONTENT.length, kept));
+
+        cache.invalidate(fileId);
+
+        read(cache.wrap(fileId, 0, CONTENT.length, invalidated));
+        read(cache.wrap(fileId, 1, CONTENT.length, invalidated));
+        read(cache.wrap(otherId, 0, CONTENT.length, kept));
+        assertThat(invalidated.opened).hasValue(4);
+        assertThat(kept.opened).hasValue(1);
+    }
+
+    @Test
+    void invalidatesVersionsCachedAgainAfterAnInvalidation() throws IOException {
+        CountingSource origin = new CountingSource();
+        UUID fileId = UUID.randomUUID();
+        read(cache.wrap(fileId, 0, CONTENT.length, origin));
+        cache.invalidate(fileId);
+        read(cache.wrap(fileId, 0, CONTENT.length, origin));
+
+        cache.invalidate(fileId);
+
+        read(cache.wrap(fileId, 0, CONTENT.length, origin));
+        assertThat(origin.opened).hasValue(3);
+    }
+
+    private static byte[] read(BlobSource source) throws IOException {
+        try (InputStream in = source.openStream(0)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static final class CountingSource implements BlobSource {
+
+        private final AtomicInteger opened = new AtomicInteger();
+
+        @Override
+        public InputStream openStream(long position) {
+            opened.incrementAndGet();
+            return new ByteArrayInputStream(CONTENT, (int) position, CONTENT.length - (int) position);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package zw.co.isusu.fileservice.inspection;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import zw.co.isusu.fileservice.config.InspectionProperties;
+import zw.co.isusu.fileservice.inspection.impl.ChecksumInspector;
+import zw.co.isusu.fileservice.inspection.impl.EicarTestScanner;
+import zw.co.isusu.fileservice.inspection.impl.SizeLimitInspector;
+import zw.co.isusu.fileservice.metrics.FileMetrics;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InspectingInputStreamTests {
+
+    private static final byte[] EICAR =
+            "X5O!P%@AP[4\\PZX54(P^)7CC)7}$EICAR-STANDARD-ANTIVIRUS-TEST-FILE!$H+H*".getBytes(StandardCharsets.US_ASCII);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final InspectionProperties properties =
+            new InspectionProperties(true, DataSize.ofKilobytes(16), false, List.of(), true);
+    private final InspectionPipeline pipeline = new InspectionPipeline(
+            List.of(new SizeLimitInspector(properties), new ChecksumInspector(), new EicarTestScanner()),
+            properties, new FileMetrics(registry));
+
+    @Test
+    void passesContentsThroughAndReportsTheirSize() throws IOException {
+        byte[] content = new byte[10_000];
+        Inspection inspection = pipeline.begin(new UploadContext("data.bin", "application/octet-stream", -1));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        inspection.wrap(new ByteArrayInputStream(content)).transferTo(out);
+
+        assertThat(out.toByteArray()).isEqualTo(content);
+        assertThat(inspection.report().getSizeBytes()).isEqualTo(content.length);
+    }
+
+    @Test
+    void rejectsAnOversizedUploadBeforeReadingTheRest() throws IOException {
+        CountingInputStream source = new CountingInputStream(new byte[1024 * 1024]);
+        Inspection inspection = pipeline.begin(new UploadContext("large.bin", "application/octet-stream", -1));
+        InputStream in = inspection.wrap(source);
+
+        assertThatThrownBy(() -> in.transferTo(OutputStream.nullOutputStream()))
+                .isInstanceOfSatisfying(UploadRejectedException.class,
+                        e -> assertThat(e.getReason()).isEqualTo("size"));
+
+        assertThat(source.consumed).isLessThan(DataSize.ofKilobytes(32).toBytes());
+        assertThat(registry.counter("file.upload.rejected", "reason", "size").count()).isEqualTo(1);
+    }
+
+    @Test
+    void keepsRejectingOnceRejected() throws IOException {
+        byte[] content = new byte[EICAR.length + 100];
+        System.arraycopy(EICAR, 0, content, 0, EICAR.length);
+        Inspection inspection = pipeline.begin(new UploadContext("eicar.com", "application/octet-stream", -1));
+        InputStream in = inspection.wrap(new ByteArrayInputStream(content));
+
+        assertThatThrownBy(() -> in.readNBytes(EICAR.length)).isInstanceOf(UploadRejectedException.class);
+
+        assertThatThrownBy(in::read)
+                .isInstanceOfSatisfying(UploadRejectedException.class,
+                        e -> assertThat(e.getReason()).isEqualTo("malware"));
+        assertThatThrownBy(inspection::report).isInstanceOf(IllegalStateException.class);
+        // The rejection is counted once, not once per read
+        assertThat(registry.counter("file.upload.rejected", "reason", "malware").count()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsAChecksumMismatchAtTheEndOfTheStream() throws IOException {
+        byte[] content = "contents".getBytes(StandardCharsets.UTF_8);
+        String wrong = "sha256=" + "0".repeat(64);
+        Inspection inspection = pipeline.begin(new UploadContext("file.txt", "text/plain", content.length, wrong));
+        InputStream in = inspection.wrap(new ByteArrayInputStream(content));
+
+        // Every byte is handed out before the end of the stream reveals the mismatch
+        assertThat(in.read(new byte[content.length])).isEqualTo(content.length);
+        assertThatThrownBy(in::read).isInstanceOf(UploadRejectedException.class);
+    }
+
+    @Test
+    void inspectsSkippedBytes() throws IOException {
+        Inspection inspection = pipeline.begin(new UploadContext("data.bin", "application/octet-stream", -1));
+        InputStream in = inspection.wrap(new ByteArrayInputStream(new byte[20 * 1024]));
+
+        assertThatThrownBy(() -> in.skip(Long.MAX_VALUE)).isInstanceOf(UploadRejectedException.class);
+    }
+
+    private static final class CountingInputStream extends ByteArrayInputStream {
+
+        private long consumed;
+
+        private CountingInputStream(byte[] content) {
+            super(content);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            int read = super.read(b, off, len);
+            consumed += Math.max(read, 0);
+            return read;
+        }
+    }
+}
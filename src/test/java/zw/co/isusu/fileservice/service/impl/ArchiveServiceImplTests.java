@@ -0,0 +1,164 @@
+package zw.co.isusu.fileservice.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.util.unit.DataSize;
+import zw.co.isusu.fileservice.config.ArchiveProperties;
+import zw.co.isusu.fileservice.config.IoThreads;
+import zw.co.isusu.fileservice.metrics.FileMetrics;
+import zw.co.isusu.fileservice.persistence.FileRepository;
+import zw.co.isusu.fileservice.persistence.projection.FileContentView;
+import zw.co.isusu.fileservice.service.BlobService;
+import zw.co.isusu.fileservice.service.exception.FileNotFoundException;
+import zw.co.isusu.fileservice.service.request.ArchiveRequest;
+import zw.co.isusu.fileservice.service.response.FileArchive;
+import zw.co.isusu.fileservice.storage.BlobSource;
+import zw.co.isusu.fileservice.storage.ContentCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Streams archives of blobs kept in memory and reads them back with {@link ZipInputStream}.
+ */
+class ArchiveServiceImplTests {
+
+    private final Map<String, byte[]> blobs = new LinkedHashMap<>();
+    private final FileRepository fileRepository = mock(FileRepository.class);
+    private final BlobService blobService = mock(BlobService.class);
+    private ArchiveServiceImpl archiveService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        when(blobService.open(anyString(), any())).thenAnswer(call -> {
+            byte[] content = blobs.get(call.<String>getArgument(0));
+            if (content == null) {
+                throw new IOException("No such blob: " + call.getArgument(0));
+            }
+            return (BlobSource) position ->
+                    new ByteArrayInputStream(content, (int) position, content.length - (int) position);
+        });
+        archiveService = new ArchiveServiceImpl(fileRepository, blobService,
+                new ArchiveProperties(3, DataSize.ofKilobytes(1), List.of("image/png")),
+                new FileMetrics(new SimpleMeterRegistry()), new IoThreads(new MockEnvironment()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        archiveService.shutdown();
+    }
+
+    @Test
+    void streamsEveryFileIncludingThoseLargerThanTheReadAheadWindow() throws IOException {
+        byte[] large = new byte[10 * 1024];
+        new Random(1).nextBytes(large);
+        FileArchive archive = new FileArchive("files.zip", List.of(
+                file("notes.txt", "text/plain", "short notes".getBytes(StandardCharsets.UTF_8)),
+                file("photo.png", "image/png", large),
+                file("empty.txt", "text/plain", new byte[0])));
+
+        Map<String, byte[]> entries = unzip(archive);
+
+        assertThat(entries).containsOnlyKeys("notes.txt", "photo.png", "empty.txt");
+        assertThat(entries.get("notes.txt")).asString(StandardCharsets.UTF_8).isEqualTo("short notes");
+        assertThat(entries.get("photo.png")).isEqualTo(large);
+        assertThat(entries.get("empty.txt")).isEmpty();
+    }
+
+    @Test
+    void keepsEntryNamesUniqueAndInsideTheArchive() throws IOException {
+        byte[] content = "x".getBytes(StandardCharsets.UTF_8);
+        FileContentView unnamed = file("..", "text/plain", content);
+        FileArchive archive = new FileArchive("files.zip", List.of(
+                file("report.pdf", "application/pdf", content),
+                file("../../etc/report.pdf", "application/pdf", content),
+                file("C:\\temp\\report.pdf", "application/pdf", content),
+                unnamed));
+
+        assertThat(unzip(archive).keySet())
+                .containsExactly("report.pdf", "report (2).pdf", "report (3).pdf", unnamed.fileId().toString());
+    }
+
+    @Test
+    void failsTheArchiveWhenAFileCannotBeRead() {
+        FileContentView missing = file("gone.txt", "text/plain", new byte[0]);
+        blobs.remove(missing.storageKey());
+        FileArchive archive = new FileArchive("files.zip", List.of(
+                file("first.txt", "text/plain", "first".getBytes(StandardCharsets.UTF_8)), missing));
+
+        assertThatThrownBy(() -> archiveService.writeArchive(archive, new ByteArrayOutputStream()))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void requiresEitherFileIdsOrATag() {
+        assertThatThrownBy(() -> archiveService.prepareArchive(new ArchiveRequest(List.of(UUID.randomUUID()), "tag")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> archiveService.prepareArchive(new ArchiveRequest(null, " ")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsATagWithMoreFilesThanAnArchiveMayHold() {
+        byte[] content = new byte[1];
+        List<FileContentView> tagged = List.of(file("a", null, content), file("b", null, content),
+                file("c", null, content), file("d", null, content));
+        when(fileRepository.findContentByTag("holiday", Limit.of(4))).thenReturn(tagged);
+
+        assertThatThrownBy(() -> archiveService.prepareArchive(new ArchiveRequest(null, "holiday")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void namesAnArchiveOfATagAfterIt() throws FileNotFoundException {
+        List<FileContentView> tagged = List.of(file("a", null, new byte[1]));
+        when(fileRepository.findContentByTag("holiday", Limit.of(4))).thenReturn(tagged);
+        when(fileRepository.findContentByTag("empty", Limit.of(4))).thenReturn(Collections.emptyList());
+
+        assertThat(archiveService.prepareArchive(new ArchiveRequest(null, "holiday")))
+                .isEqualTo(new FileArchive("holiday.zip", tagged));
+        assertThatThrownBy(() -> archiveService.prepareArchive(new ArchiveRequest(null, "empty")))
+                .isInstanceOf(FileNotFoundException.class);
+    }
+
+    private FileContentView file(String fileName, String fileType, byte[] content) {
+        String storageKey = UUID.randomUUID().toString();
+        blobs.put(storageKey, content);
+        return new FileContentView(UUID.randomUUID(), fileName, fileType, content.length, "hash-" + storageKey, 0,
+                LocalDateTime.of(2024, 1, 1, 12, 0), storageKey, ContentCodec.IDENTITY, content.length);
+    }
+
+    private Map<String, byte[]> unzip(FileArchive archive) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        archiveService.writeArchive(archive, out);
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        return entries;
+    }
+}
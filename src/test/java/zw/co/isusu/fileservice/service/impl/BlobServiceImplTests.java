@@ -0,0 +1,251 @@
+package zw.co.isusu.fileservice.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import zw.co.isusu.fileservice.config.CompressionProperties;
+import zw.co.isusu.fileservice.config.VersioningProperties;
+import zw.co.isusu.fileservice.metrics.FileMetrics;
+import zw.co.isusu.fileservice.persistence.BlobChunkRepository;
+import zw.co.isusu.fileservice.persistence.BlobRepository;
+import zw.co.isusu.fileservice.service.BlobService.StoredBlob;
+import zw.co.isusu.fileservice.storage.impl.FileSystemBlobStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs against a filesystem store and a repository keeping blob rows in a map, with the
+ * reference counting semantics of the update queries.
+ */
+class BlobServiceImplTests {
+
+    private static final byte[] CONTENT = "the same contents, uploaded more than once".getBytes(StandardCharsets.UTF_8);
+    private static final String DIGEST = sha256(CONTENT);
+
+    @TempDir
+    Path root;
+
+    private final Map<String, Row> rows = new HashMap<>();
+    private final BlobRepository blobRepository = mock(BlobRepository.class);
+    private BlobServiceImpl blobService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        when(blobRepository.register(anyString(), anyString(), anyLong(), anyString(), anyLong(), any()))
+                .thenAnswer(call -> rows.putIfAbsent(call.getArgument(0), new Row(call.getArgument(1))) == null ? 1 : 0);
+        when(blobRepository.existsById(anyString())).thenAnswer(call -> rows.containsKey(call.<String>getArgument(0)));
+        when(blobRepository.acquire(anyString())).thenAnswer(call -> acquire(call.getArgument(0), 1));
+        when(blobRepository.acquire(anyString(), anyLong())).thenAnswer(call -> acquire(call.getArgument(0), call.getArgument(1)));
+        when(blobRepository.release(anyString(), anyLong(), any())).thenAnswer(call -> {
+            Row row = rows.get(call.<String>getArgument(0));
+            long references = call.getArgument(1);
+            if (row == null || row.refCount < references) {
+                return 0;
+            }
+            row.refCount -= references;
+            if (row.refCount == 0) {
+                row.orphanedAt = call.getArgument(2);
+            }
+            return 1;
+        });
+
+        CompressionProperties compression = new CompressionProperties(
+                false, List.of(), DataSize.ofKilobytes(64), DataSize.ofKilobytes(1), 0.9);
+        VersioningProperties versioning = new VersioningProperties(
+                true, DataSize.ofMegabytes(1), DataSize.ofKilobytes(16), DataSize.ofKilobytes(64), DataSize.ofKilobytes(256), 20);
+        blobService = new BlobServiceImpl(blobRepository, mock(BlobChunkRepository.class), new FileSystemBlobStore(root),
+                new CompressionPolicy(compression), versioning, new FileMetrics(new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void storesNewContentsWithOneReference() throws IOException {
+        StoredBlob blob = blobService.store(content(), "text/plain");
+
+        assertThat(blob).isEqualTo(new StoredBlob(DIGEST, CONTENT.length, false));
+        assertThat(rows.get(DIGEST).refCount).isEqualTo(1);
+        assertThat(storedFiles()).containsExactly(rows.get(DIGEST).storageKey);
+    }
+
+    @Test
+    void sharesTheBlobOfADuplicateUpload() throws IOException {
+        blobService.store(content(), "text/plain");
+
+        StoredBlob duplicate = blobService.store(content(), "text/plain");
+
+        assertThat(duplicate).isEqualTo(new StoredBlob(DIGEST, CONTENT.length, true));
+        assertThat(rows.get(DIGEST).refCount).isEqualTo(2);
+        assertThat(storedFiles()).containsExactly(rows.get(DIGEST).storageKey);
+    }
+
+    @Test
+    void dropsItsCopyWhenAConcurrentUploadRegisteredFirst() throws IOException {
+        // The other upload registers between the lookup and this upload's own insert
+        when(blobRepository.acquire(DIGEST)).thenAnswer(call -> {
+            if (rows.putIfAbsent(DIGEST, new Row("other-upload")) == null) {
+                return 0;
+            }
+            return acquire(DIGEST, 1);
+        });
+
+        StoredBlob blob = blobService.store(content(), "text/plain");
+
+        assertThat(blob.duplicate()).isTrue();
+        assertThat(rows.get(DIGEST).refCount).isEqualTo(1);
+        assertThat(rows.get(DIGEST).storageKey).isEqualTo("other-upload");
+        assertThat(storedFiles()).isEmpty();
+    }
+
+    @Test
+    void verifiesADeclaredDuplicateWithoutWritingIt() throws IOException {
+        blobService.store(content(), "text/plain");
+
+        StoredBlob duplicate = blobService.store(content(), "text/plain", DIGEST);
+
+        assertThat(duplicate).isEqualTo(new StoredBlob(DIGEST, CONTENT.length, true));
+        assertThat(rows.get(DIGEST).refCount).isEqualTo(2);
+        assertThat(storedFiles()).hasSize(1);
+        try (Stream<Path> partial = Files.list(root.resolve("tmp"))) {
+            assertThat(partial).isEmpty();
+        }
+    }
+
+    @Test
+    void takesNoReferenceWhenTheDeclaredDigestIsWrong() throws IOException {
+        blobService.store(content(), "text/plain");
+        InputStream other = new ByteArrayInputStream("different contents".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> blobService.store(other, "text/plain", DIGEST)).isInstanceOf(IOException.class);
+
+        assertThat(rows.get(DIGEST).refCount).isEqualTo(1);
+        // Both taken by the first upload, which looked the digest up before registering it
+        verify(blobRepository, times(2)).acquire(DIGEST);
+    }
+
+    @Test
+    void takesTheReferenceOnlyAfterReadingADeclaredDuplicate() throws IOException {
+        blobService.store(content(), "text/plain");
+        InputStream watched = new ByteArrayInputStream(CONTENT) {
+            @Override
+            public void close() throws IOException {
+                // The row lock is taken by acquire, which must not have run yet
+                verify(blobRepository, times(2)).acquire(DIGEST);
+                super.close();
+            }
+        };
+
+        blobService.store(watched, "text/plain", DIGEST);
+
+        verify(blobRepository, times(3)).acquire(DIGEST);
+        assertThat(rows.get(DIGEST).refCount).isEqualTo(2);
+    }
+
+    @Test
+    void failsWhenADeclaredDuplicateIsPurgedWhileBeingRead() {
+        rows.put(DIGEST, new Row("purged-meanwhile"));
+        InputStream purging = new ByteArrayInputStream(CONTENT) {
+            @Override
+            public void close() throws IOException {
+                rows.remove(DIGEST);
+                super.close();
+            }
+        };
+
+        assertThatThrownBy(() -> blobService.store(purging, "text/plain", DIGEST))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(rows).doesNotContainKey(DIGEST);
+    }
+
+    @Test
+    void writesContentsWhoseDeclaredDigestIsNotStored() throws IOException {
+        StoredBlob blob = blobService.store(content(), "text/plain", DIGEST);
+
+        assertThat(blob.duplicate()).isFalse();
+        assertThat(rows.get(DIGEST).refCount).isEqualTo(1);
+        assertThat(storedFiles()).hasSize(1);
+    }
+
+    @Test
+    void orphansTheBlobWhenTheLastReferenceIsReleased() throws IOException {
+        blobService.store(content(), "text/plain");
+        blobService.store(content(), "text/plain");
+
+        blobService.release(DIGEST);
+        assertThat(rows.get(DIGEST).refCount).isEqualTo(1);
+        assertThat(rows.get(DIGEST).orphanedAt).isNull();
+
+        blobService.release(DIGEST);
+        assertThat(rows.get(DIGEST).refCount).isZero();
+        assertThat(rows.get(DIGEST).orphanedAt).isNotNull();
+
+        // Releasing more references than there are changes nothing
+        blobService.release(DIGEST);
+        assertThat(rows.get(DIGEST).refCount).isZero();
+    }
+
+    private int acquire(String digest, long references) {
+        Row row = rows.get(digest);
+        if (row == null) {
+            return 0;
+        }
+        row.refCount += references;
+        row.orphanedAt = null;
+        return 1;
+    }
+
+    private static InputStream content() {
+        return new ByteArrayInputStream(CONTENT);
+    }
+
+    private List<String> storedFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> !file.startsWith(root.resolve("tmp")))
+                    .map(file -> file.getFileName().toString())
+                    .toList();
+        }
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Row {
+
+        private final String storageKey;
+        private long refCount;
+        private LocalDateTime orphanedAt = LocalDateTime.now();
+
+        private Row(String storageKey) {
+            this.storageKey = storageKey;
+        }
+    }
+}
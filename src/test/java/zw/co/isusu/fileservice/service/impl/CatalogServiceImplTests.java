@@ -0,0 +1,152 @@
+package zw.co.isusu.fileservice.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import zw.co.isusu.fileservice.cache.FileMetadataCache;
+import zw.co.isusu.fileservice.config.CatalogProperties;
+import zw.co.isusu.fileservice.service.request.BulkMetadataUpdate;
+import zw.co.isusu.fileservice.service.response.MetadataUpdateResult;
+import zw.co.isusu.fileservice.service.response.MetadataUpdateResult.Status;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs bulk updates against a JDBC template that applies the versioned update to rows kept in a map.
+ */
+class CatalogServiceImplTests {
+
+    private final Map<UUID, Integer> versions = new HashMap<>();
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final FileMetadataCache metadataCache = mock(FileMetadataCache.class);
+    private CatalogServiceImpl catalogService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(jdbcTemplate.batchUpdate(anyString(), any(BatchPreparedStatementSetter.class))).thenAnswer(call -> {
+            BatchPreparedStatementSetter setter = call.getArgument(1);
+            int[] counts = new int[setter.getBatchSize()];
+            for (int i = 0; i < counts.length; i++) {
+                Map<Integer, Object> parameters = new HashMap<>();
+                setter.setValues(recording(parameters), i);
+                UUID fileId = (UUID) parameters.get(3);
+                int version = (Integer) parameters.get(4);
+                if (versions.containsKey(fileId) && versions.get(fileId) == version) {
+                    versions.put(fileId, version + 1);
+                    counts[i] = 1;
+                }
+            }
+            return counts;
+        });
+        when(jdbcTemplate.batchUpdate(anyString(), any(Collection.class), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenReturn(new int[0][0]);
+        doAnswer(call -> {
+            RowCallbackHandler handler = call.getArgument(1);
+            for (Map.Entry<UUID, Integer> row : versions.entrySet()) {
+                ResultSet resultSet = mock(ResultSet.class);
+                when(resultSet.getObject("file_id", UUID.class)).thenReturn(row.getKey());
+                when(resultSet.getInt("version")).thenReturn(row.getValue());
+                handler.processRow(resultSet);
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        catalogService = new CatalogServiceImpl(jdbcTemplate, metadataCache, new ObjectMapper(),
+                new CatalogProperties(1000, 2, 100), transactionManager);
+    }
+
+    @Test
+    void appliesItemsBasedOnTheCurrentVersionAndReportsConflictsForTheRest() {
+        UUID current = file(3);
+        UUID stale = file(5);
+        UUID missing = UUID.randomUUID();
+
+        List<MetadataUpdateResult> results = catalogService.updateMetadata(List.of(
+                new BulkMetadataUpdate(current, 3, "renamed.txt", null),
+                new BulkMetadataUpdate(stale, 4, "renamed.txt", List.of("archive")),
+                new BulkMetadataUpdate(missing, 0, "renamed.txt", null)));
+
+        assertThat(results).extracting(MetadataUpdateResult::status)
+                .containsExactly(Status.UPDATED, Status.CONFLICT, Status.NOT_FOUND);
+        assertThat(results.get(0).version()).isEqualTo(4);
+        // A conflict tells the client which version to base its retry on
+        assertThat(results.get(1).version()).isEqualTo(5);
+        assertThat(versions.get(stale)).isEqualTo(5);
+    }
+
+    @Test
+    void evictsOnlyFilesThatWereUpdated() {
+        UUID current = file(1);
+        UUID stale = file(2);
+
+        catalogService.updateMetadata(List.of(
+                new BulkMetadataUpdate(current, 1, null, List.of("a")),
+                new BulkMetadataUpdate(stale, 1, null, List.of("b"))));
+
+        verify(metadataCache).evict(current);
+        verify(metadataCache, never()).evict(stale);
+    }
+
+    @Test
+    void conflictsWithAnEarlierUpdateOfTheSameVersion() {
+        UUID fileId = file(7);
+        catalogService.updateMetadata(List.of(new BulkMetadataUpdate(fileId, 7, "first.txt", null)));
+
+        List<MetadataUpdateResult> second = catalogService.updateMetadata(
+                List.of(new BulkMetadataUpdate(fileId, 7, "second.txt", null)));
+
+        assertThat(second).containsExactly(MetadataUpdateResult.conflict(fileId, 8));
+    }
+
+    @Test
+    void rejectsRepeatedItemsWithoutApplyingThem() {
+        UUID fileId = file(1);
+
+        List<MetadataUpdateResult> results = catalogService.updateMetadata(List.of(
+                new BulkMetadataUpdate(fileId, 1, "first.txt", null),
+                new BulkMetadataUpdate(fileId, 1, "second.txt", null)));
+
+        assertThat(results).extracting(MetadataUpdateResult::status).containsExactly(Status.UPDATED, Status.INVALID);
+        assertThat(versions.get(fileId)).isEqualTo(2);
+    }
+
+    private UUID file(int version) {
+        UUID fileId = UUID.randomUUID();
+        versions.put(fileId, version);
+        return fileId;
+    }
+
+    private static PreparedStatement recording(Map<Integer, Object> parameters) throws Exception {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        doAnswer(call -> parameters.put(call.getArgument(0), call.getArgument(1)))
+                .when(statement).setObject(anyInt(), any());
+        doAnswer(call -> parameters.put(call.getArgument(0), call.getArgument(1)))
+                .when(statement).setInt(anyInt(), anyInt());
+        return statement;
+    }
+}
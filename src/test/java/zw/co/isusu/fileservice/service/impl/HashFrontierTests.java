@@ -0,0 +1,127 @@
+package zw.co.isusu.fileservice.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import zw.co.isusu.fileservice.config.InspectionProperties;
+import zw.co.isusu.fileservice.domain.UploadSessionEntity;
+import zw.co.isusu.fileservice.inspection.Inspection;
+import zw.co.isusu.fileservice.inspection.InspectionPipeline;
+import zw.co.isusu.fileservice.inspection.UploadContext;
+import zw.co.isusu.fileservice.metrics.FileMetrics;
+import zw.co.isusu.fileservice.service.impl.UploadSessionServiceImpl.HashFrontier;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Feeds chunks staged in a file through the frontier in the order they arrive.
+ */
+class HashFrontierTests {
+
+    // Three chunks of 4, 4 and 2 bytes
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path root;
+
+    private final InspectionPipeline pipeline = new InspectionPipeline(List.of(),
+            new InspectionProperties(true, DataSize.ofMegabytes(1), false, List.of(), false),
+            new FileMetrics(new SimpleMeterRegistry()));
+    private final UploadSessionEntity session = new UploadSessionEntity();
+    private Path staging;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        session.setFileName("digits.txt");
+        session.setFileType("text/plain");
+        session.setTotalSize(CONTENT.length);
+        session.setChunkSize(4);
+        staging = Files.write(root.resolve("staging"), CONTENT);
+    }
+
+    @Test
+    void hashesChunksReceivedOutOfOrderOnceTheGapIsFilled() throws IOException {
+        Inspection inspection = inspection();
+        HashFrontier frontier = new HashFrontier(inspection, new ConcurrentHashMap<>());
+
+        frontier.markReceived(2);
+        frontier.advance(session, staging);
+        assertThat(frontier.digest()).isEqualTo(sha256(0));
+
+        frontier.markReceived(0);
+        frontier.advance(session, staging);
+        assertThat(frontier.digest()).isEqualTo(sha256(4));
+
+        frontier.markReceived(1);
+        frontier.advance(session, staging);
+        assertThat(frontier.digest()).isEqualTo(sha256(CONTENT.length));
+        assertThat(inspection.report().getSizeBytes()).isEqualTo(CONTENT.length);
+    }
+
+    @Test
+    void keepsTheDigestOfWholeChunksWhenAReadFails() throws IOException {
+        HashFrontier frontier = new HashFrontier(inspection(), new ConcurrentHashMap<>());
+        frontier.markReceived(0);
+        frontier.markReceived(1);
+        // The second chunk is only half on disk
+        Files.write(staging, Arrays.copyOf(CONTENT, 6));
+
+        assertThatThrownBy(() -> frontier.advance(session, staging)).isInstanceOf(IOException.class);
+
+        assertThat(frontier.isBroken()).isTrue();
+        assertThat(frontier.digest()).isEqualTo(sha256(4));
+        assertThatThrownBy(() -> frontier.advance(session, staging)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void rehashesFromTheStartWhenRebuiltAfterAFailure() throws IOException {
+        ConcurrentHashMap<Integer, ReentrantLock> chunkLocks = new ConcurrentHashMap<>();
+        HashFrontier broken = new HashFrontier(inspection(), chunkLocks);
+        broken.markReceived(0);
+        broken.markReceived(1);
+        Files.write(staging, Arrays.copyOf(CONTENT, 6));
+        assertThatThrownBy(() -> broken.advance(session, staging)).isInstanceOf(IOException.class);
+
+        // The retry rewrites the chunk and the service replaces the broken frontier
+        Files.write(staging, CONTENT);
+        Inspection inspection = inspection();
+        HashFrontier rebuilt = new HashFrontier(inspection, chunkLocks);
+        for (int chunk = 0; chunk < session.getTotalChunks(); chunk++) {
+            rebuilt.markReceived(chunk);
+        }
+        rebuilt.advance(session, staging);
+
+        assertThat(rebuilt.digest()).isEqualTo(sha256(CONTENT.length));
+        assertThat(inspection.report().getSizeBytes()).isEqualTo(CONTENT.length);
+        assertThat(rebuilt.chunkLock(1)).isSameAs(broken.chunkLock(1));
+    }
+
+    private Inspection inspection() throws IOException {
+        return pipeline.begin(new UploadContext(session.getFileName(), session.getFileType(), session.getTotalSize()));
+    }
+
+    private static String sha256(int length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(CONTENT, 0, length);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package zw.co.isusu.fileservice.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import zw.co.isusu.fileservice.cache.FileMetadataCache;
+import zw.co.isusu.fileservice.config.MetadataCacheProperties;
+import zw.co.isusu.fileservice.config.TieringProperties;
+import zw.co.isusu.fileservice.domain.BlobEntity;
+import zw.co.isusu.fileservice.persistence.BlobRepository;
+import zw.co.isusu.fileservice.persistence.FileRepository;
+import zw.co.isusu.fileservice.storage.BlobWriter;
+import zw.co.isusu.fileservice.storage.ContentCodec;
+import zw.co.isusu.fileservice.storage.StorageTier;
+import zw.co.isusu.fileservice.storage.impl.FileSystemBlobStore;
+import zw.co.isusu.fileservice.storage.impl.TieredBlobStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Demotes a blob written to a hot store on disk and checks when its old copy goes away.
+ */
+class TieringServiceImplTests {
+
+    private static final byte[] CONTENT = "rarely read contents".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path hotRoot;
+
+    @TempDir
+    Path coldRoot;
+
+    private final BlobRepository blobRepository = mock(BlobRepository.class);
+    private final FileRepository fileRepository = mock(FileRepository.class);
+    private final FileMetadataCache metadataCache = mock(FileMetadataCache.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private TieredBlobStore blobStore;
+    private BlobEntity blob;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        blobStore = new TieredBlobStore(new FileSystemBlobStore(hotRoot), properties(Duration.ofMinutes(15)));
+
+        blob = new BlobEntity();
+        blob.setDigest("digest");
+        blob.setStorageKey(write(CONTENT));
+        blob.setSizeBytes(CONTENT.length);
+        blob.setStoredSizeBytes(CONTENT.length);
+        when(blobRepository.findDemotionCandidates(eq(StorageTier.HOT), eq(ContentCodec.CHUNKED), any(), any()))
+                .thenReturn(List.of(blob));
+    }
+
+    @Test
+    void keepsTheOldCopyReadableUntilItsDelayIsOver() throws IOException {
+        UUID fileId = UUID.randomUUID();
+        when(fileRepository.findFileIdsByContentHash("digest")).thenReturn(List.of(fileId));
+        when(blobRepository.move(eq("digest"), eq(blob.getStorageKey()), anyString(), eq(StorageTier.COLD),
+                eq(ContentCodec.IDENTITY), eq((long) CONTENT.length))).thenReturn(1);
+        TieringServiceImpl tieringService = tieringService(Duration.ofMinutes(15), Duration.ofMinutes(10));
+
+        tieringService.migrate();
+        tieringService.deleteRetired();
+
+        String coldKey = movedKey();
+        assertThat(TieredBlobStore.tierOf(coldKey)).isEqualTo(StorageTier.COLD);
+        assertThat(read(coldKey)).isEqualTo(CONTENT);
+        assertThat(read(blob.getStorageKey())).isEqualTo(CONTENT);
+        verify(metadataCache).evict(fileId);
+
+        tieringService.shutdown();
+
+        assertThatThrownBy(() -> read(blob.getStorageKey())).isInstanceOf(IOException.class);
+        assertThat(read(coldKey)).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void waitsAtLeastForTheMetadataCacheTtl() throws IOException {
+        when(blobRepository.move(anyString(), anyString(), anyString(), any(), any(), anyLong())).thenReturn(1);
+        TieringServiceImpl tieringService = tieringService(Duration.ZERO, Duration.ofMinutes(10));
+
+        tieringService.migrate();
+        tieringService.deleteRetired();
+
+        assertThat(read(blob.getStorageKey())).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void deletesTheOldCopyOnceItsDelayIsOver() throws IOException {
+        when(blobRepository.move(anyString(), anyString(), anyString(), any(), any(), anyLong())).thenReturn(1);
+        TieringServiceImpl tieringService = tieringService(Duration.ZERO, Duration.ZERO);
+
+        tieringService.migrate();
+        tieringService.deleteRetired();
+
+        assertThatThrownBy(() -> read(blob.getStorageKey())).isInstanceOf(IOException.class);
+        assertThat(read(movedKey())).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void dropsTheNewCopyWhenTheBlobChangedMeanwhile() throws IOException {
+        // Purged or moved by another instance between the copy and the update
+        when(blobRepository.move(anyString(), anyString(), anyString(), any(), any(), anyLong())).thenReturn(0);
+        TieringServiceImpl tieringService = tieringService(Duration.ZERO, Duration.ZERO);
+
+        tieringService.migrate();
+        tieringService.shutdown();
+
+        assertThatThrownBy(() -> read(movedKey())).isInstanceOf(IOException.class);
+        assertThat(read(blob.getStorageKey())).isEqualTo(CONTENT);
+        verify(fileRepository, never()).findFileIdsByContentHash(anyString());
+    }
+
+    private TieringServiceImpl tieringService(Duration retireDelay, Duration metadataTtl) {
+        return new TieringServiceImpl(blobRepository, fileRepository, blobStore, mock(CompressionPolicy.class),
+                metadataCache, properties(retireDelay),
+                new MetadataCacheProperties(true, 100, metadataTtl, Duration.ofSeconds(5), "local"),
+                transactionManager, new SimpleMeterRegistry());
+    }
+
+    private TieringProperties properties(Duration retireDelay) {
+        return new TieringProperties(true, coldRoot, false, Duration.ofDays(7), 3, Duration.ofDays(1),
+                100, Duration.ZERO, 1, retireDelay);
+    }
+
+    private String movedKey() {
+        ArgumentCaptor<String> newKey = ArgumentCaptor.forClass(String.class);
+        verify(blobRepository).move(anyString(), anyString(), newKey.capture(), any(), any(), anyLong());
+        return newKey.getValue();
+    }
+
+    private String write(byte[] content) throws IOException {
+        try (BlobWriter writer = blobStore.newWriter()) {
+            writer.write(content);
+            return writer.commit();
+        }
+    }
+
+    private byte[] read(String key) throws IOException {
+        try (InputStream in = blobStore.open(key).openStream(0)) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package zw.co.isusu.fileservice.service.request;
+
+import org.junit.jupiter.api.Test;
+import zw.co.isusu.fileservice.service.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FileCursorTests {
+
+    @Test
+    void decodesWhatItEncoded() {
+        FileCursor cursor = new FileCursor(LocalDateTime.of(2024, 5, 17, 9, 30, 12, 123_456_000), UUID.randomUUID());
+
+        assertThat(FileCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void encodesUrlSafely() {
+        FileCursor cursor = new FileCursor(LocalDateTime.of(2024, 5, 17, 9, 30), UUID.randomUUID());
+
+        assertThat(cursor.encode()).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        String missingSeparator = encode("2024-05-17T09:30");
+        String badTimestamp = encode("yesterday|" + UUID.randomUUID());
+        String badId = encode("2024-05-17T09:30|not-a-uuid");
+
+        for (String cursor : new String[] {"not base64!", missingSeparator, badTimestamp, badId}) {
+            assertThatThrownBy(() -> FileCursor.decode(cursor))
+                    .isInstanceOf(InvalidCursorException.class)
+                    .hasMessageContaining(cursor);
+        }
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
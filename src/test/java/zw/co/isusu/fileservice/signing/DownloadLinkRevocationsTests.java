@@ -0,0 +1,71 @@
+package zw.co.isusu.fileservice.signing;
+
+import org.junit.jupiter.api.Test;
+import zw.co.isusu.fileservice.cache.MetadataInvalidationChannel;
+import zw.co.isusu.fileservice.config.DownloadLinkProperties;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class DownloadLinkRevocationsTests {
+
+    private final MetadataInvalidationChannel channel = mock(MetadataInvalidationChannel.class);
+    private final DownloadLinkRevocations revocations = new DownloadLinkRevocations(channel,
+            new DownloadLinkProperties(Duration.ofMinutes(5), Duration.ofHours(1), List.of(), 100));
+
+    @Test
+    void subscribesToInvalidations() {
+        verify(channel).subscribe(revocations);
+    }
+
+    @Test
+    void trustsLinksToUnchangedFiles() throws InterruptedException {
+        Instant issuedAt = later();
+
+        assertThat(revocations.isRevoked(UUID.randomUUID(), issuedAt)).isFalse();
+    }
+
+    @Test
+    void revokesLinksIssuedBeforeStartup() {
+        assertThat(revocations.isRevoked(UUID.randomUUID(), Instant.now().minusSeconds(1))).isTrue();
+    }
+
+    @Test
+    void revokesLinksIssuedBeforeTheFileChanged() throws InterruptedException {
+        UUID fileId = UUID.randomUUID();
+        UUID otherFileId = UUID.randomUUID();
+        Instant issuedAt = later();
+        later();
+
+        revocations.invalidate(fileId);
+
+        assertThat(revocations.isRevoked(fileId, issuedAt)).isTrue();
+        assertThat(revocations.isRevoked(otherFileId, issuedAt)).isFalse();
+        assertThat(revocations.isRevoked(fileId, later())).isFalse();
+    }
+
+    @Test
+    void revokesEveryEarlierLinkWhenInvalidationsMayHaveBeenMissed() throws InterruptedException {
+        Instant issuedAt = later();
+        later();
+
+        revocations.invalidateAll();
+
+        assertThat(revocations.isRevoked(UUID.randomUUID(), issuedAt)).isTrue();
+        assertThat(revocations.isRevoked(UUID.randomUUID(), later())).isFalse();
+    }
+
+    /**
+     * A moment strictly after everything that happened so far, on any clock resolution.
+     */
+    private static Instant later() throws InterruptedException {
+        Thread.sleep(5);
+        return Instant.now();
+    }
+}
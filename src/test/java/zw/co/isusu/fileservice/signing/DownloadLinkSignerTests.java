@@ -0,0 +1,106 @@
+package zw.co.isusu.fileservice.signing;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import zw.co.isusu.fileservice.config.DownloadLinkProperties;
+import zw.co.isusu.fileservice.metrics.FileMetrics;
+import zw.co.isusu.fileservice.persistence.projection.FileContentView;
+import zw.co.isusu.fileservice.storage.ContentCodec;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DownloadLinkSignerTests {
+
+    private static final FileContentView FILE = new FileContentView(UUID.randomUUID(), "report.pdf", "application/pdf",
+            1234, "ab".repeat(32), 3, LocalDateTime.of(2024, 5, 17, 9, 30, 12, 345_000_000),
+            UUID.randomUUID().toString(), ContentCodec.GZIP, 567);
+
+    private final DownloadLinkSigner signer = signer(List.of("current-secret"));
+
+    @Test
+    void verifiesWhatItSigned() throws InvalidDownloadLinkException {
+        SignedDownloadLink link = signer.sign(FILE, Duration.ofMinutes(1));
+
+        SignedDownload download = signer.verify(link.token());
+
+        assertThat(download.content()).isEqualTo(FILE);
+        // Instants travel with millisecond precision
+        assertThat(download.expiresAt()).isEqualTo(link.expiresAt().truncatedTo(ChronoUnit.MILLIS));
+        assertThat(download.issuedAt()).isBefore(download.expiresAt());
+    }
+
+    @Test
+    void capsTheLifetimeAtTheMaximum() {
+        SignedDownloadLink link = signer.sign(FILE, Duration.ofDays(7));
+
+        assertThat(link.expiresAt()).isBeforeOrEqualTo(Instant.now().plus(Duration.ofHours(1)));
+    }
+
+    @Test
+    void rejectsTamperedPayloads() {
+        String token = signer.sign(FILE, null).token();
+        String[] parts = token.split("\\.");
+        byte[] payload = Base64.getUrlDecoder().decode(parts[0]);
+        payload[payload.length - 1] ^= 1;
+        String tampered = Base64.getUrlEncoder().withoutPadding().encodeToString(payload) + "." + parts[1];
+
+        assertRejected(tampered, HttpStatus.FORBIDDEN, "signature");
+    }
+
+    @Test
+    void rejectsTamperedSignatures() {
+        String token = signer.sign(FILE, null).token();
+        int signature = token.indexOf('.') + 1;
+        // The first character carries whole bits of the signature, unlike the last one
+        char first = token.charAt(signature);
+        String tampered = token.substring(0, signature) + (first == 'A' ? 'B' : 'A') + token.substring(signature + 1);
+
+        assertRejected(tampered, HttpStatus.FORBIDDEN, "signature");
+        assertRejected(token.substring(0, signature - 1), HttpStatus.FORBIDDEN, "malformed");
+        assertRejected("not*base64." + token.substring(signature), HttpStatus.FORBIDDEN, "malformed");
+    }
+
+    @Test
+    void rejectsLinksSignedWithAnotherKey() {
+        String token = signer(List.of("other-secret")).sign(FILE, null).token();
+
+        assertRejected(token, HttpStatus.FORBIDDEN, "signature");
+    }
+
+    @Test
+    void verifiesLinksSignedWithARotatedOutKey() throws InvalidDownloadLinkException {
+        String token = signer.sign(FILE, null).token();
+
+        assertThat(signer(List.of("next-secret", "current-secret")).verify(token).content()).isEqualTo(FILE);
+    }
+
+    @Test
+    void rejectsExpiredLinks() {
+        String token = signer.sign(FILE, Duration.ZERO).token();
+
+        assertRejected(token, HttpStatus.GONE, "expired");
+    }
+
+    private void assertRejected(String token, HttpStatus status, String reason) {
+        assertThatThrownBy(() -> signer.verify(token))
+                .isInstanceOfSatisfying(InvalidDownloadLinkException.class, e -> {
+                    assertThat(e.getStatus()).isEqualTo(status);
+                    assertThat(e.getReason()).isEqualTo(reason);
+                });
+    }
+
+    private static DownloadLinkSigner signer(List<String> secrets) {
+        DownloadLinkProperties properties = new DownloadLinkProperties(Duration.ofMinutes(5), Duration.ofHours(1), secrets, 100);
+        return new DownloadLinkSigner(properties, new FileMetrics(new SimpleMeterRegistry()));
+    }
+}
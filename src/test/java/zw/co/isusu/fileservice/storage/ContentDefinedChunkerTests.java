@@ -0,0 +1,100 @@
+package zw.co.isusu.fileservice.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ContentDefinedChunkerTests {
+
+    private static final int MIN = 2 * 1024;
+    private static final int AVG = 8 * 1024;
+    private static final int MAX = 32 * 1024;
+
+    private final ContentDefinedChunker chunker = new ContentDefinedChunker(MIN, AVG, MAX);
+
+    @Test
+    void keepsChunksWithinBounds() throws IOException {
+        byte[] data = random(1024 * 1024, 1);
+
+        List<byte[]> chunks = split(data);
+
+        assertThat(chunks).hasSizeGreaterThan(data.length / MAX);
+        for (byte[] chunk : chunks.subList(0, chunks.size() - 1)) {
+            assertThat(chunk.length).isBetween(MIN + 1, MAX);
+        }
+        assertThat(chunks.get(chunks.size() - 1).length).isBetween(1, MAX);
+        assertThat(concat(chunks)).isEqualTo(data);
+    }
+
+    @Test
+    void cutsWithinBoundsOfTheBuffer() {
+        ContentDefinedChunker rarelyCuts = new ContentDefinedChunker(MIN, MAX, MAX);
+        for (long seed = 0; seed < 20; seed++) {
+            byte[] data = random(MAX * 3, seed);
+            assertThat(chunker.cut(data, data.length)).isBetween(MIN + 1, MAX);
+            assertThat(rarelyCuts.cut(data, data.length)).isBetween(MIN + 1, MAX);
+        }
+        // Whatever is left at the end of a stream is one chunk once it is no larger than the minimum
+        assertThat(chunker.cut(new byte[MAX], MIN)).isEqualTo(MIN);
+        assertThat(chunker.cut(new byte[MAX], 1)).isEqualTo(1);
+    }
+
+    @Test
+    void keepsCutPointsAfterAnInsert() throws IOException {
+        byte[] original = random(512 * 1024, 2);
+        byte[] edited = new byte[original.length + 7];
+        int at = 100_000;
+        System.arraycopy(original, 0, edited, 0, at);
+        System.arraycopy("insert!".getBytes(), 0, edited, at, 7);
+        System.arraycopy(original, at, edited, at + 7, original.length - at);
+
+        List<byte[]> before = split(original);
+        List<byte[]> after = split(edited);
+
+        // Only the chunks around the insert may differ; everything before and after splits identically
+        long shared = after.stream().filter(chunk -> before.stream().anyMatch(b -> Arrays.equals(b, chunk))).count();
+        assertThat(shared).isGreaterThanOrEqualTo(before.size() - 2);
+        assertThat(after.get(after.size() - 1)).isEqualTo(before.get(before.size() - 1));
+        assertThat(after.get(0)).isEqualTo(before.get(0));
+    }
+
+    @Test
+    void rejectsInconsistentSizes() {
+        assertThatThrownBy(() -> new ContentDefinedChunker(0, AVG, MAX)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ContentDefinedChunker(AVG, MIN, MAX)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ContentDefinedChunker(MIN, MAX, AVG)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private List<byte[]> split(byte[] data) throws IOException {
+        List<byte[]> chunks = new ArrayList<>();
+        ContentDefinedChunker.Chunks cursor = chunker.split(new ByteArrayInputStream(data));
+        while (cursor.next()) {
+            chunks.add(Arrays.copyOf(cursor.buffer(), cursor.length()));
+        }
+        return chunks;
+    }
+
+    private static byte[] concat(List<byte[]> chunks) {
+        byte[] joined = new byte[chunks.stream().mapToInt(chunk -> chunk.length).sum()];
+        int offset = 0;
+        for (byte[] chunk : chunks) {
+            System.arraycopy(chunk, 0, joined, offset, chunk.length);
+            offset += chunk.length;
+        }
+        return joined;
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
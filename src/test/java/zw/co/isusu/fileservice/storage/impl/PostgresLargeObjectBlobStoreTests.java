@@ -0,0 +1,131 @@
+package zw.co.isusu.fileservice.storage.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.largeobject.LargeObject;
+import org.postgresql.largeobject.LargeObjectManager;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import zw.co.isusu.fileservice.storage.BlobWriter;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the store against a pool of one connection, which a caller's transaction already holds.
+ */
+class PostgresLargeObjectBlobStoreTests {
+
+    private static final long OID = 42;
+
+    private final AtomicBoolean leased = new AtomicBoolean();
+    private final Connection connection = mock(Connection.class);
+    private final LargeObjectManager manager = mock(LargeObjectManager.class);
+    private final LargeObject largeObject = mock(LargeObject.class);
+    private DataSource pool;
+    private PostgresLargeObjectBlobStore store;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pool = mock(DataSource.class);
+        when(pool.getConnection()).thenAnswer(invocation -> {
+            if (leased.getAndSet(true)) {
+                throw new SQLTransientConnectionException("Connection is not available, request timed out");
+            }
+            return connection;
+        });
+        doAnswer(invocation -> {
+            leased.set(false);
+            return null;
+        }).when(connection).close();
+
+        PGConnection pgConnection = mock(PGConnection.class);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(pgConnection.getLargeObjectAPI()).thenReturn(manager);
+        when(manager.createLO(anyInt())).thenReturn(OID);
+        when(manager.open(anyLong(), anyInt())).thenReturn(largeObject);
+        when(largeObject.getOutputStream()).thenReturn(new ByteArrayOutputStream());
+        when(largeObject.size64()).thenReturn(3L);
+
+        store = new PostgresLargeObjectBlobStore(pool);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(pool));
+    }
+
+    @Test
+    void writesOnTheCallersConnectionInsideATransaction() throws Exception {
+        String key = transactionTemplate.execute(status -> {
+            try (BlobWriter writer = store.newWriter()) {
+                writer.write(new byte[]{1, 2, 3});
+                return writer.commit();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertThat(key).isEqualTo(Long.toString(OID));
+        assertThat(leased).isFalse();
+        // Only the surrounding transaction commits, once it finishes
+        verify(connection).commit();
+        verify(manager, never()).unlink(anyLong());
+    }
+
+    @Test
+    void readsAndDeletesOnTheCallersConnectionInsideATransaction() throws Exception {
+        Long size = transactionTemplate.execute(status -> {
+            try {
+                long read = store.size(Long.toString(OID));
+                store.delete(Long.toString(OID));
+                return read;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertThat(size).isEqualTo(3);
+        verify(manager).unlink(OID);
+        verify(connection).commit();
+        assertThat(leased).isFalse();
+    }
+
+    @Test
+    void dropsAnUncommittedObjectWithoutRollingBackTheCallersTransaction() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> {
+            try (BlobWriter writer = store.newWriter()) {
+                writer.write(1);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        verify(manager).unlink(OID);
+        verify(connection, never()).rollback();
+        verify(connection).commit();
+    }
+
+    @Test
+    void usesAndReturnsItsOwnConnectionOutsideATransaction() throws Exception {
+        store.delete(Long.toString(OID));
+
+        var order = inOrder(connection, manager);
+        order.verify(connection).setAutoCommit(false);
+        order.verify(manager).unlink(OID);
+        order.verify(connection).commit();
+        order.verify(connection).close();
+        assertThat(leased).isFalse();
+    }
+}
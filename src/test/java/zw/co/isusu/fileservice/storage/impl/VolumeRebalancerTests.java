@@ -0,0 +1,118 @@
+package zw.co.isusu.fileservice.storage.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import zw.co.isusu.fileservice.config.StorageProperties;
+import zw.co.isusu.fileservice.storage.BlobWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Adds a second volume to a store holding blobs on one and rebalances them onto it.
+ */
+class VolumeRebalancerTests {
+
+    private static final int BLOBS = 40;
+    private static final int MOVES_PER_RUN = 5;
+
+    @TempDir
+    Path first;
+
+    @TempDir
+    Path second;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void movesBlobsOntoAnAddedVolumeAFewPerRun() throws IOException {
+        List<String> keys = writeBlobs(new FileSystemBlobStore(properties(first)));
+        StorageProperties grown = properties(first, second);
+        FileSystemBlobStore store = new FileSystemBlobStore(grown);
+        VolumeRebalancer rebalancer = new VolumeRebalancer(store, grown, registry);
+
+        rebalancer.rebalance();
+        assertThat(blobFiles(second)).hasSize(MOVES_PER_RUN);
+        // Blobs not yet moved are still found on the old volume
+        assertReadable(store, keys);
+
+        for (int run = 0; run < BLOBS / MOVES_PER_RUN; run++) {
+            rebalancer.rebalance();
+        }
+
+        long moved = blobFiles(second).size();
+        assertThat(moved).isBetween(1L, (long) BLOBS - 1);
+        assertThat(blobFiles(first).size() + moved).isEqualTo(BLOBS);
+        assertThat(registry.counter("file.storage.rebalanced.blobs").count()).isEqualTo(moved);
+        assertThat(registry.counter("file.storage.rebalanced.bytes").count()).isEqualTo(moved * content(0).length);
+        assertReadable(store, keys);
+        try (Stream<Path> parts = Files.list(second.resolve("tmp"))) {
+            assertThat(parts).isEmpty();
+        }
+    }
+
+    @Test
+    void staysIdleOnceEveryBlobIsInPlace() throws IOException {
+        writeBlobs(new FileSystemBlobStore(properties(first)));
+        StorageProperties grown = properties(first, second);
+        VolumeRebalancer rebalancer = new VolumeRebalancer(new FileSystemBlobStore(grown), grown, registry);
+        for (int run = 0; run <= BLOBS / MOVES_PER_RUN + 1; run++) {
+            rebalancer.rebalance();
+        }
+        double moved = registry.counter("file.storage.rebalanced.blobs").count();
+
+        // A blob placed on the wrong volume now would only be picked up after a restart
+        Path placed = blobFiles(second).get(0);
+        Path misplaced = first.resolve(second.relativize(placed));
+        Files.createDirectories(misplaced.getParent());
+        Files.move(placed, misplaced);
+        rebalancer.rebalance();
+
+        assertThat(registry.counter("file.storage.rebalanced.blobs").count()).isEqualTo(moved);
+    }
+
+    private List<String> writeBlobs(FileSystemBlobStore store) throws IOException {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < BLOBS; i++) {
+            try (BlobWriter writer = store.newWriter()) {
+                writer.write(content(i));
+                keys.add(writer.commit());
+            }
+        }
+        return keys;
+    }
+
+    private static void assertReadable(FileSystemBlobStore store, List<String> keys) throws IOException {
+        for (int i = 0; i < keys.size(); i++) {
+            try (InputStream in = store.open(keys.get(i)).openStream(0)) {
+                assertThat(in.readAllBytes()).isEqualTo(content(i));
+            }
+        }
+    }
+
+    private static List<Path> blobFiles(Path volume) throws IOException {
+        try (Stream<Path> files = Files.walk(volume)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> !file.startsWith(volume.resolve("tmp")))
+                    .toList();
+        }
+    }
+
+    private static byte[] content(int i) {
+        return "blob %04d".formatted(i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static StorageProperties properties(Path... volumes) {
+        return new StorageProperties("filesystem", volumes[0],
+                Stream.of(volumes).map(volume -> new StorageProperties.Volume(volume, 1)).toList(), MOVES_PER_RUN);
+    }
+}